@@ -13,6 +13,7 @@ import java.util.*;
 
 public class AStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
     private ArrayHeapMinPQ<Vertex> fringes;  // the PQ stores vertices to be visited
+    private LazyHeap<Vertex> lazyFringes;    // the heap instead, in lazy deletion mode
     private HashMap<Vertex, Double> distTo;  // distance from the start vertex
     private HashMap<Vertex, Vertex> edgeTo;  // edge leading to the vertices
     private int numStatesExplored;           // number of vertices visited
@@ -24,7 +25,8 @@ public class AStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
     /**
      * Finds the shortest path from {@code start} to {@code end} of the graph {@code input}
      * using a* algorithm. Initialize variables and stores the outcome and solution. If the
-     * given timeout {@code timeout} is exceeded, it stops running.
+     * given timeout {@code timeout} is exceeded, it stops running. The fringe is an
+     * indexed PQ whose priorities are lowered in place.
      *
      * The A* algorithm:
      *     Adds the start vertex in the PQ
@@ -41,9 +43,32 @@ public class AStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
      * @param timeout the timeout value
      */
     public AStarSolver(AStarGraph<Vertex> input, Vertex start, Vertex end, double timeout) {
+        this(input, start, end, timeout, FringeMode.DECREASE_KEY);
+    }
+
+    /**
+     * Finds the shortest path from {@code start} to {@code end} of the graph {@code input}
+     * like {@link #AStarSolver(AStarGraph, Object, Object, double)}, keeping the fringe
+     * as {@code mode} says. In {@link FringeMode#LAZY_DELETION} mode, a vertex whose
+     * distance improves is added to a plain heap again instead of having its priority
+     * changed, and an entry removed from the heap is skipped if the vertex's distance has
+     * improved since it was added. Vertices are visited in the same order up to ties.
+     *
+     * @param input the graph
+     * @param start the start vertex
+     * @param end the goal vertex
+     * @param timeout the timeout value
+     * @param mode how to keep the fringe
+     */
+    public AStarSolver(AStarGraph<Vertex> input, Vertex start, Vertex end, double timeout,
+                       FringeMode mode) {
 
         // Initialize all variables
-        fringes = new ArrayHeapMinPQ<>();
+        if (mode == FringeMode.LAZY_DELETION) {
+            lazyFringes = new LazyHeap<>();
+        } else {
+            fringes = new ArrayHeapMinPQ<>();
+        }
         distTo = new HashMap<>();
         edgeTo = new HashMap<>();
         numStatesExplored = 0;
@@ -52,13 +77,18 @@ public class AStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
         timeSpent = 0;
 
         // Adds the start vertex in the PQ
-        fringes.add(start, input.estimatedDistanceToGoal(start, end));
         distTo.put(start, 0.0);
+        push(start, input.estimatedDistanceToGoal(start, end));
 
         // Repeats until the PQ is empty, PQ.getSmallest() is the goal, or timeout is exceeded
         long startTime = System.currentTimeMillis();  // timing start
-        while (fringes.size() != 0) {
-            Vertex p = fringes.removeSmallest();
+        while (fringeSize() != 0) {
+            if (lazyFringes != null
+                    && lazyFringes.smallestDistance() > distTo.get(lazyFringes.getSmallest())) {
+                lazyFringes.removeSmallest();  // outdated entry
+                continue;
+            }
+            Vertex p = fringes != null ? fringes.removeSmallest() : lazyFringes.removeSmallest();
             timeSpent = (System.currentTimeMillis() - startTime)/1000.0;
             numStatesExplored++;
             // If goal is found, stops running and updates the solution
@@ -98,16 +128,34 @@ public class AStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
             if (!distTo.containsKey(q) || distTo.get(p) + w < distTo.get(q)) {
                 distTo.put(q, distTo.get(p) + w);
                 edgeTo.put(q, p);
-                if (fringes.contains(q)) {
-                    fringes.changePriority(q, distTo.get(q) + input.estimatedDistanceToGoal(q, end));
-                }
-                else {
-                    fringes.add(q, distTo.get(q) + input.estimatedDistanceToGoal(q, end));
-                }
+                push(q, distTo.get(q) + input.estimatedDistanceToGoal(q, end));
             }
         }
     }
 
+    /**
+     * Adds vertex {@code q} to the {@code fringes} with the given priority, or updates
+     * its priority if already there. In lazy deletion mode, always adds a new entry
+     * recording the current distance to q.
+     *
+     * @param q the vertex
+     * @param priority the distance from start to q + the estimated distance to the goal
+     */
+    private void push(Vertex q, double priority) {
+        if (lazyFringes != null) {
+            lazyFringes.add(q, priority, distTo.get(q));
+        } else if (fringes.contains(q)) {
+            fringes.changePriority(q, priority);
+        } else {
+            fringes.add(q, priority);
+        }
+    }
+
+    /** Returns the number of entries in the fringe, outdated ones included. */
+    private int fringeSize() {
+        return fringes != null ? fringes.size() : lazyFringes.size();
+    }
+
     /**
      * Stores the vertices of the solution to shortest path in order the the list of vertices
      * {@code solution}.
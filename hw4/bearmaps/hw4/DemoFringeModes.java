@@ -0,0 +1,89 @@
+package bearmaps.hw4;
+
+import bearmaps.hw4.slidingpuzzle.Board;
+import bearmaps.hw4.slidingpuzzle.BoardGraph;
+import bearmaps.hw4.streetmap.StreetMapGraph;
+import bearmaps.hw4.wordladderpuzzle.WordGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the two fringe modes of AStarSolver on the Berkeley street map, the
+ * sliding puzzles and word ladders: for each graph, runs the same searches in both
+ * modes up to five times and prints the best total time, the states explored and the
+ * total weight of the solutions, which must agree.
+ * Make sure to set your current working directory to be the one containing
+ * berkeley-street-data.simple, the puzzle files and words10000.txt.
+ */
+public class DemoFringeModes {
+    private static final int ROUNDS = 5;
+    private static final long LONG_ROUND = 10_000_000_000L;  // no more rounds after one this long
+    private static final int NUM_STREET_ROUTES = 200;
+
+    private static final String[] PUZZLES = {"BasicPuzzle1.txt", "BasicPuzzle2.txt",
+        "BasicPuzzle3.txt", "BasicPuzzle4.txt", "HardPuzzle1.txt", "HardPuzzle2.txt",
+        "HardPuzzle3.txt", "ElitePuzzle1.txt", "ElitePuzzle2.txt", "ElitePuzzle3.txt"};
+
+    private static final String[][] LADDERS = {{"horse", "nurse"}, {"cat", "dog"},
+        {"hello", "world"}, {"stone", "money"}, {"black", "white"}, {"warm", "cold"}};
+
+    public static void main(String[] args) {
+        StreetMapGraph smg = StreetMapGraph.readFromSimpleFormat("berkeley-street-data.simple");
+        List<Long> ids = new ArrayList<>(smg.vertices());
+        ids.sort(null);
+        Random random = new Random(61);
+        List<Long> streetStarts = new ArrayList<>();
+        List<Long> streetGoals = new ArrayList<>();
+        for (int i = 0; i < NUM_STREET_ROUTES; i++) {
+            streetStarts.add(ids.get(random.nextInt(ids.size())));
+            streetGoals.add(ids.get(random.nextInt(ids.size())));
+        }
+        compare("street map", smg, streetStarts, streetGoals);
+
+        List<Board> boardStarts = new ArrayList<>();
+        List<Board> boardGoals = new ArrayList<>();
+        for (String puzzle : PUZZLES) {
+            Board start = Board.readBoard(puzzle);
+            boardStarts.add(start);
+            boardGoals.add(Board.solved(start.size()));
+        }
+        compare("sliding puzzles", new BoardGraph(), boardStarts, boardGoals);
+
+        List<String> wordStarts = new ArrayList<>();
+        List<String> wordGoals = new ArrayList<>();
+        for (String[] ladder : LADDERS) {
+            wordStarts.add(ladder[0]);
+            wordGoals.add(ladder[1]);
+        }
+        compare("word ladders", new WordGraph(), wordStarts, wordGoals);
+    }
+
+    /** Runs the searches from each start to its goal in both modes and prints a summary. */
+    private static <Vertex> void compare(String name, AStarGraph<Vertex> graph,
+                                         List<Vertex> starts, List<Vertex> goals) {
+        System.out.println(name + ", " + starts.size() + " searches:");
+        for (FringeMode mode : FringeMode.values()) {
+            long best = Long.MAX_VALUE;
+            long states = 0;
+            double weight = 0;
+            for (int round = 0; round < ROUNDS && (round == 0 || best < LONG_ROUND); round++) {
+                states = 0;
+                weight = 0;
+                long startTime = System.nanoTime();
+                for (int i = 0; i < starts.size(); i++) {
+                    ShortestPathsSolver<Vertex> solver =
+                            new AStarSolver<>(graph, starts.get(i), goals.get(i), 60, mode);
+                    states += solver.numStatesExplored();
+                    if (solver.outcome() == SolverOutcome.SOLVED) {
+                        weight += solver.solutionWeight();
+                    }
+                }
+                best = Math.min(best, System.nanoTime() - startTime);
+            }
+            System.out.printf("    %-13s %9.1f ms, %9d states explored, total weight %.6f%n",
+                    mode, best / 1e6, states, weight);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package bearmaps.hw4;
+
+/**
+ * How {@link AStarSolver} keeps its fringe: in an indexed PQ whose priorities are
+ * lowered in place, or in a plain heap to which a vertex is added again whenever its
+ * distance improves, the outdated entries being skipped when they are removed.
+ */
+public enum FringeMode {
+    DECREASE_KEY, LAZY_DELETION
+}
@@ -0,0 +1,104 @@
+package bearmaps.hw4;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of entries that may repeat items, for A* with lazy deletion.
+ * Each entry is an item, its priority and the distance the item had when the entry
+ * was added, which tells the solver whether the entry is outdated. The entries are
+ * kept in parallel arrays, one-based, with no map from items to positions, so an
+ * entry costs no node object and no hashing.
+ *
+ * @author Hsingyi Lin
+ */
+class LazyHeap<T> {
+    private static final int INIT_SIZE = 16;
+
+    private double[] priorities = new double[INIT_SIZE];  // entries at indices 1 to n
+    private double[] distances = new double[INIT_SIZE];
+    private Object[] items = new Object[INIT_SIZE];
+    private int n;
+
+    /** Adds ITEM with the given PRIORITY and DISTANCE, even if ITEM is already in. */
+    void add(T item, double priority, double distance) {
+        if (n + 1 == items.length) {
+            resize(items.length * 2);
+        }
+        n++;
+        int x = n;
+        while (x > 1 && priorities[x / 2] > priority) {
+            move(x / 2, x);
+            x /= 2;
+        }
+        set(x, item, priority, distance);
+    }
+
+    /** Returns the item of the entry with smallest priority. */
+    @SuppressWarnings("unchecked")
+    T getSmallest() {
+        if (n == 0) {
+            throw new NoSuchElementException("PQ is empty");
+        }
+        return (T) items[1];
+    }
+
+    /** Returns the distance recorded with the entry with smallest priority. */
+    double smallestDistance() {
+        if (n == 0) {
+            throw new NoSuchElementException("PQ is empty");
+        }
+        return distances[1];
+    }
+
+    /** Removes the entry with smallest priority and returns its item. */
+    T removeSmallest() {
+        T smallest = getSmallest();
+        Object item = items[n];
+        double priority = priorities[n];
+        double distance = distances[n];
+        items[n] = null;
+        n--;
+        int x = 1;
+        while (2 * x <= n) {
+            int child = 2 * x;
+            if (child < n && priorities[child + 1] < priorities[child]) {
+                child++;
+            }
+            if (priorities[child] >= priority) {
+                break;
+            }
+            move(child, x);
+            x = child;
+        }
+        if (n > 0) {
+            items[x] = item;
+            priorities[x] = priority;
+            distances[x] = distance;
+        }
+        return smallest;
+    }
+
+    /** Returns the number of entries, outdated ones included. */
+    int size() {
+        return n;
+    }
+
+    private void set(int x, T item, double priority, double distance) {
+        items[x] = item;
+        priorities[x] = priority;
+        distances[x] = distance;
+    }
+
+    private void move(int from, int to) {
+        items[to] = items[from];
+        priorities[to] = priorities[from];
+        distances[to] = distances[from];
+    }
+
+    private void resize(int capacity) {
+        priorities = Arrays.copyOf(priorities, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        items = Arrays.copyOf(items, capacity);
+    }
+}
@@ -70,7 +70,7 @@ public class ArrayHeapMinPQ<T> implements ExtrinsicMinPQ<T> {
         if (contains(item)) {
             throw new IllegalArgumentException("argument to add() already exists in PQ");
         }
-        if (size() / (double) heap.length > loadFactorMax) {
+        if (size() + 1 >= heap.length || size() / (double) heap.length > loadFactorMax) {
             resize(heap.length * 2);
         }
         int pos = size() + 1;
@@ -176,7 +176,7 @@ public class ArrayHeapMinPQ<T> implements ExtrinsicMinPQ<T> {
         if (size() == 0) {
             throw new NoSuchElementException("PQ is empty");
         }
-        if (size() / (double) heap.length < loadFactorMin) {
+        if (heap.length > INIT_SIZE && size() / (double) heap.length < loadFactorMin) {
             resize(heap.length / 2);
         }
         T smallest = heap[1].getItem();
@@ -184,6 +184,7 @@ public class ArrayHeapMinPQ<T> implements ExtrinsicMinPQ<T> {
         heap[size()] = null;
         items.remove(smallest);
         if (size() > 0) {
+            items.put(heap[1].getItem(), 1);
             sink(1);
         }
         return smallest;
@@ -9,4 +9,11 @@ import java.util.List;
 public interface AStarGraph<Vertex> {
     List<WeightedEdge<Vertex>> neighbors(Vertex v);
     double estimatedDistanceToGoal(Vertex s, Vertex goal);
+
+    /* Returns true if no edge weight is negative and the estimate is consistent, that
+     * is, it never drops by more than the weight of an edge along the edge. A* then
+     * removes vertices in order of non-decreasing priority. */
+    default boolean isConsistent() {
+        return false;
+    }
 }
@@ -1,6 +1,8 @@
 package bearmaps.hw4;
 
-import bearmaps.proj2ab.ArrayHeapMinPQ;
+import bearmaps.proj2ab.DaryHeapMinPQ;
+import bearmaps.proj2ab.ExtrinsicMinPQ;
+import bearmaps.proj2ab.RadixHeapMinPQ;
 
 import java.util.*;
 
@@ -12,7 +14,7 @@ import java.util.*;
  */
 
 public class AStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
-    private ArrayHeapMinPQ<Vertex> fringes;  // the PQ stores vertices to be visited
+    private ExtrinsicMinPQ<Vertex> fringes;  // the PQ stores vertices to be visited
     private HashMap<Vertex, Double> distTo;  // distance from the start vertex
     private HashMap<Vertex, Vertex> edgeTo;  // edge leading to the vertices
     private int numStatesExplored;           // number of vertices visited
@@ -24,7 +26,8 @@ public class AStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
     /**
      * Finds the shortest path from {@code start} to {@code end} of the graph {@code input}
      * using a* algorithm. Initialize variables and stores the outcome and solution. If the
-     * given timeout {@code timeout} is exceeded, it stops running.
+     * given timeout {@code timeout} is exceeded, it stops running. The PQ is a radix heap
+     * if the graph is consistent, so that priorities only grow, and a d-ary heap otherwise.
      *
      * The A* algorithm:
      *     Adds the start vertex in the PQ
@@ -43,7 +46,7 @@ public class AStarSolver<Vertex> implements ShortestPathsSolver<Vertex> {
     public AStarSolver(AStarGraph<Vertex> input, Vertex start, Vertex end, double timeout) {
 
         // Initialize all variables
-        fringes = new ArrayHeapMinPQ<>();
+        fringes = input.isConsistent() ? new RadixHeapMinPQ<>() : new DaryHeapMinPQ<>();
         distTo = new HashMap<>();
         edgeTo = new HashMap<>();
         numStatesExplored = 0;
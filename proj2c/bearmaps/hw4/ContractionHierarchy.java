@@ -0,0 +1,352 @@
+package bearmaps.hw4;
+
+import bearmaps.hw4.streetmap.SnapshotIO;
+import bearmaps.proj2ab.ArrayIndexMinPQ;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A contraction hierarchy of an undirected {@link IndexedAStarGraph}. Vertices are
+ * contracted one by one, cheapest first: contracting a vertex removes it from the
+ * graph and adds a shortcut between two of its neighbors whenever the path through
+ * it is the only shortest path between them. The rank of a vertex is the order in
+ * which it was contracted.
+ *
+ * The hierarchy keeps, for each vertex, the edges and shortcuts to its neighbors of
+ * higher rank at the time it was contracted (the upward graph), in compressed sparse
+ * row arrays. Every shortest path then has an equally short path in the hierarchy
+ * that goes up in rank and then down, which {@link ContractionHierarchySolver} finds
+ * by searching the upward graph from both ends. A shortcut remembers the vertex it
+ * bypasses, so that it can be unpacked into the original path.
+ *
+ * Building a hierarchy is meant to be done offline; {@link #write} and {@link #read}
+ * save it to and restore it from a snapshot.
+ *
+ * @author Hsingyi Lin
+ */
+public class ContractionHierarchy {
+
+    /**
+     * Maximum number of vertices a witness search may settle before giving up, when
+     * estimating the priority of a vertex and when actually contracting it. Giving up
+     * early only adds shortcuts that are not needed.
+     */
+    private static final int ESTIMATE_SEARCH_LIMIT = 50;
+    private static final int CONTRACT_SEARCH_LIMIT = 500;
+
+    private final IndexedAStarGraph graph;
+    private int[] rank;         // the order in which each vertex was contracted
+    private int[] upStart;      // edges of v are at [upStart[v], upStart[v + 1])
+    private int[] upTarget;     // the higher ranked end of each edge
+    private double[] upWeight;  // the weight of each edge
+    private int[] upMiddle;     // the vertex a shortcut bypasses, -1 for original edges
+
+    /**
+     * Builds the contraction hierarchy of the graph {@code graph}.
+     *
+     * @param graph the graph
+     * @throws IllegalArgumentException if the graph is not undirected
+     */
+    public ContractionHierarchy(IndexedAStarGraph graph) {
+        if (!graph.isUndirected()) {
+            throw new IllegalArgumentException("graph must be undirected");
+        }
+        this.graph = graph;
+        new Contractor().contractAll();
+    }
+
+    private ContractionHierarchy(IndexedAStarGraph graph, int[] rank, int[] upStart,
+                                 int[] upTarget, double[] upWeight, int[] upMiddle) {
+        this.graph = graph;
+        this.rank = rank;
+        this.upStart = upStart;
+        this.upTarget = upTarget;
+        this.upWeight = upWeight;
+        this.upMiddle = upMiddle;
+    }
+
+    /**
+     * Writes this hierarchy as the rank of each vertex and its upward graph.
+     *
+     * @param out the snapshot output
+     */
+    public void write(DataOutput out) throws IOException {
+        SnapshotIO.writeInts(out, rank, rank.length);
+        SnapshotIO.writeInts(out, upStart, upStart.length);
+        SnapshotIO.writeInts(out, upTarget, upTarget.length);
+        SnapshotIO.writeDoubles(out, upWeight, upWeight.length);
+        SnapshotIO.writeInts(out, upMiddle, upMiddle.length);
+    }
+
+    /**
+     * Restores a hierarchy of the graph {@code graph} written by {@link #write}.
+     *
+     * @param graph the graph the hierarchy was built from
+     * @param in the snapshot payload
+     * @return the hierarchy, or null if it was built from a graph of a different size
+     */
+    public static ContractionHierarchy read(IndexedAStarGraph graph, ByteBuffer in) {
+        int[] rank = SnapshotIO.readInts(in);
+        if (rank.length != graph.numVertices()) {
+            return null;
+        }
+        int[] upStart = SnapshotIO.readInts(in);
+        int[] upTarget = SnapshotIO.readInts(in);
+        double[] upWeight = SnapshotIO.readDoubles(in);
+        int[] upMiddle = SnapshotIO.readInts(in);
+        return new ContractionHierarchy(graph, rank, upStart, upTarget, upWeight, upMiddle);
+    }
+
+    /** Returns the graph this hierarchy was built from. */
+    public IndexedAStarGraph graph() {
+        return graph;
+    }
+
+    /** Returns the number of edges and shortcuts of the upward graph. */
+    public int numUpwardEdges() {
+        return upTarget.length;
+    }
+
+    int upStart(int v) {
+        return upStart[v];
+    }
+
+    int upEnd(int v) {
+        return upStart[v + 1];
+    }
+
+    int upTarget(int e) {
+        return upTarget[e];
+    }
+
+    double upWeight(int e) {
+        return upWeight[e];
+    }
+
+    /**
+     * Passes the indices of the vertices on the original path of the upward edge
+     * {@code e} between {@code from} and {@code to} to {@code path}, in order from
+     * {@code from}, leaving out {@code from} itself.
+     */
+    void unpack(int from, int to, int e, IntConsumer path) {
+        int middle = upMiddle[e];
+        if (middle == -1) {
+            path.accept(to);
+            return;
+        }
+        // The bypassed vertex ranks lower than both ends, so both halves of the
+        // shortcut are among its upward edges.
+        unpack(from, middle, upEdge(middle, from), path);
+        unpack(middle, to, upEdge(middle, to), path);
+    }
+
+    /** Returns the upward edge from {@code v} to {@code w}. */
+    private int upEdge(int v, int w) {
+        for (int e = upStart[v]; e < upStart[v + 1]; e++) {
+            if (upTarget[e] == w) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("no upward edge from " + v + " to " + w);
+    }
+
+    /**
+     * Contracts the vertices of the graph in order of their edge difference: the
+     * number of shortcuts contracting a vertex would add minus the number of edges
+     * it would remove, plus the number of its neighbors already contracted to keep
+     * the contraction spread out. The adjacency lists of the remaining graph are
+     * kept as growable arrays per vertex.
+     */
+    private class Contractor {
+        private final int n = graph.numVertices();
+        private final int[][] adjTarget = new int[n][];
+        private final double[][] adjWeight = new double[n][];
+        private final int[][] adjMiddle = new int[n][];
+        private final int[] degree = new int[n];
+        private final int[] contractedNeighbors = new int[n];
+
+        /* The upward edges of each vertex, copied out when it is contracted. */
+        private final int[][] outTarget = new int[n][];
+        private final double[][] outWeight = new double[n][];
+        private final int[][] outMiddle = new int[n][];
+
+        /* The state of witness searches. */
+        private final SearchState witness = new SearchState();
+
+        Contractor() {
+            for (int v = 0; v < n; v++) {
+                int size = graph.edgeEnd(v) - graph.edgeStart(v);
+                adjTarget[v] = new int[Math.max(size, 2)];
+                adjWeight[v] = new double[Math.max(size, 2)];
+                adjMiddle[v] = new int[Math.max(size, 2)];
+                for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e++) {
+                    if (graph.edgeTarget(e) != v) {
+                        addEdge(v, graph.edgeTarget(e), graph.edgeWeight(e), -1);
+                    }
+                }
+            }
+        }
+
+        void contractAll() {
+            ArrayIndexMinPQ order = new ArrayIndexMinPQ(n);
+            for (int v = 0; v < n; v++) {
+                order.add(v, priority(v));
+            }
+            rank = new int[n];
+            int contracted = 0;
+            while (order.size() != 0) {
+                int v = order.removeSmallest();
+                // Priorities go stale as the graph changes; if v is no longer the
+                // cheapest vertex, puts it back with its current priority.
+                double priority = priority(v);
+                if (order.size() != 0 && priority > order.smallestPriority()) {
+                    order.add(v, priority);
+                    continue;
+                }
+                contract(v);
+                rank[v] = contracted++;
+                for (int i = 0; i < degree[v]; i++) {
+                    int u = adjTarget[v][i];
+                    contractedNeighbors[u]++;
+                    order.changePriority(u, priority(u));
+                }
+            }
+            buildUpwardGraph();
+        }
+
+        /** Returns the priority of contracting {@code v}; lower goes first. */
+        private double priority(int v) {
+            return shortcuts(v, false) - degree[v] + contractedNeighbors[v];
+        }
+
+        /**
+         * Removes {@code v} from the graph, keeping its remaining edges as its
+         * upward edges and adding the shortcuts its removal needs.
+         */
+        private void contract(int v) {
+            outTarget[v] = Arrays.copyOf(adjTarget[v], degree[v]);
+            outWeight[v] = Arrays.copyOf(adjWeight[v], degree[v]);
+            outMiddle[v] = Arrays.copyOf(adjMiddle[v], degree[v]);
+            shortcuts(v, true);
+            for (int i = 0; i < degree[v]; i++) {
+                removeEdge(adjTarget[v][i], v);
+            }
+        }
+
+        /**
+         * Returns the number of shortcuts removing {@code v} needs: one for each
+         * pair of its neighbors whose shortest path goes through v, as found by a
+         * bounded witness search around v. Adds them to the graph if {@code add}.
+         */
+        private int shortcuts(int v, boolean add) {
+            int count = 0;
+            for (int i = 0; i + 1 < degree[v]; i++) {
+                int u = adjTarget[v][i];
+                double toU = adjWeight[v][i];
+                double limit = 0;
+                for (int j = i + 1; j < degree[v]; j++) {
+                    limit = Math.max(limit, toU + adjWeight[v][j]);
+                }
+                witnessSearch(u, v, limit, add ? CONTRACT_SEARCH_LIMIT : ESTIMATE_SEARCH_LIMIT);
+                for (int j = i + 1; j < degree[v]; j++) {
+                    int w = adjTarget[v][j];
+                    double through = toU + adjWeight[v][j];
+                    if (witness.seen(w) && witness.distTo[w] <= through) {
+                        continue;
+                    }
+                    count++;
+                    if (add) {
+                        addEdge(u, w, through, v);
+                        addEdge(w, u, through, v);
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Runs Dijkstra's algorithm from {@code s} avoiding {@code excluded}, until
+         * every vertex within {@code limit} is settled or {@code maxSettled} vertices
+         * are.
+         */
+        private void witnessSearch(int s, int excluded, double limit, int maxSettled) {
+            witness.reset(n, graph.isConsistent());
+            witness.setDistTo(s, 0.0, -1, -1);
+            witness.fringes.add(s, 0.0);
+            int settled = 0;
+            while (witness.fringes.size() != 0 && settled < maxSettled) {
+                if (witness.fringes.smallestPriority() > limit) {
+                    return;
+                }
+                int p = witness.fringes.removeSmallest();
+                settled++;
+                double distP = witness.distTo[p];
+                for (int i = 0; i < degree[p]; i++) {
+                    int q = adjTarget[p][i];
+                    if (q != excluded && witness.relax(q, distP + adjWeight[p][i], p, -1)) {
+                        witness.push(q, witness.distTo[q]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds an edge from {@code v} to {@code w}, or lowers the weight of the
+         * existing one if the new edge is shorter.
+         */
+        private void addEdge(int v, int w, double weight, int middle) {
+            for (int i = 0; i < degree[v]; i++) {
+                if (adjTarget[v][i] == w) {
+                    if (weight < adjWeight[v][i]) {
+                        adjWeight[v][i] = weight;
+                        adjMiddle[v][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (degree[v] == adjTarget[v].length) {
+                int capacity = degree[v] * 2;
+                adjTarget[v] = Arrays.copyOf(adjTarget[v], capacity);
+                adjWeight[v] = Arrays.copyOf(adjWeight[v], capacity);
+                adjMiddle[v] = Arrays.copyOf(adjMiddle[v], capacity);
+            }
+            adjTarget[v][degree[v]] = w;
+            adjWeight[v][degree[v]] = weight;
+            adjMiddle[v][degree[v]] = middle;
+            degree[v]++;
+        }
+
+        /** Removes the edge from {@code v} to {@code w}. */
+        private void removeEdge(int v, int w) {
+            for (int i = 0; i < degree[v]; i++) {
+                if (adjTarget[v][i] == w) {
+                    int last = --degree[v];
+                    adjTarget[v][i] = adjTarget[v][last];
+                    adjWeight[v][i] = adjWeight[v][last];
+                    adjMiddle[v][i] = adjMiddle[v][last];
+                    return;
+                }
+            }
+        }
+
+        /** Packs the upward edges of all vertices into the CSR arrays. */
+        private void buildUpwardGraph() {
+            upStart = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                upStart[v + 1] = upStart[v] + outTarget[v].length;
+            }
+            upTarget = new int[upStart[n]];
+            upWeight = new double[upStart[n]];
+            upMiddle = new int[upStart[n]];
+            for (int v = 0; v < n; v++) {
+                System.arraycopy(outTarget[v], 0, upTarget, upStart[v], outTarget[v].length);
+                System.arraycopy(outWeight[v], 0, upWeight, upStart[v], outWeight[v].length);
+                System.arraycopy(outMiddle[v], 0, upMiddle, upStart[v], outMiddle[v].length);
+            }
+        }
+    }
+}
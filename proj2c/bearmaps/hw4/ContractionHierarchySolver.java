@@ -0,0 +1,187 @@
+package bearmaps.hw4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * {@code ContractionHierarchySolver} finds shortest paths with a
+ * {@link ContractionHierarchy}. It runs Dijkstra's algorithm on the upward graph
+ * from both the start and the goal, since a shortest path in the hierarchy only goes
+ * up in rank from the start and down in rank to the goal. Each search stops once its
+ * smallest distance is no less than the shortest path found through a vertex settled
+ * by both. The shortcuts of the path are then unpacked, so the solution holds the same
+ * vertices as a solution on the original graph, and its edges are the edges of the
+ * original graph between them.
+ *
+ * @author Hsingyi Lin
+ */
+
+public class ContractionHierarchySolver implements IndexedShortestPathsSolver {
+
+    /** Per-thread arrays reused across searches, one set for each direction. */
+    private static final ThreadLocal<SearchState> STATES = ThreadLocal.withInitial(SearchState::new);
+    private static final ThreadLocal<SearchState> REVERSE_STATES =
+            ThreadLocal.withInitial(SearchState::new);
+
+    private int numStatesExplored;           // number of vertices visited
+    private SolverOutcome outcome;           // problem solve outcome
+    private List<Long> solution;             // vertices of the shortest path in order
+    private int[] solutionVertices;          // indices of the vertices of the shortest path
+    private int[] solutionEdges;             // indices of the edges of the shortest path
+    private int pathLength;                  // number of vertices unpacked so far
+    private double solutionWeight;           // total weight of the shortest path
+    private double timeSpent;                // total time spent finding the shortest path
+
+    /**
+     * Finds the shortest path from the vertex with id {@code start} to the vertex
+     * with id {@code end} of the graph of the hierarchy {@code ch}. If the given
+     * timeout {@code timeout} (in seconds) is exceeded, it stops running.
+     *
+     * @param ch the contraction hierarchy
+     * @param start the id of the start vertex
+     * @param end the id of the goal vertex
+     * @param timeout the timeout value
+     */
+    public ContractionHierarchySolver(ContractionHierarchy ch, long start, long end,
+                                      double timeout) {
+        solution = new ArrayList<>();
+        solutionVertices = new int[0];
+        solutionEdges = new int[0];
+        long startTime = System.nanoTime();
+        IndexedAStarGraph input = ch.graph();
+        int s = input.index(start);
+        int t = input.index(end);
+        if (s < 0 || t < 0) {
+            outcome = SolverOutcome.UNSOLVABLE;
+            return;
+        }
+
+        SearchState forward = STATES.get();
+        SearchState reverse = REVERSE_STATES.get();
+        forward.reset(input.numVertices(), input.isConsistent());
+        reverse.reset(input.numVertices(), input.isConsistent());
+        forward.setDistTo(s, 0.0, -1, -1);
+        forward.fringes.add(s, 0.0);
+        reverse.setDistTo(t, 0.0, -1, -1);
+        reverse.fringes.add(t, 0.0);
+
+        double best = Double.POSITIVE_INFINITY;  // weight of the best path found so far
+        int meet = -1;                           // vertex the best path goes through
+        while (true) {
+            boolean forwardDone = forward.fringes.size() == 0
+                    || forward.fringes.smallestPriority() >= best;
+            boolean reverseDone = reverse.fringes.size() == 0
+                    || reverse.fringes.smallestPriority() >= best;
+            if (forwardDone && reverseDone) {
+                break;
+            }
+            boolean isForward = reverseDone
+                    || !forwardDone && forward.fringes.size() <= reverse.fringes.size();
+            SearchState state = isForward ? forward : reverse;
+            SearchState other = isForward ? reverse : forward;
+
+            int p = state.fringes.removeSmallest();
+            numStatesExplored++;
+            // If timeout is exceeded, stops running
+            if ((numStatesExplored & 0xFF) == 0
+                    && (System.nanoTime() - startTime) / 1e9 > timeout) {
+                outcome = SolverOutcome.TIMEOUT;
+                timeSpent = (System.nanoTime() - startTime) / 1e9;
+                return;
+            }
+            double distP = state.distTo[p];
+            if (other.seen(p) && distP + other.distTo[p] < best) {
+                best = distP + other.distTo[p];
+                meet = p;
+            }
+            for (int e = ch.upStart(p); e < ch.upEnd(p); e++) {
+                int q = ch.upTarget(e);
+                double distQ = distP + ch.upWeight(e);
+                if (distQ < best && state.relax(q, distQ, p, e)) {
+                    state.push(q, distQ);
+                }
+            }
+        }
+
+        if (meet == -1) {
+            // The searches never met
+            outcome = SolverOutcome.UNSOLVABLE;
+        } else {
+            outcome = SolverOutcome.SOLVED;
+            solutionWeight = best;
+            updateSolution(ch, forward, reverse, s, meet);
+        }
+        timeSpent = (System.nanoTime() - startTime) / 1e9;
+    }
+
+    /**
+     * Stores the vertices on the path from {@code s} up to {@code meet} in the forward
+     * search and back down in the reverse search in order as the solution, unpacking
+     * every shortcut on the way.
+     */
+    private void updateSolution(ContractionHierarchy ch, SearchState forward,
+                                SearchState reverse, int s, int meet) {
+        // Collects the upward path to the meeting vertex, which is walked backwards
+        int numUp = 0;
+        for (int v = meet; v != s; v = forward.vertexTo[v]) {
+            numUp++;
+        }
+        int[] up = new int[numUp];
+        for (int v = meet, i = numUp - 1; v != s; v = forward.vertexTo[v], i--) {
+            up[i] = v;
+        }
+        solutionVertices = new int[numUp + 1];
+        IntConsumer path = this::addToPath;
+        addToPath(s);
+        int from = s;
+        for (int to : up) {
+            ch.unpack(from, to, forward.edgeTo[to], path);
+            from = to;
+        }
+        for (int v = meet; reverse.vertexTo[v] != -1; v = reverse.vertexTo[v]) {
+            ch.unpack(v, reverse.vertexTo[v], reverse.edgeTo[v], path);
+        }
+
+        IndexedAStarGraph graph = ch.graph();
+        solutionVertices = Arrays.copyOf(solutionVertices, pathLength);
+        solutionEdges = new int[pathLength - 1];
+        solution = new ArrayList<>(pathLength);
+        for (int i = 0; i < pathLength; i++) {
+            solution.add(graph.id(solutionVertices[i]));
+            if (i > 0) {
+                solutionEdges[i - 1] = graph.edgeIndex(solutionVertices[i - 1], solutionVertices[i]);
+            }
+        }
+    }
+
+    /** Appends the vertex {@code v} to the solution being unpacked. */
+    private void addToPath(int v) {
+        if (pathLength == solutionVertices.length) {
+            solutionVertices = Arrays.copyOf(solutionVertices, pathLength * 2);
+        }
+        solutionVertices[pathLength++] = v;
+    }
+
+    @Override
+    public SolverOutcome outcome() { return outcome; }
+
+    @Override
+    public List<Long> solution() { return solution; }
+
+    @Override
+    public int[] solutionVertices() { return solutionVertices; }
+
+    @Override
+    public int[] solutionEdges() { return solutionEdges; }
+
+    @Override
+    public double solutionWeight() { return solutionWeight; }
+
+    @Override
+    public int numStatesExplored() { return numStatesExplored; }
+
+    @Override
+    public double explorationTime() { return timeSpent; }
+}
@@ -0,0 +1,48 @@
+package bearmaps.hw4;
+
+/**
+ * Represents a graph whose vertices are numbered 0 to numVertices() - 1 and whose
+ * outgoing edges are numbered contiguously, so that it can be searched without
+ * boxing vertices or allocating edge objects. Each vertex also has a long id, which
+ * is how vertices are named outside the graph.
+ */
+public interface IndexedAStarGraph {
+    /* Returns the number of vertices. */
+    int numVertices();
+    /* Returns the index of the vertex with the given id, or -1 if there is none. */
+    int index(long id);
+    /* Returns the id of vertex V. */
+    long id(int v);
+    /* Returns the first edge leaving vertex V. */
+    int edgeStart(int v);
+    /* Returns one past the last edge leaving vertex V. */
+    int edgeEnd(int v);
+    /* Returns the vertex edge E leads to. */
+    int edgeTarget(int e);
+    /* Returns the weight of edge E. */
+    double edgeWeight(int e);
+    /* Returns an estimate of the distance from vertex S to vertex GOAL. */
+    double estimatedDistanceToGoal(int s, int goal);
+    /* Returns true if every edge has a reverse edge of the same weight. */
+    boolean isUndirected();
+
+    /* Returns true if no edge weight is negative and the estimate is consistent, that
+     * is, it never drops by more than the weight of an edge along the edge. Searches
+     * then remove vertices in order of non-decreasing priority. */
+    default boolean isConsistent() {
+        return false;
+    }
+
+    /* Returns the edge from vertex FROM to vertex TO, or -1 if there is none. */
+    default int edgeIndex(int from, int to) {
+        if (from < 0 || to < 0) {
+            return -1;
+        }
+        for (int e = edgeStart(from); e < edgeEnd(from); e++) {
+            if (edgeTarget(e) == to) {
+                return e;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,273 @@
+package bearmaps.hw4;
+
+import bearmaps.proj2ab.IndexMinPQ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code IndexedAStarSolver} implements the same A* algorithm as {@link AStarSolver},
+ * specialized for an {@link IndexedAStarGraph}. The distances, parents and fringe of a
+ * search are kept in primitive arrays indexed by vertex, and these arrays are reused
+ * by every search run on the same thread, so a search allocates little more than its
+ * solution.
+ *
+ * In {@link SearchMode#BIDIRECTIONAL} mode, a forward search from the start towards
+ * the goal and a reverse search from the goal towards the start take turns, always
+ * expanding the smaller fringe. Whenever a vertex is reached by both, the path
+ * through it is a candidate solution; the search stops once the smallest priority of
+ * either fringe, a lower bound on any path not found yet, is no less than the best
+ * candidate. Vertices whose priority is already no less than the best candidate are
+ * never added to a fringe.
+ *
+ * The solution is also kept as the indices of its vertices and edges, read off the
+ * parent arrays of the search; the edges of the reverse half of a bidirectional
+ * search are the reverses of those it went through.
+ *
+ * @author Hsingyi Lin
+ */
+
+public class IndexedAStarSolver implements IndexedShortestPathsSolver {
+
+    /** Per-thread arrays reused across searches, one set for each direction. */
+    private static final ThreadLocal<SearchState> STATES = ThreadLocal.withInitial(SearchState::new);
+    private static final ThreadLocal<SearchState> REVERSE_STATES =
+            ThreadLocal.withInitial(SearchState::new);
+
+    private int numStatesExplored;           // number of vertices visited
+    private SolverOutcome outcome;           // problem solve outcome
+    private List<Long> solution;             // vertices of the shortest path in order
+    private int[] solutionVertices;          // indices of the vertices of the shortest path
+    private int[] solutionEdges;             // indices of the edges of the shortest path
+    private double solutionWeight;           // total weight of the shortest path
+    private double timeSpent;                // total time spent finding the shortest path
+    private long startTime;                  // System.nanoTime() at the start
+    private double timeout;                  // the timeout value in seconds
+
+    /**
+     * Finds the shortest path from the vertex with id {@code start} to the vertex
+     * with id {@code end} of the graph {@code input} using a* algorithm. If the given
+     * timeout {@code timeout} (in seconds) is exceeded, it stops running.
+     *
+     * @param input the graph
+     * @param start the id of the start vertex
+     * @param end the id of the goal vertex
+     * @param timeout the timeout value
+     */
+    public IndexedAStarSolver(IndexedAStarGraph input, long start, long end, double timeout) {
+        this(input, start, end, timeout, SearchMode.UNIDIRECTIONAL);
+    }
+
+    /**
+     * Finds the shortest path from the vertex with id {@code start} to the vertex
+     * with id {@code end} of the graph {@code input} using a* algorithm in the given
+     * mode. Bidirectional search needs an undirected graph, so on a directed graph
+     * it falls back to unidirectional search.
+     *
+     * @param input the graph
+     * @param start the id of the start vertex
+     * @param end the id of the goal vertex
+     * @param timeout the timeout value
+     * @param mode whether to search from both ends
+     */
+    public IndexedAStarSolver(IndexedAStarGraph input, long start, long end, double timeout,
+                              SearchMode mode) {
+        solution = new ArrayList<>();
+        solutionVertices = new int[0];
+        solutionEdges = new int[0];
+        startTime = System.nanoTime();
+        this.timeout = timeout;
+        int s = input.index(start);
+        int t = input.index(end);
+        if (s < 0 || t < 0) {
+            outcome = SolverOutcome.UNSOLVABLE;
+        } else if (mode == SearchMode.BIDIRECTIONAL && input.isUndirected()) {
+            searchBidirectional(input, s, t);
+        } else {
+            search(input, s, t);
+        }
+        timeSpent = elapsedTime();
+    }
+
+    /**
+     * The A* algorithm:
+     *     Adds the start vertex in the PQ
+     *     While PQ is not empty:
+     *         remove the smallest vertex p from PQ
+     *         if p equals goal:
+     *             the shortest path is found
+     *         else:
+     *             relax all edges outgoing from p
+     */
+    private void search(IndexedAStarGraph input, int s, int t) {
+        SearchState state = STATES.get();
+        state.reset(input.numVertices(), input.isConsistent());
+        IndexMinPQ fringes = state.fringes;
+
+        // Adds the start vertex in the PQ
+        state.setDistTo(s, 0.0, -1, -1);
+        fringes.add(s, input.estimatedDistanceToGoal(s, t));
+
+        // Repeats until the PQ is empty, the goal is found, or timeout is exceeded
+        while (fringes.size() != 0) {
+            int p = fringes.removeSmallest();
+            numStatesExplored++;
+            // If goal is found, stops running and updates the solution
+            if (p == t) {
+                outcome = SolverOutcome.SOLVED;
+                solutionWeight = state.distTo[t];
+                setSolution(input, state, null, t);
+                return;
+            }
+            // If timeout is exceeded, stops running
+            if (timedOut()) {
+                outcome = SolverOutcome.TIMEOUT;
+                return;
+            }
+            double distP = state.distTo[p];
+            for (int e = input.edgeStart(p); e < input.edgeEnd(p); e++) {
+                int q = input.edgeTarget(e);
+                double distQ = distP + input.edgeWeight(e);
+                if (state.relax(q, distQ, p, e)) {
+                    state.push(q, distQ + input.estimatedDistanceToGoal(q, t));
+                }
+            }
+        }
+        // Goal is not found
+        outcome = SolverOutcome.UNSOLVABLE;
+    }
+
+    /**
+     * The bidirectional A* algorithm:
+     *     Adds the start vertex in the forward PQ and the goal in the reverse PQ
+     *     While neither PQ is empty and the best path found so far can be improved:
+     *         remove the smallest vertex p from the smaller PQ
+     *         relax all edges outgoing from p in that direction, and whenever a
+     *         vertex reached has also been reached by the other direction, update
+     *         the best path found so far
+     */
+    private void searchBidirectional(IndexedAStarGraph input, int s, int t) {
+        SearchState forward = STATES.get();
+        SearchState reverse = REVERSE_STATES.get();
+        forward.reset(input.numVertices(), input.isConsistent());
+        reverse.reset(input.numVertices(), input.isConsistent());
+
+        forward.setDistTo(s, 0.0, -1, -1);
+        forward.fringes.add(s, input.estimatedDistanceToGoal(s, t));
+        reverse.setDistTo(t, 0.0, -1, -1);
+        reverse.fringes.add(t, input.estimatedDistanceToGoal(t, s));
+
+        double best = Double.POSITIVE_INFINITY;  // weight of the best path found so far
+        int meet = -1;                           // vertex the best path goes through
+        if (s == t) {
+            best = 0.0;
+            meet = s;
+        }
+        while (forward.fringes.size() != 0 && reverse.fringes.size() != 0) {
+            if (Math.max(forward.fringes.smallestPriority(), reverse.fringes.smallestPriority())
+                    >= best) {
+                break;
+            }
+            boolean isForward = forward.fringes.size() <= reverse.fringes.size();
+            SearchState state = isForward ? forward : reverse;
+            SearchState other = isForward ? reverse : forward;
+            int goal = isForward ? t : s;
+
+            int p = state.fringes.removeSmallest();
+            numStatesExplored++;
+            // If timeout is exceeded, stops running
+            if (timedOut()) {
+                outcome = SolverOutcome.TIMEOUT;
+                return;
+            }
+            double distP = state.distTo[p];
+            for (int e = input.edgeStart(p); e < input.edgeEnd(p); e++) {
+                int q = input.edgeTarget(e);
+                double distQ = distP + input.edgeWeight(e);
+                double priority = distQ + input.estimatedDistanceToGoal(q, goal);
+                if (priority < best && state.relax(q, distQ, p, e)) {
+                    state.push(q, priority);
+                    if (other.seen(q) && distQ + other.distTo[q] < best) {
+                        best = distQ + other.distTo[q];
+                        meet = q;
+                    }
+                }
+            }
+        }
+
+        // The searches never met
+        if (meet == -1) {
+            outcome = SolverOutcome.UNSOLVABLE;
+            return;
+        }
+        outcome = SolverOutcome.SOLVED;
+        solutionWeight = best;
+        setSolution(input, forward, reverse, meet);
+    }
+
+    /** Returns true every so often once the timeout is exceeded. */
+    private boolean timedOut() {
+        return (numStatesExplored & 0xFF) == 0 && elapsedTime() > timeout;
+    }
+
+    private double elapsedTime() {
+        return (System.nanoTime() - startTime) / 1e9;
+    }
+
+    /**
+     * Stores the path from the root of {@code forward} to {@code meet}, and on to the
+     * root of {@code reverse} if it is not null, as the solution.
+     */
+    private void setSolution(IndexedAStarGraph input, SearchState forward,
+                             SearchState reverse, int meet) {
+        int up = 0;
+        for (int v = meet; v != -1; v = forward.vertexTo[v]) {
+            up++;
+        }
+        int down = 0;
+        if (reverse != null) {
+            for (int v = meet; reverse.vertexTo[v] != -1; v = reverse.vertexTo[v]) {
+                down++;
+            }
+        }
+        solutionVertices = new int[up + down];
+        solutionEdges = new int[up + down - 1];
+        int i = up - 1;
+        for (int v = meet; v != -1; v = forward.vertexTo[v], i--) {
+            solutionVertices[i] = v;
+            if (i > 0) {
+                solutionEdges[i - 1] = forward.edgeTo[v];
+            }
+        }
+        i = up;
+        for (int v = meet; i < up + down; v = reverse.vertexTo[v], i++) {
+            solutionVertices[i] = reverse.vertexTo[v];
+            solutionEdges[i - 1] = input.edgeIndex(v, reverse.vertexTo[v]);
+        }
+        solution = new ArrayList<>(solutionVertices.length);
+        for (int v : solutionVertices) {
+            solution.add(input.id(v));
+        }
+    }
+
+    @Override
+    public SolverOutcome outcome() { return outcome; }
+
+    @Override
+    public List<Long> solution() { return solution; }
+
+    @Override
+    public int[] solutionVertices() { return solutionVertices; }
+
+    @Override
+    public int[] solutionEdges() { return solutionEdges; }
+
+    @Override
+    public double solutionWeight() { return solutionWeight; }
+
+    @Override
+    public int numStatesExplored() { return numStatesExplored; }
+
+    @Override
+    public double explorationTime() { return timeSpent; }
+}
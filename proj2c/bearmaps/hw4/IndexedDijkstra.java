@@ -0,0 +1,207 @@
+package bearmaps.hw4;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Dijkstra's algorithm over an {@link IndexedAStarGraph}, for the distances from one
+ * vertex to many, or from many to many, in one search per source instead of one per
+ * pair. A search stops as soon as every target has been settled, so targets near the
+ * source are cheap however large the graph is.
+ *
+ * Searches reuse one {@link SearchState} per thread, and the rows of a distance
+ * matrix are computed in parallel on the common fork-join pool.
+ *
+ * @author Hsingyi Lin
+ */
+public class IndexedDijkstra {
+    private static final ThreadLocal<SearchState> STATES = ThreadLocal.withInitial(SearchState::new);
+
+    private IndexedDijkstra() {
+    }
+
+    /**
+     * Stores the distance from vertex {@code s} to each vertex of the graph in
+     * {@code distTo}, or infinity if it cannot be reached.
+     *
+     * @param graph the graph
+     * @param s the source vertex
+     * @param distTo the distances, one per vertex
+     */
+    public static void distancesFrom(IndexedAStarGraph graph, int s, double[] distTo) {
+        SearchState state = STATES.get();
+        search(graph, s, null, 0, state);
+        for (int v = 0; v < distTo.length; v++) {
+            distTo[v] = state.seen(v) ? state.distTo[v] : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Returns the distance from vertex {@code s} to each vertex of {@code targets}, or
+     * infinity if it cannot be reached or is -1.
+     *
+     * @param graph the graph
+     * @param s the source vertex, or -1
+     * @param targets the target vertices, each of them may be -1
+     * @return the distances, in the order of the targets
+     */
+    public static double[] distancesTo(IndexedAStarGraph graph, int s, int[] targets) {
+        Targets t = new Targets(graph.numVertices(), targets);
+        return row(graph, s, t);
+    }
+
+    /**
+     * Returns the distance from each vertex of {@code sources} to each vertex of
+     * {@code targets}, or infinity where a target cannot be reached or either vertex
+     * is -1. Runs one search per source, the searches in parallel.
+     *
+     * @param graph the graph
+     * @param sources the source vertices, each of them may be -1
+     * @param targets the target vertices, each of them may be -1
+     * @return the distances, row i holding those from sources[i] in the order of the
+     * targets
+     */
+    public static double[][] distanceMatrix(IndexedAStarGraph graph, int[] sources,
+                                            int[] targets) {
+        Targets t = new Targets(graph.numVertices(), targets);
+        double[][] matrix = new double[sources.length][];
+        ForkJoinPool.commonPool().invoke(new Rows(graph, sources, t, matrix, 0, sources.length));
+        return matrix;
+    }
+
+    /**
+     * Visits each vertex within distance {@code limit} of vertex {@code s}, in order of
+     * distance, passing it to {@code visitor} along with its distance. The search stops
+     * as soon as the next vertex is farther than the limit, so it only touches the
+     * vertices within the limit and their neighbors.
+     *
+     * @param graph the graph
+     * @param s the source vertex
+     * @param limit the largest distance visited
+     * @param visitor the visitor of the vertices within the limit
+     */
+    public static void within(IndexedAStarGraph graph, int s, double limit, Visitor visitor) {
+        SearchState state = STATES.get();
+        state.reset(graph.numVertices(), graph.isConsistent());
+        state.setDistTo(s, 0.0, -1, -1);
+        state.fringes.add(s, 0.0);
+        while (state.fringes.size() != 0 && state.fringes.smallestPriority() <= limit) {
+            int p = state.fringes.removeSmallest();
+            double distP = state.distTo[p];
+            visitor.visit(p, distP);
+            for (int e = graph.edgeStart(p); e < graph.edgeEnd(p); e++) {
+                int q = graph.edgeTarget(e);
+                if (state.relax(q, distP + graph.edgeWeight(e), p, e)) {
+                    state.push(q, state.distTo[q]);
+                }
+            }
+        }
+    }
+
+    /** Receives the vertices of a search with their distances from the source. */
+    public interface Visitor {
+        /* Visits vertex V at distance DIST from the source. */
+        void visit(int v, double dist);
+    }
+
+    /** The targets of a search, marked for a constant-time check when one is settled. */
+    private static class Targets {
+        private final int[] vertices;
+        private final boolean[] isTarget;
+        private final int count;  // number of distinct targets, not counting -1
+
+        Targets(int n, int[] vertices) {
+            this.vertices = vertices;
+            isTarget = new boolean[n];
+            int distinct = 0;
+            for (int v : vertices) {
+                if (v >= 0 && !isTarget[v]) {
+                    isTarget[v] = true;
+                    distinct++;
+                }
+            }
+            count = distinct;
+        }
+    }
+
+    /** Computes the rows LO to HI - 1 of a distance matrix, splitting them if there are many. */
+    private static class Rows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IndexedAStarGraph graph;
+        private final int[] sources;
+        private final Targets targets;
+        private final double[][] matrix;
+        private final int lo;
+        private final int hi;
+
+        Rows(IndexedAStarGraph graph, int[] sources, Targets targets, double[][] matrix,
+             int lo, int hi) {
+            this.graph = graph;
+            this.sources = sources;
+            this.targets = targets;
+            this.matrix = matrix;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Rows(graph, sources, targets, matrix, lo, mid),
+                        new Rows(graph, sources, targets, matrix, mid, hi));
+                return;
+            }
+            for (int i = lo; i < hi; i++) {
+                matrix[i] = row(graph, sources[i], targets);
+            }
+        }
+    }
+
+    /** Returns the distances from S to the targets, searching on this thread. */
+    private static double[] row(IndexedAStarGraph graph, int s, Targets targets) {
+        double[] row = new double[targets.vertices.length];
+        Arrays.fill(row, Double.POSITIVE_INFINITY);
+        if (s < 0 || targets.count == 0) {
+            return row;
+        }
+        SearchState state = STATES.get();
+        search(graph, s, targets.isTarget, targets.count, state);
+        for (int i = 0; i < row.length; i++) {
+            int t = targets.vertices[i];
+            if (t >= 0 && state.seen(t)) {
+                row[i] = state.distTo[t];
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from {@code s} until the fringe is empty or the
+     * {@code numTargets} vertices marked in {@code isTarget} have all been settled,
+     * leaving the distances in {@code state}. A vertex's distance there is final if
+     * it was settled, which every reachable vertex is if {@code isTarget} is null.
+     */
+    private static void search(IndexedAStarGraph graph, int s, boolean[] isTarget,
+                               int numTargets, SearchState state) {
+        state.reset(graph.numVertices(), graph.isConsistent());
+        state.setDistTo(s, 0.0, -1, -1);
+        state.fringes.add(s, 0.0);
+        int targetsLeft = numTargets;
+        while (state.fringes.size() != 0) {
+            int p = state.fringes.removeSmallest();
+            if (isTarget != null && isTarget[p] && --targetsLeft == 0) {
+                return;
+            }
+            double distP = state.distTo[p];
+            for (int e = graph.edgeStart(p); e < graph.edgeEnd(p); e++) {
+                int q = graph.edgeTarget(e);
+                if (state.relax(q, distP + graph.edgeWeight(e), p, e)) {
+                    state.push(q, state.distTo[q]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package bearmaps.hw4;
+
+/**
+ * A shortest paths solver over an {@link IndexedAStarGraph} that also gives its
+ * solution as vertex and edge indices of the graph, so callers walking the path can
+ * read the edges directly instead of looking each one up by the ids of its ends.
+ */
+public interface IndexedShortestPathsSolver extends ShortestPathsSolver<Long> {
+    /* Returns the indices of the vertices of the solution, in order. */
+    int[] solutionVertices();
+    /* Returns the indices of the edges of the solution, edge i going from vertex i to
+       vertex i + 1, so there is one fewer than there are vertices. */
+    int[] solutionEdges();
+}
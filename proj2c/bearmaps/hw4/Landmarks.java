@@ -0,0 +1,166 @@
+package bearmaps.hw4;
+
+import bearmaps.hw4.streetmap.SnapshotIO;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Landmarks for the ALT (A*, landmarks, triangle inequality) heuristic on an
+ * undirected {@link IndexedAStarGraph}. The distances from a few landmark vertices to
+ * every vertex are computed ahead of time; by the triangle inequality, the distance
+ * between two vertices is then at least the difference of their distances to any
+ * landmark. This bound follows the roads, so it is usually much tighter than the
+ * great-circle distance on networks that wind around hills or water.
+ *
+ * Landmarks are picked one at a time as the vertex farthest from those already
+ * picked, starting from the largest connected component, which spreads them around
+ * the edges of the map where they bound the most routes. The distances are kept in
+ * one array, vertex by vertex, so the bound for a vertex reads a single contiguous
+ * run of it.
+ *
+ * @author Hsingyi Lin
+ */
+public class Landmarks {
+
+    private final int[] landmarks;  // the landmark vertices
+    private final double[] dist;    // distance from landmark i to v at dist[v * k + i]
+
+    /**
+     * Picks {@code k} landmarks of the graph {@code graph} and computes their
+     * distances to every vertex.
+     *
+     * @param graph the graph
+     * @param k the number of landmarks
+     * @throws IllegalArgumentException if the graph is not undirected
+     */
+    public Landmarks(IndexedAStarGraph graph, int k) {
+        if (!graph.isUndirected()) {
+            throw new IllegalArgumentException("graph must be undirected");
+        }
+        int n = graph.numVertices();
+        k = Math.min(k, n);
+        landmarks = new int[k];
+        dist = new double[n * k];
+        if (k == 0) {
+            return;
+        }
+
+        double[] distTo = new double[n];
+        double[] fromPicked = new double[n];  // distance to the nearest landmark picked
+        Arrays.fill(fromPicked, Double.POSITIVE_INFINITY);
+        IndexedDijkstra.distancesFrom(graph, largestComponentVertex(graph), distTo);
+        int next = farthest(distTo);
+        for (int i = 0; i < k; i++) {
+            landmarks[i] = next;
+            IndexedDijkstra.distancesFrom(graph, next, distTo);
+            for (int v = 0; v < n; v++) {
+                dist[v * k + i] = distTo[v];
+                fromPicked[v] = Math.min(fromPicked[v], distTo[v]);
+            }
+            next = farthest(fromPicked);
+        }
+    }
+
+    private Landmarks(int[] landmarks, double[] dist) {
+        this.landmarks = landmarks;
+        this.dist = dist;
+    }
+
+    /**
+     * Returns a lower bound on the distance between the vertices {@code v} and
+     * {@code goal}, or 0 if no landmark reaches both.
+     *
+     * @param v a vertex
+     * @param goal the other vertex
+     * @return the lower bound
+     */
+    public double lowerBound(int v, int goal) {
+        int k = landmarks.length;
+        double bound = 0;
+        for (int i = 0, a = v * k, b = goal * k; i < k; i++, a++, b++) {
+            double d = Math.abs(dist[a] - dist[b]);
+            // The difference is NaN or infinite unless the landmark reaches both
+            if (d > bound && d != Double.POSITIVE_INFINITY) {
+                bound = d;
+            }
+        }
+        return bound;
+    }
+
+    /** Returns the number of landmarks. */
+    public int size() {
+        return landmarks.length;
+    }
+
+    /**
+     * Writes the landmarks and their distances.
+     *
+     * @param out the snapshot output
+     */
+    public void write(DataOutput out) throws IOException {
+        SnapshotIO.writeInts(out, landmarks, landmarks.length);
+        SnapshotIO.writeDoubles(out, dist, dist.length);
+    }
+
+    /**
+     * Restores landmarks written by {@link #write}.
+     *
+     * @param in the snapshot payload
+     * @return the landmarks
+     */
+    public static Landmarks read(ByteBuffer in) {
+        int[] landmarks = SnapshotIO.readInts(in);
+        double[] dist = SnapshotIO.readDoubles(in);
+        return new Landmarks(landmarks, dist);
+    }
+
+    /** Returns a vertex of the largest connected component of the graph. */
+    private static int largestComponentVertex(IndexedAStarGraph graph) {
+        int n = graph.numVertices();
+        boolean[] visited = new boolean[n];
+        int[] queue = new int[n];
+        int largest = 0;
+        int largestSize = 0;
+        for (int s = 0; s < n; s++) {
+            if (visited[s]) {
+                continue;
+            }
+            // Breadth-first search of the component of s
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = s;
+            visited[s] = true;
+            while (head < tail) {
+                int p = queue[head++];
+                for (int e = graph.edgeStart(p); e < graph.edgeEnd(p); e++) {
+                    int q = graph.edgeTarget(e);
+                    if (!visited[q]) {
+                        visited[q] = true;
+                        queue[tail++] = q;
+                    }
+                }
+            }
+            if (tail > largestSize) {
+                largest = s;
+                largestSize = tail;
+            }
+        }
+        return largest;
+    }
+
+    /** Returns the vertex with the largest finite distance in {@code distTo}. */
+    private static int farthest(double[] distTo) {
+        int farthest = 0;
+        double max = -1;
+        for (int v = 0; v < distTo.length; v++) {
+            if (distTo[v] != Double.POSITIVE_INFINITY && distTo[v] > max) {
+                farthest = v;
+                max = distTo[v];
+            }
+        }
+        return farthest;
+    }
+}
@@ -0,0 +1,9 @@
+package bearmaps.hw4;
+
+/**
+ * How {@link IndexedAStarSolver} searches: from the start vertex only, or from both
+ * the start and the goal vertices until the two searches meet.
+ */
+public enum SearchMode {
+    UNIDIRECTIONAL, BIDIRECTIONAL
+}
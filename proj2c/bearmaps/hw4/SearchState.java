@@ -0,0 +1,86 @@
+package bearmaps.hw4;
+
+import bearmaps.proj2ab.ArrayIndexMinPQ;
+import bearmaps.proj2ab.IndexMinPQ;
+import bearmaps.proj2ab.RadixIndexMinPQ;
+
+import java.util.Arrays;
+
+/**
+ * Arrays holding the state of one search over an int-indexed graph. A vertex's
+ * entries are only valid if its mark equals the current search number, which saves
+ * clearing the arrays between searches, so one {@code SearchState} can be reused by
+ * every search run on the same thread.
+ *
+ * The fringe is a radix heap when the search is monotone, that is, when priorities
+ * never drop below the last one removed, as in Dijkstra's algorithm or A* with a
+ * consistent heuristic, and a d-ary heap otherwise.
+ *
+ * @author Hsingyi Lin
+ */
+class SearchState {
+    double[] distTo = new double[0];  // distance from the root of the search
+    int[] vertexTo = new int[0];      // previous vertex on the best path
+    int[] edgeTo = new int[0];        // edge from the previous vertex on the best path
+    private int[] mark = new int[0];  // search number the entries belong to
+    private int search = 0;
+    IndexMinPQ fringes = new ArrayIndexMinPQ(0);
+
+    /**
+     * Prepares for a new search of a graph of N vertices, which is MONOTONE if its
+     * priorities never drop below the last one removed.
+     */
+    void reset(int n, boolean monotone) {
+        if (mark.length < n) {
+            distTo = new double[n];
+            vertexTo = new int[n];
+            edgeTo = new int[n];
+            mark = new int[n];
+            search = 0;
+        }
+        if (monotone != fringes instanceof RadixIndexMinPQ) {
+            fringes = monotone ? new RadixIndexMinPQ(n) : new ArrayIndexMinPQ(n);
+        } else {
+            fringes.ensureCapacity(n);
+        }
+        fringes.clear();
+        search++;
+        if (search == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            search = 1;
+        }
+    }
+
+    boolean seen(int v) {
+        return mark[v] == search;
+    }
+
+    void setDistTo(int v, double dist, int from, int edge) {
+        mark[v] = search;
+        distTo[v] = dist;
+        vertexTo[v] = from;
+        edgeTo[v] = edge;
+    }
+
+    /**
+     * Records the distance {@code dist} to {@code v} through edge {@code edge} from
+     * {@code from} if v has not been reached before or this is shorter, and returns
+     * whether it did.
+     */
+    boolean relax(int v, double dist, int from, int edge) {
+        if (!seen(v) || dist < distTo[v]) {
+            setDistTo(v, dist, from, edge);
+            return true;
+        }
+        return false;
+    }
+
+    /** Adds {@code v} to the fringe, or updates its priority if already there. */
+    void push(int v, double priority) {
+        if (fringes.contains(v)) {
+            fringes.changePriority(v, priority);
+        } else {
+            fringes.add(v, priority);
+        }
+    }
+}
@@ -5,7 +5,7 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
-import java.util.*;
+import java.util.concurrent.BlockingQueue;
 
 /**
  *  Parses OSM XML files using an XML SAX parser. Used to construct the graph of roads for
@@ -24,29 +24,23 @@ import java.util.*;
  *  element in the file. This is a very common but strange-when-you-first-see it pattern.
  *  It is similar to the Visitor pattern we discussed for graphs.
  *
+ *  This handler is the first stage of {@link OsmXmlReader}: it runs on the thread of the
+ *  SAX parser and does as little as possible, copying the attributes of the elements that
+ *  matter into batches of raw {@link OsmXmlReader.Events} for the next stage to parse.
+ *
  *  @author Alan Yao, Maurice Lee, with minor modifications by Lucas Pan for HW4, Spring 2019
  */
 public class GraphBuildingHandler extends DefaultHandler {
-    /**
-     * Only allow for non-service roads; this prevents going on pedestrian streets as much as
-     * possible. Note that in Berkeley, many of the campus roads are tagged as motor vehicle
-     * roads, but in practice we walk all over them with such impunity that we forget cars can
-     * actually drive on them.
-     */
-    private static final Set<String> ALLOWED_HIGHWAY_TYPES = new HashSet<>(Arrays.asList
-            ("motorway", "trunk", "primary", "secondary", "tertiary", "unclassified",
-                    "residential", "living_street", "motorway_link", "trunk_link", "primary_link",
-                    "secondary_link", "tertiary_link"));
-    private String activeState = "";
-    private Node activeNode = null;
-    private boolean validWay = false;
-    private List<Long> nodePath = new ArrayList<>();
-    private final StreetMapGraph g;
+    private static final int OUTSIDE = 0;
+    private static final int IN_NODE = 1;
+    private static final int IN_WAY = 2;
 
-    private String wayName = "";
+    private final BlockingQueue<OsmXmlReader.Events> out;
+    private OsmXmlReader.Events events = new OsmXmlReader.Events();
+    private int activeState = OUTSIDE;
 
-    public GraphBuildingHandler(StreetMapGraph g) {
-        this.g = g;
+    public GraphBuildingHandler(BlockingQueue<OsmXmlReader.Events> out) {
+        this.out = out;
     }
 
     /**
@@ -66,40 +60,33 @@ public class GraphBuildingHandler extends DefaultHandler {
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes)
             throws SAXException {
-        if (qName.equals("node")) {
-            /* We encountered a new <node...> tag. */
-            activeState = "node";
-//            System.out.println("Node id: " + attributes.getValue("id"));
-//            System.out.println("Node lon: " + attributes.getValue("lon"));
-//            System.out.println("Node lat: " + attributes.getValue("lat"));
-
-            activeNode = Node.of(Long.parseLong(attributes.getValue("id")),
-                    Double.parseDouble(attributes.getValue("lat")),
-                    Double.parseDouble(attributes.getValue("lon")));
-        } else if (qName.equals("way")) {
-            /* We encountered a new <way...> tag. */
-            activeState = "way";
-//            System.out.println("Beginning a way...");
-        } else if (activeState.equals("way") && qName.equals("nd")) {
-            /* While looking at a way, we found a <nd...> tag. */
-            //System.out.println("Id of a node in this way: " + attributes.getValue("ref"));
-            nodePath.add(Long.parseLong(attributes.getValue("ref")));
-        } else if (activeState.equals("way") && qName.equals("tag")) {
-            /* While looking at a way, we found a <tag...> tag. */
-            String k = attributes.getValue("k");
-            String v = attributes.getValue("v");
-            if (k.equals("highway")) {
-                //System.out.println("Highway type: " + v);
-                validWay = ALLOWED_HIGHWAY_TYPES.contains(v);
-            } else if (k.equals("name")) {
-                //System.out.println("Way Name: " + v);
-                wayName = v;
-            }
-//            System.out.println("Tag with k=" + k + ", v=" + v + ".");
-        } else if (activeState.equals("node") && qName.equals("tag") && attributes.getValue("k")
-                .equals("name")) {
-//            System.out.println("Node's name: " + attributes.getValue("v"));
-            activeNode.setName(attributes.getValue("v"));
+        switch (qName) {
+            case "node":
+                /* We encountered a new <node...> tag. */
+                activeState = IN_NODE;
+                events.add(OsmXmlReader.Events.NODE, attributes.getValue("id"),
+                        attributes.getValue("lat"), attributes.getValue("lon"));
+                break;
+            case "way":
+                /* We encountered a new <way...> tag. */
+                activeState = IN_WAY;
+                events.add(OsmXmlReader.Events.WAY, null, null, null);
+                break;
+            case "nd":
+                /* While looking at a way, we found a <nd...> tag. */
+                if (activeState == IN_WAY) {
+                    events.add(OsmXmlReader.Events.ND, attributes.getValue("ref"), null, null);
+                }
+                break;
+            case "tag":
+                /* While looking at a node or way, we found a <tag...> tag. */
+                if (activeState != OUTSIDE) {
+                    events.add(OsmXmlReader.Events.TAG, attributes.getValue("k"),
+                            attributes.getValue("v"), null);
+                }
+                break;
+            default:
+                break;
         }
     }
 
@@ -116,30 +103,32 @@ public class GraphBuildingHandler extends DefaultHandler {
      */
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
-        if (qName.equals("way")) {
-            /* We are done looking at a way. (We finished looking at the nodes, speeds, etc...)*/
-            if (validWay) {
-                for (int i = 0; i < nodePath.size() - 1; i++) {
-                    long fromID = nodePath.get(i);
-                    long toID = nodePath.get(i + 1);
-                    g.addWeightedEdge(fromID, toID, wayName);
-                    g.addWeightedEdge(toID, fromID, wayName);
-                }
-            }
-            clearStates();
-        } else if (qName.equals("node")) {
-            if (activeNode != null) {
-                g.addNode(activeNode);
+        if (qName.equals("way") || qName.equals("node")) {
+            /* We are done looking at a node or way. */
+            events.add(OsmXmlReader.Events.END_ELEMENT, null, null, null);
+            activeState = OUTSIDE;
+            if (events.isFull()) {
+                flush();
             }
-            clearStates();
         }
     }
 
-    private void clearStates() {
-        activeState = "";
-        activeNode = null;
-        validWay = false;
-        nodePath = new ArrayList<>();
-        wayName = "";
+    /** Hands the events of the rest of the document to the next stage. */
+    @Override
+    public void endDocument() throws SAXException {
+        flush();
+    }
+
+    private void flush() throws SAXException {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            out.put(events);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException(e);
+        }
+        events = new OsmXmlReader.Events();
     }
 }
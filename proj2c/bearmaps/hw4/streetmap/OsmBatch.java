@@ -0,0 +1,136 @@
+package bearmaps.hw4.streetmap;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * A batch of nodes and ways read from an OSM file, in primitive arrays, on its way
+ * from a reader stage to the graph being built. The refs of all the ways are stored
+ * one after another, those of way w in [wayStart(w), wayStart(w + 1)).
+ *
+ * @author Hsingyi Lin
+ */
+class OsmBatch {
+
+    /** The number of nodes plus ways after which a batch is full. */
+    static final int CAPACITY = 4096;
+
+    /** The batch marking the end of a stream of batches. */
+    static final OsmBatch END = new OsmBatch();
+
+    private int numNodes;
+    private long[] nodeIds = new long[16];
+    private double[] nodeLats = new double[16];
+    private double[] nodeLons = new double[16];
+    private String[] nodeNames = new String[16];
+
+    private int numWays;
+    private int[] wayStart = new int[17];
+    private String[] wayNames = new String[16];
+    private String[] wayHighways = new String[16];
+    private int numRefs;
+    private long[] refs = new long[64];
+
+    /** Passes the batches taken from IN to SINK until the END batch. */
+    static void drain(BlockingQueue<OsmBatch> in, Consumer<OsmBatch> sink)
+            throws InterruptedException {
+        for (OsmBatch batch = in.take(); batch != END; batch = in.take()) {
+            sink.accept(batch);
+        }
+    }
+
+    /** Adds a node; NAME is null if the node has none. */
+    void addNode(long id, double lat, double lon, String name) {
+        if (numNodes == nodeIds.length) {
+            int capacity = numNodes * 2;
+            nodeIds = Arrays.copyOf(nodeIds, capacity);
+            nodeLats = Arrays.copyOf(nodeLats, capacity);
+            nodeLons = Arrays.copyOf(nodeLons, capacity);
+            nodeNames = Arrays.copyOf(nodeNames, capacity);
+        }
+        nodeIds[numNodes] = id;
+        nodeLats[numNodes] = lat;
+        nodeLons[numNodes] = lon;
+        nodeNames[numNodes] = name;
+        numNodes++;
+    }
+
+    /** Adds a ref to the way being read, which is ended by {@link #endWay}. */
+    void addRef(long ref) {
+        if (numRefs == refs.length) {
+            refs = Arrays.copyOf(refs, numRefs * 2);
+        }
+        refs[numRefs++] = ref;
+    }
+
+    /**
+     * Ends the way made of the refs added since the last way, with the given name ("" if
+     * none) and highway type (null if none).
+     */
+    void endWay(String name, String highway) {
+        if (numWays == wayNames.length) {
+            int capacity = numWays * 2;
+            wayStart = Arrays.copyOf(wayStart, capacity + 1);
+            wayNames = Arrays.copyOf(wayNames, capacity);
+            wayHighways = Arrays.copyOf(wayHighways, capacity);
+        }
+        wayNames[numWays] = name;
+        wayHighways[numWays] = highway;
+        numWays++;
+        wayStart[numWays] = numRefs;
+    }
+
+    /** Drops the refs added since the last way. */
+    void abandonWay() {
+        numRefs = wayStart[numWays];
+    }
+
+    boolean isFull() {
+        return numNodes + numWays >= CAPACITY;
+    }
+
+    boolean isEmpty() {
+        return numNodes == 0 && numWays == 0;
+    }
+
+    int numNodes() {
+        return numNodes;
+    }
+
+    long nodeId(int i) {
+        return nodeIds[i];
+    }
+
+    double nodeLat(int i) {
+        return nodeLats[i];
+    }
+
+    double nodeLon(int i) {
+        return nodeLons[i];
+    }
+
+    String nodeName(int i) {
+        return nodeNames[i];
+    }
+
+    int numWays() {
+        return numWays;
+    }
+
+    int wayStart(int w) {
+        return wayStart[w];
+    }
+
+    String wayName(int w) {
+        return wayNames[w];
+    }
+
+    String wayHighway(int w) {
+        return wayHighways[w];
+    }
+
+    long ref(int i) {
+        return refs[i];
+    }
+}
@@ -0,0 +1,198 @@
+package bearmaps.hw4.streetmap;
+
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Reads an OSM XML file in three stages connected by bounded queues, so that scanning
+ * the XML, parsing the numbers in it and building the graph run at the same time:
+ *
+ * 1. the scanner runs the SAX parser with a {@link GraphBuildingHandler}, which copies
+ *    the attributes of nodes, ways and their children into batches of raw events;
+ * 2. the parser turns the events into {@link OsmBatch}es of nodes and ways, parsing the
+ *    ids and coordinates and picking out the tags that matter;
+ * 3. the caller's thread hands the batches to the graph being built.
+ *
+ * A full queue makes the stage before it wait, so a fast scanner never runs far ahead of
+ * the builder.
+ *
+ * @author Hsingyi Lin
+ */
+class OsmXmlReader {
+
+    /** The number of batches each queue holds before its producer waits. */
+    private static final int QUEUE_CAPACITY = 16;
+
+    private OsmXmlReader() {
+    }
+
+    /**
+     * Reads the OSM XML document from IN, passing its nodes and ways to SINK in the order
+     * they appear. Errors reading the document are printed, and SINK gets what was read
+     * up to them.
+     */
+    static void read(InputStream in, Consumer<OsmBatch> sink) {
+        BlockingQueue<Events> events = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<OsmBatch> batches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Thread scanner = new Thread(() -> scan(in, events), "osm-xml-scanner");
+        Thread parser = new Thread(() -> parse(events, batches), "osm-xml-parser");
+        scanner.setDaemon(true);
+        parser.setDaemon(true);
+        scanner.start();
+        parser.start();
+        try {
+            OsmBatch.drain(batches, sink);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            scanner.interrupt();
+            parser.interrupt();
+        }
+    }
+
+    /** Stage 1: runs the SAX parser over IN, putting batches of raw events on OUT. */
+    private static void scan(InputStream in, BlockingQueue<Events> out) {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            SAXParser saxParser = factory.newSAXParser();
+            saxParser.parse(in, new GraphBuildingHandler(out));
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                e.printStackTrace();
+            }
+        } finally {
+            try {
+                out.put(Events.END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stage 2: turns the raw events from IN into batches of nodes and ways on OUT. Of the
+     * tags of a node only its name is kept, and of those of a way its name and highway
+     * type; if a tag is repeated, the last one wins.
+     */
+    private static void parse(BlockingQueue<Events> in, BlockingQueue<OsmBatch> out) {
+        OsmBatch batch = new OsmBatch();
+        try {
+            boolean inWay = false;
+            long nodeId = 0;
+            double nodeLat = 0;
+            double nodeLon = 0;
+            String name = null;
+            String highway = null;
+            for (Events events = in.take(); events != Events.END; events = in.take()) {
+                for (int i = 0; i < events.size; i++) {
+                    switch (events.kinds[i]) {
+                        case Events.NODE:
+                            inWay = false;
+                            nodeId = Long.parseLong(events.as[i]);
+                            nodeLat = Double.parseDouble(events.bs[i]);
+                            nodeLon = Double.parseDouble(events.cs[i]);
+                            name = null;
+                            break;
+                        case Events.WAY:
+                            inWay = true;
+                            name = "";
+                            highway = null;
+                            break;
+                        case Events.ND:
+                            batch.addRef(Long.parseLong(events.as[i]));
+                            break;
+                        case Events.TAG:
+                            if (events.as[i].equals("name")) {
+                                name = events.bs[i];
+                            } else if (inWay && events.as[i].equals("highway")) {
+                                highway = events.bs[i];
+                            }
+                            break;
+                        default:  // END_ELEMENT
+                            if (inWay) {
+                                batch.endWay(name, highway);
+                            } else {
+                                batch.addNode(nodeId, nodeLat, nodeLon, name);
+                            }
+                            if (batch.isFull()) {
+                                out.put(batch);
+                                batch = new OsmBatch();
+                            }
+                            break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        try {
+            if (!batch.isEmpty()) {
+                batch.abandonWay();
+                out.put(batch);
+            }
+            out.put(OsmBatch.END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A batch of raw events scanned from the XML, with up to three strings each: the id,
+     * latitude and longitude of a node, the ref of an nd, or the key and value of a tag.
+     * Ways carry no strings, and the end of a node or way is an event of its own.
+     */
+    static class Events {
+        static final int NODE = 0;
+        static final int WAY = 1;
+        static final int ND = 2;
+        static final int TAG = 3;
+        static final int END_ELEMENT = 4;
+
+        /** The number of events after which a batch is full. */
+        private static final int CAPACITY = 8192;
+
+        /** The batch marking the end of the document. */
+        static final Events END = new Events();
+
+        private int size;
+        private int[] kinds = new int[64];
+        private String[] as = new String[64];
+        private String[] bs = new String[64];
+        private String[] cs = new String[64];
+
+        void add(int kind, String a, String b, String c) {
+            if (size == kinds.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                as = Arrays.copyOf(as, capacity);
+                bs = Arrays.copyOf(bs, capacity);
+                cs = Arrays.copyOf(cs, capacity);
+            }
+            kinds[size] = kind;
+            as[size] = a;
+            bs[size] = b;
+            cs[size] = c;
+            size++;
+        }
+
+        boolean isFull() {
+            return size >= CAPACITY;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
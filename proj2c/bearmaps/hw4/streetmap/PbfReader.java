@@ -0,0 +1,535 @@
+package bearmaps.hw4.streetmap;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads an OSM PBF file, the binary format of OpenStreetMap. See
+ * <a href="https://wiki.openstreetmap.org/wiki/PBF_Format">the PBF format</a>.
+ *
+ * A PBF file is a sequence of blobs, each a block of some eight thousand nodes or ways
+ * that can be decoded on its own. One thread reads the blobs off the stream, a pool of
+ * threads inflates and decodes them in parallel, and the caller's thread takes the
+ * decoded blocks in file order from a bounded queue and hands them to the graph being
+ * built. The protocol buffer messages are decoded by hand, reading only the fields the
+ * graph needs: the ids, coordinates and names of nodes (both plain and dense), and the
+ * refs, names and highway types of ways. Relations and metadata are skipped.
+ *
+ * @author Hsingyi Lin
+ */
+class PbfReader {
+
+    /** The largest blob header and blob allowed by the format. */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    /** The future marking the end of the file. */
+    private static final Future<OsmBatch> END = CompletableFuture.completedFuture(OsmBatch.END);
+
+    private PbfReader() {
+    }
+
+    /**
+     * Reads the OSM PBF file from IN, passing its nodes and ways to SINK in the order
+     * they appear. Errors reading the file are printed, and SINK gets the blocks read
+     * before them.
+     */
+    static void read(InputStream in, Consumer<OsmBatch> sink) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService decoders = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "osm-pbf-decoder");
+            t.setDaemon(true);
+            return t;
+        });
+        BlockingQueue<Future<OsmBatch>> blocks = new ArrayBlockingQueue<>(2 * threads);
+        Thread reader = new Thread(() -> readBlobs(in, decoders, blocks), "osm-pbf-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            for (Future<OsmBatch> block = blocks.take(); block != END; block = blocks.take()) {
+                sink.accept(block.get());
+            }
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reader.interrupt();
+            decoders.shutdownNow();
+        }
+    }
+
+    /** Reads the blobs off IN, putting the futures of their decoded blocks on OUT. */
+    private static void readBlobs(InputStream in, ExecutorService decoders,
+                                  BlockingQueue<Future<OsmBatch>> out) {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            while (true) {
+                int headerSize;
+                try {
+                    headerSize = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+                    throw new IOException("Bad blob header size " + headerSize + ".");
+                }
+                byte[] header = new byte[headerSize];
+                data.readFully(header);
+                String type = null;
+                int blobSize = 0;
+                Proto h = new Proto(header, 0, headerSize);
+                for (int tag = h.next(); tag != 0; tag = h.next()) {
+                    if (tag == (1 << 3 | 2)) {
+                        type = h.string();
+                    } else if (tag == (3 << 3)) {
+                        blobSize = (int) h.varint();
+                    } else {
+                        h.skip(tag);
+                    }
+                }
+                if (blobSize < 0 || blobSize > MAX_BLOB_SIZE) {
+                    throw new IOException("Bad blob size " + blobSize + ".");
+                }
+                byte[] blob = new byte[blobSize];
+                data.readFully(blob);
+                if ("OSMData".equals(type)) {
+                    out.put(decoders.submit(() -> decodeBlock(inflate(blob))));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            out.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Returns the uncompressed contents of the Blob message BLOB. */
+    private static byte[] inflate(byte[] blob) throws IOException {
+        Proto b = new Proto(blob, 0, blob.length);
+        byte[] raw = null;
+        int rawSize = 0;
+        int zlibStart = -1;
+        int zlibLength = 0;
+        for (int tag = b.next(); tag != 0; tag = b.next()) {
+            switch (tag >>> 3) {
+                case 1:
+                    int length = (int) b.varint();
+                    raw = Arrays.copyOfRange(blob, b.pos, b.pos + length);
+                    b.pos += length;
+                    break;
+                case 2:
+                    rawSize = (int) b.varint();
+                    break;
+                case 3:
+                    zlibLength = (int) b.varint();
+                    zlibStart = b.pos;
+                    b.pos += zlibLength;
+                    break;
+                case 4:
+                case 6:
+                case 7:
+                    throw new IOException("Unsupported blob compression " + (tag >>> 3) + ".");
+                default:
+                    b.skip(tag);
+                    break;
+            }
+        }
+        if (raw != null) {
+            return raw;
+        }
+        if (zlibStart < 0) {
+            throw new IOException("Blob has no data.");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob, zlibStart, zlibLength);
+            byte[] out = new byte[rawSize];
+            int n = 0;
+            while (n < rawSize && !inflater.finished()) {
+                int inflated = inflater.inflate(out, n, rawSize - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != rawSize) {
+                throw new IOException("Blob inflated to " + n + " bytes, not " + rawSize + ".");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Decodes the PrimitiveBlock message BLOCK into a batch of its nodes and ways. */
+    private static OsmBatch decodeBlock(byte[] block) {
+        Proto p = new Proto(block, 0, block.length);
+        String[] strings = new String[0];
+        long granularity = 100;
+        long latOffset = 0;
+        long lonOffset = 0;
+        int numGroups = 0;
+        int[] groups = new int[8];  // start and end of each PrimitiveGroup
+        for (int tag = p.next(); tag != 0; tag = p.next()) {
+            switch (tag >>> 3) {
+                case 1:
+                    strings = decodeStrings(p.message());
+                    break;
+                case 2:
+                    int length = (int) p.varint();
+                    if (2 * numGroups == groups.length) {
+                        groups = Arrays.copyOf(groups, groups.length * 2);
+                    }
+                    groups[2 * numGroups] = p.pos;
+                    groups[2 * numGroups + 1] = p.pos + length;
+                    numGroups++;
+                    p.pos += length;
+                    break;
+                case 17:
+                    granularity = p.varint();
+                    break;
+                case 19:
+                    latOffset = p.varint();
+                    break;
+                case 20:
+                    lonOffset = p.varint();
+                    break;
+                default:
+                    p.skip(tag);
+                    break;
+            }
+        }
+
+        Block b = new Block(strings, granularity, latOffset, lonOffset);
+        for (int g = 0; g < numGroups; g++) {
+            Proto group = new Proto(block, groups[2 * g], groups[2 * g + 1]);
+            for (int tag = group.next(); tag != 0; tag = group.next()) {
+                switch (tag >>> 3) {
+                    case 1:
+                        b.decodeNode(group.message());
+                        break;
+                    case 2:
+                        b.decodeDenseNodes(group.message());
+                        break;
+                    case 3:
+                        b.decodeWay(group.message());
+                        break;
+                    default:
+                        group.skip(tag);
+                        break;
+                }
+            }
+        }
+        return b.batch;
+    }
+
+    /** Decodes the StringTable message S. */
+    private static String[] decodeStrings(Proto s) {
+        String[] strings = new String[64];
+        int n = 0;
+        for (int tag = s.next(); tag != 0; tag = s.next()) {
+            if (tag == (1 << 3 | 2)) {
+                if (n == strings.length) {
+                    strings = Arrays.copyOf(strings, n * 2);
+                }
+                strings[n++] = s.string();
+            } else {
+                s.skip(tag);
+            }
+        }
+        return Arrays.copyOf(strings, n);
+    }
+
+    /** The string table and coordinate scale of a block, and the batch it decodes to. */
+    private static class Block {
+        private final String[] strings;
+        private final long granularity;
+        private final long latOffset;
+        private final long lonOffset;
+        private final int nameKey;      // index of "name" in the string table, or -1
+        private final int highwayKey;   // index of "highway" in the string table, or -1
+        private final OsmBatch batch = new OsmBatch();
+
+        /* Scratch buffers of the repeated fields of the message being decoded. */
+        private long[] keys = new long[16];
+        private long[] vals = new long[16];
+        private long[] values = new long[16];
+
+        Block(String[] strings, long granularity, long latOffset, long lonOffset) {
+            this.strings = strings;
+            this.granularity = granularity;
+            this.latOffset = latOffset;
+            this.lonOffset = lonOffset;
+            this.nameKey = Arrays.asList(strings).indexOf("name");
+            this.highwayKey = Arrays.asList(strings).indexOf("highway");
+        }
+
+        /* Dividing the exact nanodegrees rounds like parsing the degrees in XML would. */
+        double lat(long lat) {
+            return (latOffset + granularity * lat) / 1e9;
+        }
+
+        double lon(long lon) {
+            return (lonOffset + granularity * lon) / 1e9;
+        }
+
+        /** Decodes a Node message. */
+        void decodeNode(Proto m) {
+            long id = 0;
+            long lat = 0;
+            long lon = 0;
+            int numKeys = 0;
+            int numVals = 0;
+            for (int tag = m.next(); tag != 0; tag = m.next()) {
+                switch (tag >>> 3) {
+                    case 1:
+                        id = Proto.zigZag(m.varint());
+                        break;
+                    case 2:
+                        keys = m.repeated(tag, keys, numKeys);
+                        numKeys = m.count;
+                        break;
+                    case 3:
+                        vals = m.repeated(tag, vals, numVals);
+                        numVals = m.count;
+                        break;
+                    case 8:
+                        lat = Proto.zigZag(m.varint());
+                        break;
+                    case 9:
+                        lon = Proto.zigZag(m.varint());
+                        break;
+                    default:
+                        m.skip(tag);
+                        break;
+                }
+            }
+            String name = null;
+            for (int i = 0; i < Math.min(numKeys, numVals); i++) {
+                if (keys[i] == nameKey) {
+                    name = strings[(int) vals[i]];
+                }
+            }
+            batch.addNode(id, lat(lat), lon(lon), name);
+        }
+
+        /**
+         * Decodes a DenseNodes message, whose ids and coordinates are delta coded and
+         * whose tags are the keys and values of each node in turn, ended by a 0.
+         */
+        void decodeDenseNodes(Proto m) {
+            int idStart = -1;
+            int idEnd = -1;
+            int latStart = -1;
+            int latEnd = -1;
+            int lonStart = -1;
+            int lonEnd = -1;
+            int tagsStart = -1;
+            int tagsEnd = -1;
+            for (int tag = m.next(); tag != 0; tag = m.next()) {
+                int field = tag >>> 3;
+                if ((tag & 7) == 2 && (field == 1 || field == 8 || field == 9 || field == 10)) {
+                    int length = (int) m.varint();
+                    int start = m.pos;
+                    m.pos += length;
+                    if (field == 1) {
+                        idStart = start;
+                        idEnd = m.pos;
+                    } else if (field == 8) {
+                        latStart = start;
+                        latEnd = m.pos;
+                    } else if (field == 9) {
+                        lonStart = start;
+                        lonEnd = m.pos;
+                    } else {
+                        tagsStart = start;
+                        tagsEnd = m.pos;
+                    }
+                } else {
+                    m.skip(tag);
+                }
+            }
+            if (idStart < 0) {
+                return;
+            }
+            Proto ids = new Proto(m.buf, idStart, idEnd);
+            Proto lats = new Proto(m.buf, latStart, latEnd);
+            Proto lons = new Proto(m.buf, lonStart, lonEnd);
+            Proto tags = tagsStart < 0 ? null : new Proto(m.buf, tagsStart, tagsEnd);
+            long id = 0;
+            long lat = 0;
+            long lon = 0;
+            while (ids.pos < ids.limit) {
+                id += Proto.zigZag(ids.varint());
+                lat += Proto.zigZag(lats.varint());
+                lon += Proto.zigZag(lons.varint());
+                String name = null;
+                if (tags != null) {
+                    for (int k = (int) tags.varint(); k != 0; k = (int) tags.varint()) {
+                        int v = (int) tags.varint();
+                        if (k == nameKey) {
+                            name = strings[v];
+                        }
+                    }
+                }
+                batch.addNode(id, lat(lat), lon(lon), name);
+            }
+        }
+
+        /** Decodes a Way message, whose refs are delta coded. */
+        void decodeWay(Proto m) {
+            int numKeys = 0;
+            int numVals = 0;
+            int numRefs = 0;
+            for (int tag = m.next(); tag != 0; tag = m.next()) {
+                switch (tag >>> 3) {
+                    case 2:
+                        keys = m.repeated(tag, keys, numKeys);
+                        numKeys = m.count;
+                        break;
+                    case 3:
+                        vals = m.repeated(tag, vals, numVals);
+                        numVals = m.count;
+                        break;
+                    case 8:
+                        values = m.repeated(tag, values, numRefs);
+                        numRefs = m.count;
+                        break;
+                    default:
+                        m.skip(tag);
+                        break;
+                }
+            }
+            String name = "";
+            String highway = null;
+            for (int i = 0; i < Math.min(numKeys, numVals); i++) {
+                if (keys[i] == nameKey) {
+                    name = strings[(int) vals[i]];
+                } else if (keys[i] == highwayKey) {
+                    highway = strings[(int) vals[i]];
+                }
+            }
+            long ref = 0;
+            for (int i = 0; i < numRefs; i++) {
+                ref += Proto.zigZag(values[i]);
+                batch.addRef(ref);
+            }
+            batch.endWay(name, highway);
+        }
+    }
+
+    /** A cursor over a protocol buffer message in BUF[pos, limit). */
+    private static class Proto {
+        final byte[] buf;
+        int pos;
+        final int limit;
+
+        /** The number of values after the last call to {@link #repeated}. */
+        int count;
+
+        Proto(byte[] buf, int pos, int limit) {
+            this.buf = buf;
+            this.pos = pos;
+            this.limit = limit;
+        }
+
+        /** Returns the tag (field number and wire type) of the next field, or 0 at the end. */
+        int next() {
+            return pos < limit ? (int) varint() : 0;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buf[pos++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint.");
+        }
+
+        static long zigZag(long n) {
+            return (n >>> 1) ^ -(n & 1);
+        }
+
+        String string() {
+            int length = (int) varint();
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        /** Returns a cursor over the embedded message of the current field. */
+        Proto message() {
+            int length = (int) varint();
+            Proto m = new Proto(buf, pos, pos + length);
+            pos += length;
+            return m;
+        }
+
+        /**
+         * Appends the values of the current field with tag TAG, packed or not, to the
+         * COUNT values in OUT, returning OUT or a larger copy; the new count is left in
+         * {@link #count}.
+         */
+        long[] repeated(int tag, long[] out, int count) {
+            int end = (tag & 7) == 2 ? (int) varint() + pos : -1;
+            while (end < 0 || pos < end) {
+                if (count == out.length) {
+                    out = Arrays.copyOf(out, count * 2);
+                }
+                out[count++] = varint();
+                if (end < 0) {
+                    break;
+                }
+            }
+            this.count = count;
+            return out;
+        }
+
+        /** Skips the value of the current field with tag TAG. */
+        void skip(int tag) {
+            switch (tag & 7) {
+                case 0:
+                    varint();
+                    break;
+                case 1:
+                    pos += 8;
+                    break;
+                case 2:
+                    pos += (int) varint();
+                    break;
+                case 5:
+                    pos += 4;
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported wire type " + (tag & 7) + ".");
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package bearmaps.hw4.streetmap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for writing primitive arrays to a binary snapshot and reading them back
+ * from a (typically memory-mapped) {@code ByteBuffer}. Every array is written as its
+ * length followed by its elements, big-endian, so that it can be bulk-copied out of
+ * the buffer on the way back in.
+ *
+ * @author Hsingyi Lin
+ */
+public class SnapshotIO {
+
+    private SnapshotIO() {
+    }
+
+    public static void writeInts(DataOutput out, int[] a, int n) throws IOException {
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeInt(a[i]);
+        }
+    }
+
+    public static void writeLongs(DataOutput out, long[] a, int n) throws IOException {
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeLong(a[i]);
+        }
+    }
+
+    public static void writeDoubles(DataOutput out, double[] a, int n) throws IOException {
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeDouble(a[i]);
+        }
+    }
+
+    /** Writes an array of strings, any of which may be null. */
+    public static void writeStrings(DataOutput out, String[] a, int n) throws IOException {
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            if (a[i] == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = a[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    public static int[] readInts(ByteBuffer in) {
+        int[] a = new int[in.getInt()];
+        in.asIntBuffer().get(a);
+        in.position(in.position() + a.length * Integer.BYTES);
+        return a;
+    }
+
+    public static long[] readLongs(ByteBuffer in) {
+        long[] a = new long[in.getInt()];
+        in.asLongBuffer().get(a);
+        in.position(in.position() + a.length * Long.BYTES);
+        return a;
+    }
+
+    public static double[] readDoubles(ByteBuffer in) {
+        double[] a = new double[in.getInt()];
+        in.asDoubleBuffer().get(a);
+        in.position(in.position() + a.length * Double.BYTES);
+        return a;
+    }
+
+    public static String[] readStrings(ByteBuffer in) {
+        String[] a = new String[in.getInt()];
+        for (int i = 0; i < a.length; i++) {
+            int length = in.getInt();
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                in.get(bytes);
+                a[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return a;
+    }
+}
@@ -1,28 +1,93 @@
 package bearmaps.hw4.streetmap;
 
 import bearmaps.hw4.AStarGraph;
+import bearmaps.hw4.IndexedAStarGraph;
 import bearmaps.hw4.WeightedEdge;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
 
-public class StreetMapGraph implements AStarGraph<Long> {
-    private Map<Long, Node> nodes = new HashMap<>();
-    private Map<Long, Set<WeightedEdge<Long>>> neighbors = new HashMap<>();
+/**
+ * A street graph read from an OSM XML or PBF file. While the file is being read, nodes
+ * and edges are collected into primitive build buffers; once parsing is done the graph is frozen into
+ * a compressed sparse row (CSR) form: vertices get dense int indices (in ascending id
+ * order), and the outgoing edges of vertex v are the edge indices in
+ * [edgeStart(v), edgeEnd(v)), stored in parallel primitive arrays.
+ *
+ * The index-based accessors iterate neighbors without allocating; {@link #neighbors(Long)}
+ * is kept for the {@code AStarGraph} interface.
+ *
+ * The ways the edges come from are kept in a way table of their own: each way has an
+ * interned name, a highway type and the range of its vertices in one shared array, and
+ * each edge, in either direction, refers to its way by index.
+ */
+public class StreetMapGraph implements AStarGraph<Long>, IndexedAStarGraph {
+    /**
+     * Only allow for non-service roads; this prevents going on pedestrian streets as much as
+     * possible. Note that in Berkeley, many of the campus roads are tagged as motor vehicle
+     * roads, but in practice we walk all over them with such impunity that we forget cars can
+     * actually drive on them.
+     */
+    private static final List<String> ALLOWED_HIGHWAY_TYPES = Arrays.asList
+            ("motorway", "trunk", "primary", "secondary", "tertiary", "unclassified",
+                    "residential", "living_street", "motorway_link", "trunk_link", "primary_link",
+                    "secondary_link", "tertiary_link");
+
+    /* Build buffers, discarded by freeze(). */
+    private long[] nodeIDs = new long[16];
+    private double[] nodeLons = new double[16];
+    private double[] nodeLats = new double[16];
+    private String[] nodeNames = new String[16];
+    private int numBufferedNodes = 0;
+    private long[] wayRefs = new long[16];            // node ids of the buffered ways
+    private int numBufferedRefs = 0;
+    private int[] wayRefStart = new int[17];          // refs of way w are [wayRefStart[w], wayRefStart[w + 1])
+    private int[] wayNameIDs = new int[16];           // index into wayNameIndex
+    private int[] wayHighways = new int[16];          // index into ALLOWED_HIGHWAY_TYPES
+    private int numBufferedWays = 0;
+    private Map<String, Integer> wayNameIndex = new HashMap<>();
+
+    /* Frozen CSR graph. Vertex arrays are indexed by vertex index, edge arrays by edge index. */
+    private long[] ids = new long[0];         // vertex ids, sorted ascending
+    private double[] lons = new double[0];
+    private double[] lats = new double[0];
+    private String[] names = new String[0];   // node names, null if unnamed
+    private int[] edgeStart = new int[1];     // out edges of v are [edgeStart[v], edgeStart[v + 1])
+    private int[] edgeTo = new int[0];        // target vertex index
+    private double[] edgeWeight = new double[0];
+    private int[] edgeWay = new int[0];       // index of the way of the edge
+    private int[] wayName = new int[0];       // index into wayNames
+    private int[] wayHighway = new int[0];    // index into ALLOWED_HIGHWAY_TYPES
+    private int[] wayNodeStart = new int[1];  // vertices of way w are [wayNodeStart[w], wayNodeStart[w + 1])
+    private int[] wayNodes = new int[0];      // vertex indices along the ways
+    private String[] wayNames = new String[0];  // distinct way names
 
     private StreetMapGraph() {
     }
 
     public StreetMapGraph(String filename) {
-        StreetMapGraph smg = StreetMapGraph.readFromXML(filename);
-        this.nodes = smg.nodes;
-        this.neighbors = smg.neighbors;
+        this(StreetMapGraph.readFromOSM(filename));
+    }
+
+    /** Creates a graph sharing the (immutable) frozen arrays of SMG. */
+    protected StreetMapGraph(StreetMapGraph smg) {
+        this.ids = smg.ids;
+        this.lons = smg.lons;
+        this.lats = smg.lats;
+        this.names = smg.names;
+        this.edgeStart = smg.edgeStart;
+        this.edgeTo = smg.edgeTo;
+        this.edgeWeight = smg.edgeWeight;
+        this.edgeWay = smg.edgeWay;
+        this.wayName = smg.wayName;
+        this.wayHighway = smg.wayHighway;
+        this.wayNodeStart = smg.wayNodeStart;
+        this.wayNodes = smg.wayNodes;
+        this.wayNames = smg.wayNames;
+        discardBuffers();
     }
 
     /**
@@ -31,10 +96,15 @@ public class StreetMapGraph implements AStarGraph<Long> {
      **/
     @Override
     public List<WeightedEdge<Long>> neighbors(Long v) {
-        Set<WeightedEdge<Long>> incidentSet = neighbors.get(v);
-        List<WeightedEdge<Long>> incidentList = new ArrayList<>();
-        for (WeightedEdge<Long> e : incidentSet) {
-            incidentList.add(e);
+        int i = index(v);
+        if (i < 0) {
+            return new ArrayList<>();
+        }
+        List<WeightedEdge<Long>> incidentList = new ArrayList<>(edgeEnd(i) - edgeStart(i));
+        for (int e = edgeStart(i); e < edgeEnd(i); e++) {
+            WeightedEdge<Long> weightedEdge = new WeightedEdge<>(v, ids[edgeTo[e]], edgeWeight[e]);
+            weightedEdge.setName(edgeName(e));
+            incidentList.add(weightedEdge);
         }
 
         return incidentList;
@@ -46,9 +116,157 @@ public class StreetMapGraph implements AStarGraph<Long> {
      */
     @Override
     public double estimatedDistanceToGoal(Long s, Long goal) {
-        Node sNode = nodes.get(s);
-        Node goalNode = nodes.get(goal);
-        return distance(sNode.lon(), goalNode.lon(), sNode.lat(), goalNode.lat());
+        int sIndex = index(s);
+        int goalIndex = index(goal);
+        return distance(lons[sIndex], lons[goalIndex], lats[sIndex], lats[goalIndex]);
+    }
+
+    /**
+     * Returns the great-circle distance between the vertices at indices S and GOAL.
+     */
+    @Override
+    public double estimatedDistanceToGoal(int s, int goal) {
+        return distance(lons[s], lons[goal], lats[s], lats[goal]);
+    }
+
+    /**
+     * Returns true, since {@link #add(OsmBatch)} adds every street segment in
+     * both directions.
+     */
+    @Override
+    public boolean isUndirected() {
+        return true;
+    }
+
+    /**
+     * Returns true, since edge weights are great-circle distances, which obey the
+     * triangle inequality and so are never less than the drop in the great-circle
+     * estimate. Subclasses may only tighten the estimate with other consistent bounds.
+     */
+    @Override
+    public boolean isConsistent() {
+        return true;
+    }
+
+    /**
+     * Returns the number of vertices of this graph. Vertex indices range over
+     * [0, numVertices()).
+     */
+    @Override
+    public int numVertices() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the index of the vertex with the given id, or -1 if it is not in this graph.
+     * @param id The id of the vertex.
+     * @return The dense index of the vertex.
+     */
+    @Override
+    public int index(long id) {
+        int i = Arrays.binarySearch(ids, id);
+        return i < 0 ? -1 : i;
+    }
+
+    /** Returns the id of the vertex at index V. */
+    @Override
+    public long id(int v) {
+        return ids[v];
+    }
+
+    /** Returns the longitude of the vertex at index V. */
+    public double vertexLon(int v) {
+        return lons[v];
+    }
+
+    /** Returns the latitude of the vertex at index V. */
+    public double vertexLat(int v) {
+        return lats[v];
+    }
+
+    /** Returns the index of the first outgoing edge of the vertex at index V. */
+    @Override
+    public int edgeStart(int v) {
+        return edgeStart[v];
+    }
+
+    /** Returns one past the index of the last outgoing edge of the vertex at index V. */
+    @Override
+    public int edgeEnd(int v) {
+        return edgeStart[v + 1];
+    }
+
+    /** Returns the index of the vertex edge E leads to. */
+    @Override
+    public int edgeTarget(int e) {
+        return edgeTo[e];
+    }
+
+    /** Returns the weight of edge E. */
+    @Override
+    public double edgeWeight(int e) {
+        return edgeWeight[e];
+    }
+
+    /**
+     * Returns the index of the edge from the vertex at index FROM to the one at index TO,
+     * or -1 if there is none. Only the out edges of FROM are looked at, a handful at most
+     * on a street map.
+     */
+    @Override
+    public int edgeIndex(int from, int to) {
+        if (from < 0 || to < 0) {
+            return -1;
+        }
+        for (int e = edgeStart[from]; e < edgeStart[from + 1]; e++) {
+            if (edgeTo[e] == to) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the index of the way edge E belongs to. */
+    public int edgeWay(int e) {
+        return edgeWay[e];
+    }
+
+    /** Returns the name of the way edge E belongs to. */
+    public String edgeName(int e) {
+        return wayNames[wayName[edgeWay[e]]];
+    }
+
+    /** Returns the number of ways of this graph. Way indices range over [0, numWays()). */
+    public int numWays() {
+        return wayName.length;
+    }
+
+    /** Returns the name of the way at index W, or "" if it has none. */
+    public String wayName(int w) {
+        return wayNames[wayName[w]];
+    }
+
+    /** Returns the highway type of the way at index W, such as "residential". */
+    public String wayHighway(int w) {
+        return ALLOWED_HIGHWAY_TYPES.get(wayHighway[w]);
+    }
+
+    /**
+     * Returns the index of the first vertex of the way at index W in the vertices
+     * returned by {@link #wayNode(int)}.
+     */
+    public int wayNodeStart(int w) {
+        return wayNodeStart[w];
+    }
+
+    /** Returns one past the index of the last vertex of the way at index W. */
+    public int wayNodeEnd(int w) {
+        return wayNodeStart[w + 1];
+    }
+
+    /** Returns the index of the Ith vertex in the concatenated vertices of all the ways. */
+    public int wayNode(int i) {
+        return wayNodes[i];
     }
 
     /**
@@ -57,7 +275,7 @@ public class StreetMapGraph implements AStarGraph<Long> {
      **/
     private Set<Long> vertices() {
         Set<Long> vertices = new HashSet<>();
-        for (long id : nodes.keySet()) {
+        for (long id : ids) {
             vertices.add(id);
         }
 
@@ -65,66 +283,325 @@ public class StreetMapGraph implements AStarGraph<Long> {
     }
 
     /**
-     * Factory method. Creates and returns a graph from an OSM XML
-     * file. Assumes file is correctly formatted.
+     * Factory method. Creates and returns a graph from an OSM file, read as PBF
+     * if its name ends in .pbf and as XML otherwise. Assumes file is correctly
+     * formatted.
      */
-    private static StreetMapGraph readFromXML(String filename) {
+    protected static StreetMapGraph readFromOSM(String filename) {
         StreetMapGraph smg = new StreetMapGraph();
-        try {
-//            File inputFile = new File(filename);
-//            FileInputStream inputStream = new FileInputStream(inputFile);
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            GraphBuildingHandler gbh = new GraphBuildingHandler(smg);
-            saxParser.parse(Thread.currentThread().getContextClassLoader().getResourceAsStream(filename), gbh);
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+        try (InputStream in = Thread.currentThread().getContextClassLoader()
+                .getResourceAsStream(filename)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No OSM file at " + filename + ".");
+            }
+            if (filename.endsWith(".pbf")) {
+                PbfReader.read(in, smg::add);
+            } else {
+                OsmXmlReader.read(in, smg::add);
+            }
+        } catch (IOException e) {
             e.printStackTrace();
         }
 
-        smg.clean();
+        smg.freeze();
         return smg;
     }
 
-    /** Adds a node to this graph, if it doesn't yet exist. **/
-    void addNode(Node node) {
-        if (!nodes.containsKey(node.id())) {
-            nodes.put(node.id(), node);
-            neighbors.put(node.id(), new HashSet<>());
-        }
+    /**
+     * Writes the frozen arrays of this graph to OUT, in the layout read back by
+     * {@link #readGraph(ByteBuffer)}.
+     */
+    protected void writeGraph(DataOutput out) throws IOException {
+        SnapshotIO.writeLongs(out, ids, ids.length);
+        SnapshotIO.writeDoubles(out, lons, lons.length);
+        SnapshotIO.writeDoubles(out, lats, lats.length);
+        SnapshotIO.writeStrings(out, names, names.length);
+        SnapshotIO.writeInts(out, edgeStart, edgeStart.length);
+        SnapshotIO.writeInts(out, edgeTo, edgeTo.length);
+        SnapshotIO.writeDoubles(out, edgeWeight, edgeWeight.length);
+        SnapshotIO.writeInts(out, edgeWay, edgeWay.length);
+        SnapshotIO.writeInts(out, wayName, wayName.length);
+        SnapshotIO.writeInts(out, wayHighway, wayHighway.length);
+        SnapshotIO.writeInts(out, wayNodeStart, wayNodeStart.length);
+        SnapshotIO.writeInts(out, wayNodes, wayNodes.length);
+        SnapshotIO.writeStrings(out, wayNames, wayNames.length);
+    }
+
+    /**
+     * Factory method. Creates and returns a graph from the arrays written by
+     * {@link #writeGraph(DataOutput)}, starting at the current position of IN.
+     */
+    protected static StreetMapGraph readGraph(ByteBuffer in) {
+        StreetMapGraph smg = new StreetMapGraph();
+        smg.ids = SnapshotIO.readLongs(in);
+        smg.lons = SnapshotIO.readDoubles(in);
+        smg.lats = SnapshotIO.readDoubles(in);
+        smg.names = SnapshotIO.readStrings(in);
+        smg.edgeStart = SnapshotIO.readInts(in);
+        smg.edgeTo = SnapshotIO.readInts(in);
+        smg.edgeWeight = SnapshotIO.readDoubles(in);
+        smg.edgeWay = SnapshotIO.readInts(in);
+        smg.wayName = SnapshotIO.readInts(in);
+        smg.wayHighway = SnapshotIO.readInts(in);
+        smg.wayNodeStart = SnapshotIO.readInts(in);
+        smg.wayNodes = SnapshotIO.readInts(in);
+        smg.wayNames = SnapshotIO.readStrings(in);
+        smg.discardBuffers();
+        return smg;
     }
 
-    /** Adds an edge to this graph, if FROMID and TOID are in this graph. Does
-     *  not add additional edge if edge already exists.
+    /**
+     * Adds the nodes and ways of BATCH to the build buffers. Ways without an allowed
+     * highway type are left out.
      **/
-    void addWeightedEdge(long fromID, long toID, String name) {
-        if (nodes.containsKey(fromID) && nodes.containsKey(toID)) {
-            Node from = nodes.get(fromID);
-            Node to = nodes.get(toID);
-            double weight = distance(from.lon(), to.lon(), from.lat(), to.lat());
+    void add(OsmBatch batch) {
+        for (int i = 0; i < batch.numNodes(); i++) {
+            addNode(batch.nodeId(i), batch.nodeLon(i), batch.nodeLat(i), batch.nodeName(i));
+        }
+        for (int w = 0; w < batch.numWays(); w++) {
+            int highway = ALLOWED_HIGHWAY_TYPES.indexOf(batch.wayHighway(w));
+            if (highway >= 0) {
+                addWay(batch, w, highway);
+            }
+        }
+    }
 
-            Set<WeightedEdge<Long>> edgeSet = neighbors.get(fromID);
-            WeightedEdge<Long> weightedEdge = new WeightedEdge<>(from.id(), to.id(), weight);
-            weightedEdge.setName(name);
-            edgeSet.add(weightedEdge);
+    /** Adds a node to the build buffers. If an id is added twice, the first node wins. **/
+    private void addNode(long id, double lon, double lat, String name) {
+        if (numBufferedNodes == nodeIDs.length) {
+            int capacity = nodeIDs.length * 2;
+            nodeIDs = Arrays.copyOf(nodeIDs, capacity);
+            nodeLons = Arrays.copyOf(nodeLons, capacity);
+            nodeLats = Arrays.copyOf(nodeLats, capacity);
+            nodeNames = Arrays.copyOf(nodeNames, capacity);
         }
+        nodeIDs[numBufferedNodes] = id;
+        nodeLons[numBufferedNodes] = lon;
+        nodeLats[numBufferedNodes] = lat;
+        nodeNames[numBufferedNodes] = name;
+        numBufferedNodes++;
+    }
+
+    /** Adds way W of BATCH, of the given highway type, to the build buffers. **/
+    private void addWay(OsmBatch batch, int w, int highway) {
+        if (numBufferedWays == wayNameIDs.length) {
+            int capacity = wayNameIDs.length * 2;
+            wayRefStart = Arrays.copyOf(wayRefStart, capacity + 1);
+            wayNameIDs = Arrays.copyOf(wayNameIDs, capacity);
+            wayHighways = Arrays.copyOf(wayHighways, capacity);
+        }
+        int numRefs = batch.wayStart(w + 1) - batch.wayStart(w);
+        if (numBufferedRefs + numRefs > wayRefs.length) {
+            wayRefs = Arrays.copyOf(wayRefs, Math.max(wayRefs.length * 2, numBufferedRefs + numRefs));
+        }
+        for (int i = batch.wayStart(w); i < batch.wayStart(w + 1); i++) {
+            wayRefs[numBufferedRefs++] = batch.ref(i);
+        }
+        Integer nameID = wayNameIndex.get(batch.wayName(w));
+        if (nameID == null) {
+            nameID = wayNameIndex.size();
+            wayNameIndex.put(batch.wayName(w), nameID);
+        }
+        wayNameIDs[numBufferedWays] = nameID;
+        wayHighways[numBufferedWays] = highway;
+        numBufferedWays++;
+        wayRefStart[numBufferedWays] = numBufferedRefs;
     }
 
     /**
-     * Removes vertices with 0 out-degree from graph. Note that this will
-     * cause issues if edges are not bidirectional.
+     * Converts the build buffers into the CSR arrays and discards them. Every pair of
+     * consecutive nodes of a way becomes an edge in both directions. Edges whose ends
+     * are not both nodes are dropped, as are duplicate edges (the first one added
+     * wins), and vertices with 0 out-degree and no name are removed from the graph.
+     * Note that the latter will cause issues if edges are not bidirectional, so edges
+     * into removed vertices are dropped as well. Ways left without edges are dropped
+     * from the way table, which lists the vertices of the others that are left.
      **/
-    private void clean() {
-        List<Long> toRemove = new ArrayList<>();
-        for (long id : nodes.keySet()) {
-            if (neighbors(id).size() == 0 && nodes.get(id).name() == null) {
-                toRemove.add(id);
+    private void freeze() {
+        /* Sort the distinct node ids, keeping the first node added for each of them. */
+        long[] sortedIDs = Arrays.copyOf(nodeIDs, numBufferedNodes);
+        Arrays.sort(sortedIDs);
+        int n = 0;
+        for (int b = 0; b < sortedIDs.length; b++) {
+            if (n == 0 || sortedIDs[b] != sortedIDs[n - 1]) {
+                sortedIDs[n++] = sortedIDs[b];
+            }
+        }
+        int[] node = new int[n];  // buffer position of the node of each id
+        Arrays.fill(node, -1);
+        for (int b = 0; b < numBufferedNodes; b++) {
+            int v = Arrays.binarySearch(sortedIDs, 0, n, nodeIDs[b]);
+            if (node[v] < 0) {
+                node[v] = b;
             }
         }
+        int[] refNode = new int[numBufferedRefs];  // position of each ref, or -1
+        for (int i = 0; i < numBufferedRefs; i++) {
+            refNode[i] = Math.max(Arrays.binarySearch(sortedIDs, 0, n, wayRefs[i]), -1);
+        }
 
-        for (long id : toRemove) {
-            nodes.remove(id);
-            neighbors.remove(id);
+        /* Lay out the edges of the ways, keeping the ways and way names they use. */
+        int m = 0;
+        for (int w = 0; w < numBufferedWays; w++) {
+            m += 2 * Math.max(wayRefStart[w + 1] - wayRefStart[w] - 1, 0);
+        }
+        int[] from = new int[m];
+        int[] to = new int[m];
+        int[] way = new int[m];
+        int[] degree = new int[n];
+        int[] wayIndex = new int[numBufferedWays];
+        int[] nameIndex = new int[wayNameIndex.size()];
+        Arrays.fill(nameIndex, -1);
+        int numWays = 0;
+        int numNames = 0;
+        int e = 0;
+        for (int w = 0; w < numBufferedWays; w++) {
+            wayIndex[w] = -1;
+            for (int i = wayRefStart[w]; i < wayRefStart[w + 1] - 1; i++) {
+                for (int d = 0; d < 2; d++, e++) {
+                    from[e] = refNode[i + d];
+                    to[e] = refNode[i + 1 - d];
+                    if (from[e] < 0 || to[e] < 0) {
+                        from[e] = -1;
+                        continue;
+                    }
+                    degree[from[e]]++;
+                    if (wayIndex[w] < 0) {
+                        wayIndex[w] = numWays++;
+                        if (nameIndex[wayNameIDs[w]] < 0) {
+                            nameIndex[wayNameIDs[w]] = numNames++;
+                        }
+                    }
+                    way[e] = wayIndex[w];
+                }
+            }
+        }
+
+        /* Counting sort of the edges by source, keeping the order they were added in. */
+        int[] start = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            start[v + 1] = start[v] + degree[v];
+        }
+        int[] next = Arrays.copyOf(start, n);
+        int[] sorted = new int[start[n]];
+        for (e = 0; e < m; e++) {
+            if (from[e] >= 0) {
+                sorted[next[from[e]]++] = e;
+            }
+        }
+
+        /* Drop duplicate edges, then vertices that are left without edges or a name. */
+        int[] outDegree = new int[n];
+        for (int v = 0; v < n; v++) {
+            for (int i = start[v]; i < start[v + 1]; i++) {
+                if (!isDuplicate(sorted, to, start[v], i)) {
+                    outDegree[v]++;
+                } else {
+                    sorted[i] = -1;
+                }
+            }
+        }
+        int[] newIndex = new int[n];
+        int numVertices = 0;
+        for (int v = 0; v < n; v++) {
+            boolean named = nodeNames[node[v]] != null;
+            newIndex[v] = (outDegree[v] == 0 && !named) ? -1 : numVertices++;
+        }
+
+        /* Lay out the frozen arrays. */
+        ids = new long[numVertices];
+        lons = new double[numVertices];
+        lats = new double[numVertices];
+        names = new String[numVertices];
+        edgeStart = new int[numVertices + 1];
+        edgeTo = new int[sorted.length];
+        edgeWeight = new double[sorted.length];
+        edgeWay = new int[sorted.length];
+        int numEdges = 0;
+        for (int v = 0; v < n; v++) {
+            if (newIndex[v] < 0) {
+                continue;
+            }
+            int i = newIndex[v];
+            int b = node[v];
+            ids[i] = sortedIDs[v];
+            lons[i] = nodeLons[b];
+            lats[i] = nodeLats[b];
+            names[i] = nodeNames[b];
+            edgeStart[i] = numEdges;
+            for (int j = start[v]; j < start[v + 1]; j++) {
+                e = sorted[j];
+                if (e < 0 || newIndex[to[e]] < 0) {
+                    continue;
+                }
+                int toB = node[to[e]];
+                edgeTo[numEdges] = newIndex[to[e]];
+                edgeWeight[numEdges] = distance(nodeLons[b], nodeLons[toB],
+                        nodeLats[b], nodeLats[toB]);
+                edgeWay[numEdges] = way[e];
+                numEdges++;
+            }
+        }
+        edgeStart[numVertices] = numEdges;
+        edgeTo = Arrays.copyOf(edgeTo, numEdges);
+        edgeWeight = Arrays.copyOf(edgeWeight, numEdges);
+        edgeWay = Arrays.copyOf(edgeWay, numEdges);
+
+        /* Lay out the way table. */
+        wayName = new int[numWays];
+        wayHighway = new int[numWays];
+        wayNodeStart = new int[numWays + 1];
+        wayNodes = new int[numBufferedRefs];
+        int numWayNodes = 0;
+        for (int w = 0; w < numBufferedWays; w++) {
+            int k = wayIndex[w];
+            if (k < 0) {
+                continue;
+            }
+            wayName[k] = nameIndex[wayNameIDs[w]];
+            wayHighway[k] = wayHighways[w];
+            wayNodeStart[k] = numWayNodes;
+            for (int i = wayRefStart[w]; i < wayRefStart[w + 1]; i++) {
+                if (refNode[i] >= 0 && newIndex[refNode[i]] >= 0) {
+                    wayNodes[numWayNodes++] = newIndex[refNode[i]];
+                }
+            }
+        }
+        wayNodeStart[numWays] = numWayNodes;
+        wayNodes = Arrays.copyOf(wayNodes, numWayNodes);
+        wayNames = new String[numNames];
+        for (Map.Entry<String, Integer> name : wayNameIndex.entrySet()) {
+            if (nameIndex[name.getValue()] >= 0) {
+                wayNames[nameIndex[name.getValue()]] = name.getKey();
+            }
+        }
+
+        discardBuffers();
+    }
+
+    private void discardBuffers() {
+        nodeIDs = null;
+        nodeLons = null;
+        nodeLats = null;
+        nodeNames = null;
+        wayRefs = null;
+        wayRefStart = null;
+        wayNameIDs = null;
+        wayHighways = null;
+        wayNameIndex = null;
+    }
+
+    /**
+     * Returns true if the edge at position I of SORTED has the same target as an
+     * edge kept earlier in [FROM, I).
+     */
+    private static boolean isDuplicate(int[] sorted, int[] to, int from, int i) {
+        for (int j = from; j < i; j++) {
+            if (sorted[j] >= 0 && to[sorted[j]] == to[sorted[i]]) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
@@ -197,10 +674,11 @@ public class StreetMapGraph implements AStarGraph<Long> {
      * @return The longitude of the vertex.
      */
     public double lon(long v) {
-        if (!nodes.containsKey(v)) {
+        int i = index(v);
+        if (i < 0) {
             return 0.0;
         }
-        return nodes.get(v).lon();
+        return lons[i];
     }
 
     /**
@@ -209,10 +687,11 @@ public class StreetMapGraph implements AStarGraph<Long> {
      * @return The latitude of the vertex.
      */
     public double lat(long v) {
-        if (!nodes.containsKey(v)) {
+        int i = index(v);
+        if (i < 0) {
             return 0.0;
         }
-        return nodes.get(v).lat();
+        return lats[i];
     }
 
     /**
@@ -221,16 +700,19 @@ public class StreetMapGraph implements AStarGraph<Long> {
      * @return The name of the vertex.
      */
     public String name(long v) {
-        if (!nodes.containsKey(v)) {
+        int i = index(v);
+        if (i < 0) {
             return null;
         }
-        return nodes.get(v).name();
+        return names[i];
     }
 
     protected List<Node> getNodes() {
-        List<Node> nodes = new ArrayList<>();
-        for(Map.Entry<Long, Node> nodeEntry: this.nodes.entrySet()){
-            nodes.add(nodeEntry.getValue());
+        List<Node> nodes = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            Node node = Node.of(ids[i], lats[i], lons[i]);
+            node.setName(names[i]);
+            nodes.add(node);
         }
         return nodes;
     }
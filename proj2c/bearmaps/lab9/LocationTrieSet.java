@@ -3,7 +3,7 @@ package bearmaps.lab9;
 import bearmaps.hw4.streetmap.Node;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -11,43 +11,190 @@ import java.util.List;
  * with given prefix application. Modified from the original TrieSet in lab9 to construct
  * the trie with clean string, store the full string and ids in the key node.
  *
+ * The trie is built once from the names of the nodes and packed into arrays. The
+ * distinct cleaned names are sorted, so the keys under any trie node make up a range
+ * of them. Trie nodes are numbered breadth first, so the children of a node are
+ * numbered consecutively and looked up by binary search on their characters. No
+ * objects are allocated per trie node and no characters are boxed.
+ *
+ * Each trie node also caches the best {@value #CACHED_TOP_K} keys under it, ranked
+ * by how many nodes have the key, so the top completions of a prefix cost a walk down
+ * the prefix plus copying the cached list, however many keys share the prefix.
+ *
+ * Misspelled keys are looked up by walking the trie with the rows of the Levenshtein
+ * edit distance table, one row per character of the path, and leaving any subtree
+ * whose row is already farther than the best match from the key.
+ *
  * @author Hsingyi Lin
  * date    10/14/2019
  */
 
 public class LocationTrieSet {
 
-    private TrieNode root;
+    /** The number of best keys cached in each trie node. */
+    public static final int CACHED_TOP_K = 10;
+
+    /* The keys: distinct cleaned names in sorted order. */
+    private final String[] keys;
+    private final String[] fullKeys;    // full name of each key, the last one added
+    private final int[] keyNodeStart;   // first of the nodes of each key in keyNodes
+    private final Node[] keyNodes;
+
+    /* The trie nodes, the root being 0. */
+    private final char[] label;         // character on the edge into each trie node
+    private final int[] firstChild;     // children of v are firstChild[v] to firstChild[v + 1] - 1
+    private final int[] keyOf;          // key ending at each trie node, or -1
+    private final int[] keyLo;          // first key under each trie node
+    private final int[] keyHi;          // one past the last key under each trie node
+    private final int[] topStart;       // first of the best keys of each trie node in topKeys
+    private final int[] topKeys;        // best keys under each trie node, best first
+    private final int maxKeyLength;
 
     /**
-     * Stores a character, key identification, and a HashMap for the following
-     * characters.
+     * Builds the trie from the names of the given nodes. Nodes without a name, or
+     * whose name has nothing left once cleaned, are left out.
+     *
+     * @param nodes the nodes
      */
-    private static class TrieNode {
-        private boolean isKey;
-        private String fullkey;
-        private ArrayList<Node> nodes;
-        private HashMap<Character, TrieNode> next;
-        private TrieNode() {
-            isKey = false;
-            fullkey = null;
-            nodes = new ArrayList<>();
-            next = new HashMap<>();
+    public LocationTrieSet(List<Node> nodes) {
+        /* Sorts the named nodes by cleaned name, keeping their order otherwise. */
+        List<String> cleaned = new ArrayList<>(nodes.size());
+        List<Integer> order = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            String name = nodes.get(i).name();
+            String clean = name == null ? "" : cleanString(name);
+            cleaned.add(clean);
+            if (clean.length() > 0) {
+                order.add(i);
+            }
+        }
+        order.sort((i, j) -> cleaned.get(i).compareTo(cleaned.get(j)));
+
+        /* Groups them by key. */
+        List<String> keyList = new ArrayList<>();
+        List<String> fullKeyList = new ArrayList<>();
+        keyNodeStart = new int[order.size() + 1];
+        keyNodes = new Node[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            Node n = nodes.get(order.get(i));
+            String clean = cleaned.get(order.get(i));
+            if (keyList.isEmpty() || !keyList.get(keyList.size() - 1).equals(clean)) {
+                keyNodeStart[keyList.size()] = i;
+                keyList.add(clean);
+                fullKeyList.add(n.name());
+            } else {
+                fullKeyList.set(keyList.size() - 1, n.name());
+            }
+            keyNodes[i] = n;
+        }
+        keyNodeStart[keyList.size()] = order.size();
+        keys = keyList.toArray(new String[0]);
+        fullKeys = fullKeyList.toArray(new String[0]);
+        int longest = 0;
+        for (String k : keys) {
+            longest = Math.max(longest, k.length());
+        }
+        maxKeyLength = longest;
+
+        /*
+         * Builds the trie breadth first. Each trie node in the queue is the range of
+         * keys starting with its prefix; its children split the range by the next
+         * character, with the key equal to the prefix, if any, coming first.
+         */
+        int capacity = 16;
+        for (String k : keys) {
+            capacity += k.length();
+        }
+        char[] labels = new char[capacity];
+        int[] firsts = new int[capacity + 1];
+        int[] keyOfs = new int[capacity];
+        int[] los = new int[capacity];
+        int[] his = new int[capacity];
+        int[] depths = new int[capacity];
+        int size = 1;
+        his[0] = keys.length;
+        for (int v = 0; v < size; v++) {
+            int lo = los[v];
+            int depth = depths[v];
+            keyOfs[v] = -1;
+            if (lo < his[v] && keys[lo].length() == depth) {
+                keyOfs[v] = lo++;
+            }
+            firsts[v] = size;
+            while (lo < his[v]) {
+                char ch = keys[lo].charAt(depth);
+                int hi = lo + 1;
+                while (hi < his[v] && keys[hi].charAt(depth) == ch) {
+                    hi++;
+                }
+                labels[size] = ch;
+                los[size] = lo;
+                his[size] = hi;
+                depths[size] = depth + 1;
+                size++;
+                lo = hi;
+            }
+        }
+        firsts[size] = size;
+        label = Arrays.copyOf(labels, size);
+        firstChild = Arrays.copyOf(firsts, size + 1);
+        keyOf = Arrays.copyOf(keyOfs, size);
+        keyLo = Arrays.copyOf(los, size);
+        keyHi = Arrays.copyOf(his, size);
+
+        /*
+         * Ranks the keys under each trie node from its children's rankings, deepest
+         * trie nodes first, as children are numbered after their parents.
+         */
+        int[][] tops = new int[size][];
+        int total = 0;
+        for (int v = size - 1; v >= 0; v--) {
+            int[] top = new int[Math.min(CACHED_TOP_K, keyHi[v] - keyLo[v])];
+            int n = 0;
+            if (keyOf[v] != -1) {
+                top[n++] = keyOf[v];
+            }
+            for (int c = firstChild[v]; c < firstChild[v + 1]; c++) {
+                for (int k : tops[c]) {
+                    n = insertRanked(top, n, k);
+                }
+            }
+            tops[v] = top;
+            total += top.length;
+        }
+        topStart = new int[size + 1];
+        topKeys = new int[total];
+        for (int v = 0; v < size; v++) {
+            topStart[v + 1] = topStart[v] + tops[v].length;
+            System.arraycopy(tops[v], 0, topKeys, topStart[v], tops[v].length);
         }
     }
 
-    /**
-     * Initializes the root node with an arbitrary character.
-     */
-    public LocationTrieSet() {
-        root = new TrieNode();
+    /** Returns the number of nodes with the key {@code k}, its popularity. */
+    private int score(int k) {
+        return keyNodeStart[k + 1] - keyNodeStart[k];
+    }
+
+    /** Returns whether key {@code a} ranks above key {@code b}. */
+    private boolean ranksAbove(int a, int b) {
+        return score(a) != score(b) ? score(a) > score(b) : a < b;
     }
 
     /**
-     * Clear all following nodes besides the root.
+     * Inserts the key {@code k} into the ranking {@code top} of {@code n} keys,
+     * dropping the last key if it is full, and returns the new number of keys.
      */
-    public void clear() {
-        root.next.clear();
+    private int insertRanked(int[] top, int n, int k) {
+        if (n == top.length && !ranksAbove(k, top[n - 1])) {
+            return n;
+        }
+        int i = n == top.length ? n - 1 : n++;
+        while (i > 0 && ranksAbove(k, top[i - 1])) {
+            top[i] = top[i - 1];
+            i--;
+        }
+        top[i] = k;
+        return n;
     }
 
     /**
@@ -62,130 +209,208 @@ public class LocationTrieSet {
         if (key == null || key.length() < 1) {
             throw new IllegalArgumentException("argument to contains() is null or size is 0");
         }
-        TrieNode curr = root;
-        for (int i = 0; i < key.length(); i++) {
-            char ch = key.charAt(i);
-            if (!curr.next.containsKey(ch)) {
-                return false;
-            }
-            curr = curr.next.get(ch);
-        }
-        return true;
+        return getEndNode(key) != -1;
     }
 
     /**
-     * Inserts the key into the trie set.
+     * Returns all keys in the trie set that match with the prefix.
      *
-     * @param key the key
+     * @param prefix the prefix string
+     * @return the list of keys with the given prefix
      * @throws IllegalArgumentException if {@code key} is {@code null} or size is 0
      */
-    public void add(String key, Node node) {
-        if (key == null || key.length() < 1) {
-            throw new IllegalArgumentException("argument to add() is null or size is 0");
+    public List<String> keysWithPrefix(String prefix) {
+        if (prefix == null || prefix.length() < 1) {
+            throw new IllegalArgumentException("argument to keysWithPrefix() is null or size is 0");
         }
-        String full = key;
-        key = cleanString(key);
-        if (key.length() < 1) {
-            return;
+        int trieNode = getEndNode(prefix);
+        if (trieNode == -1) {
+            return null;
+        }
+        ArrayList<String> result = new ArrayList<>(keyHi[trieNode] - keyLo[trieNode]);
+        for (int k = keyLo[trieNode]; k < keyHi[trieNode]; k++) {
+            if (k != keyOf[trieNode]) {
+                result.add(fullKeys[k]);
+            }
         }
-        addHelper(root, key, full, node);
+        return result;
     }
 
     /**
-     * Helper function to recursively match and insert characters of the given key.
+     * Returns the {@code k} best keys in the trie set that match with the prefix,
+     * including the prefix itself, best first. Keys are ranked by how many nodes have
+     * them, then alphabetically. Costs the length of the prefix plus {@code k} when
+     * {@code k} is at most {@link #CACHED_TOP_K}.
      *
-     * @param n the node
-     * @param k the key
+     * @param prefix the prefix string
+     * @param k the number of keys
+     * @return the list of the best keys with the given prefix
+     * @throws IllegalArgumentException if {@code key} is {@code null} or size is 0
      */
-    private void addHelper(TrieNode n, String k, String f, Node node) {
-        char ch = k.charAt(0);
-        if (!n.next.containsKey(ch)) {
-            n.next.put(ch, new TrieNode());
+    public List<String> topKWithPrefix(String prefix, int k) {
+        if (prefix == null || prefix.length() < 1) {
+            throw new IllegalArgumentException("argument to topKWithPrefix() is null or size is 0");
+        }
+        int trieNode = getEndNode(prefix);
+        if (trieNode == -1) {
+            return null;
         }
-        TrieNode nextTrieNode = n.next.get(ch);
-        if (k.length() == 1) {
-            nextTrieNode.isKey = true;
-            nextTrieNode.fullkey = f;
-            nextTrieNode.nodes.add(node);
+        int[] top = topKeys;
+        int start = topStart[trieNode];
+        int n = Math.min(k, topStart[trieNode + 1] - start);
+        if (k > CACHED_TOP_K) {
+            /* Ranks every key under the prefix. */
+            top = new int[Math.min(k, keyHi[trieNode] - keyLo[trieNode])];
+            start = 0;
+            n = 0;
+            for (int key = keyLo[trieNode]; key < keyHi[trieNode]; key++) {
+                n = insertRanked(top, n, key);
+            }
         }
-        else {
-            addHelper(nextTrieNode, k.substring(1), f, node);
+        ArrayList<String> result = new ArrayList<>(Math.max(n, 0));
+        for (int i = 0; i < n; i++) {
+            result.add(fullKeys[top[start + i]]);
         }
+        return result;
     }
 
     /**
-     * Returns all keys in the trie set that match with the prefix.
+     * Returns all ids in the trie set that match the exact key.
      *
-     * @param prefix the prefix string
-     * @return the list of keys with the given prefix
+     * @param key the search string
+     * @return the list of ids that match the exact key
      * @throws IllegalArgumentException if {@code key} is {@code null} or size is 0
      */
-    public List<String> keysWithPrefix(String prefix) {
-        if (prefix == null || prefix.length() < 1) {
+    public List<Node> idsMatched(String key) {
+        if (key == null || key.length() < 1) {
             throw new IllegalArgumentException("argument to keysWithPrefix() is null or size is 0");
         }
-        TrieNode trieNode = getEndNode(prefix);
-        if (trieNode == null) {
+        int trieNode = getEndNode(cleanString(key));
+        if (trieNode == -1) {
             return null;
         }
-        ArrayList<String> keys = new ArrayList<>();
-        for (Character ch : trieNode.next.keySet()) {
-            collectHelper(prefix + ch, trieNode.next.get(ch), keys);
+        int k = keyOf[trieNode];
+        if (k == -1) {
+            return new ArrayList<>();
         }
-        return keys;
+        return new ArrayList<>(Arrays.asList(keyNodes).subList(keyNodeStart[k], keyNodeStart[k + 1]));
     }
 
     /**
-     * Returns all ids in the trie set that match the exact key.
+     * Returns all ids in the trie set whose key is closest to the given key by edit
+     * distance (insertions, deletions and substitutions of characters, once cleaned),
+     * as long as it is at most {@code maxDistance}. Ties are all included, in order of
+     * their keys.
      *
      * @param key the search string
-     * @return the list of ids that match the exact key
+     * @param maxDistance the largest edit distance allowed
+     * @return the list of ids of the closest keys, or null if none is close enough
      * @throws IllegalArgumentException if {@code key} is {@code null} or size is 0
      */
-    public List<Node> idsMatched(String key) {
+    public List<Node> idsMatchedFuzzy(String key, int maxDistance) {
         if (key == null || key.length() < 1) {
-            throw new IllegalArgumentException("argument to keysWithPrefix() is null or size is 0");
+            throw new IllegalArgumentException("argument to idsMatchedFuzzy() is null or size is 0");
+        }
+        String clean = cleanString(key);
+        int[][] rows = new int[maxKeyLength + 1][clean.length() + 1];
+        for (int j = 0; j <= clean.length(); j++) {
+            rows[0][j] = j;
         }
-        TrieNode trieNode = getEndNode(cleanString(key));
-        if (trieNode == null) {
+        FuzzyMatches matches = new FuzzyMatches(maxDistance);
+        fuzzyHelper(0, 0, clean, rows, matches);
+        if (matches.keys.isEmpty()) {
             return null;
         }
-        return trieNode.nodes;
+        List<Node> result = new ArrayList<>();
+        for (int k : matches.keys) {
+            result.addAll(Arrays.asList(keyNodes).subList(keyNodeStart[k], keyNodeStart[k + 1]));
+        }
+        return result;
+    }
+
+    /** The closest keys found so far and their edit distance. */
+    private static class FuzzyMatches {
+        private int distance;
+        private final List<Integer> keys = new ArrayList<>();
+
+        private FuzzyMatches(int maxDistance) {
+            distance = maxDistance;
+        }
+
+        private void offer(int key, int d) {
+            if (d < distance) {
+                distance = d;
+                keys.clear();
+            }
+            if (d == distance) {
+                keys.add(key);
+            }
+        }
     }
 
     /**
-     * Helper function to get the last node of the given {@code key}.
+     * Helper function to recursively match the given key against the trie node
+     * {@code v} at the given depth, whose row of the edit distance table is
+     * {@code rows[depth]}, and move on to the children that can still match.
      *
-     * @param key the key
-     * @return the last node of the given {@code key}.
+     * @param v the trie node
+     * @param depth the depth of the trie node
+     * @param key the cleaned search string
+     * @param rows the rows of the edit distance table along the path
+     * @param matches the closest keys found so far
      */
-    private TrieNode getEndNode(String key) {
-        TrieNode curr = root;
-        for (int i = 0; i < key.length(); i++) {
-            char ch = key.charAt(i);
-            if (!curr.next.containsKey(ch)) {
-                return null;
+    private void fuzzyHelper(int v, int depth, String key, int[][] rows, FuzzyMatches matches) {
+        int[] row = rows[depth];
+        if (keyOf[v] != -1) {
+            matches.offer(keyOf[v], row[key.length()]);
+        }
+        for (int c = firstChild[v]; c < firstChild[v + 1]; c++) {
+            int[] next = rows[depth + 1];
+            next[0] = depth + 1;
+            int min = next[0];
+            for (int j = 1; j <= key.length(); j++) {
+                int cost = key.charAt(j - 1) == label[c] ? 0 : 1;
+                next[j] = Math.min(Math.min(row[j] + 1, next[j - 1] + 1), row[j - 1] + cost);
+                min = Math.min(min, next[j]);
+            }
+            if (min <= matches.distance) {
+                fuzzyHelper(c, depth + 1, key, rows, matches);
             }
-            curr = curr.next.get(ch);
         }
-        return curr;
     }
 
     /**
-     * Helper function to recursively add the keys with the given prefix, and
-     * moves on the the following characters in the trie table.
+     * Helper function to get the last node of the given {@code key}.
      *
-     * @param s the prefix string
-     * @param n the node
-     * @param keys the list of keys with the given prefix
+     * @param key the key
+     * @return the last node of the given {@code key}, or -1 if there is none.
      */
-    private void collectHelper(String s, TrieNode n, List<String> keys) {
-        if (n.isKey) {
-            keys.add(n.fullkey);
+    private int getEndNode(String key) {
+        int curr = 0;
+        for (int i = 0; i < key.length() && curr != -1; i++) {
+            curr = child(curr, key.charAt(i));
         }
-        for (Character ch : n.next.keySet()) {
-            collectHelper(s + ch, n.next.get(ch), keys);
+        return curr;
+    }
+
+    /**
+     * Returns the child of the trie node {@code v} on the character {@code ch}, or -1
+     * if there is none.
+     */
+    private int child(int v, char ch) {
+        int lo = firstChild[v];
+        int hi = firstChild[v + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (label[mid] < ch) {
+                lo = mid + 1;
+            } else if (label[mid] > ch) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
         }
+        return -1;
     }
 
     /**
@@ -0,0 +1,258 @@
+package bearmaps.proj2ab;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * The {@code ArrayIndexMinPQ} class implements the IndexMinPQ interface with a
+ * d-ary heap, 4-ary by default. Items are the integers 0 to capacity - 1, so
+ * positions and priorities are kept in plain arrays indexed by item and nothing is
+ * boxed or hashed. Uses a one-based array: the children of the item at x are at
+ * d(x - 1) + 2 to d(x - 1) + d + 1, and its parent is at (x - 2) / d + 1.
+ *
+ * A wider heap is shallower, so adding an item or lowering its priority, which
+ * searches do far more often than removing one, moves it up fewer levels, and
+ * the children compared when sinking sit next to each other in memory.
+ *
+ * @author Hsingyi Lin
+ */
+
+public class ArrayIndexMinPQ implements IndexMinPQ {
+    /** The number of children of each item unless given. */
+    public static final int DEFAULT_ARITY = 4;
+
+    private final int arity;      // number of children of each item
+    private int[] heap;           // store items at indices 1 to n
+    private int[] pos;            // position of each item in heap, 0 if absent
+    private double[] priorities;  // priority of each item
+    private int n;                // number of items
+
+    /**
+     * Initializes an empty priority queue of the items 0 to {@code capacity} - 1.
+     *
+     * @param capacity the number of possible items
+     */
+    public ArrayIndexMinPQ(int capacity) {
+        this(capacity, DEFAULT_ARITY);
+    }
+
+    /**
+     * Initializes an empty priority queue of the items 0 to {@code capacity} - 1 as
+     * a heap in which each item has {@code arity} children.
+     *
+     * @param capacity the number of possible items
+     * @param arity the number of children of each item, at least 2
+     */
+    public ArrayIndexMinPQ(int capacity, int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("arity must be at least 2");
+        }
+        this.arity = arity;
+        heap = new int[capacity + 1];
+        pos = new int[capacity];
+        priorities = new double[capacity];
+        n = 0;
+    }
+
+    /**
+     * Returns the number of possible items.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return pos.length;
+    }
+
+    /**
+     * Makes room for the items 0 to {@code capacity} - 1, keeping the items in the
+     * PQ. Does nothing if there is room already.
+     *
+     * @param capacity the number of possible items
+     */
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity > pos.length) {
+            heap = Arrays.copyOf(heap, capacity + 1);
+            pos = Arrays.copyOf(pos, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+        }
+    }
+
+    /**
+     * Adds item {@code i} with the given priority.
+     *
+     * @param i the item
+     * @param priority the extrinsic priority
+     * @throws IllegalArgumentException if {@code i} already exists
+     */
+    @Override
+    public void add(int i, double priority) {
+        if (contains(i)) {
+            throw new IllegalArgumentException("argument to add() already exists in PQ");
+        }
+        n++;
+        heap[n] = i;
+        pos[i] = n;
+        priorities[i] = priority;
+        swim(n);
+    }
+
+    @Override
+    public boolean contains(int i) {
+        return pos[i] != 0;
+    }
+
+    /**
+     * Returns the item with smallest priority in the PQ.
+     *
+     * @return the item with smallest priority
+     * @throws NoSuchElementException if PQ is empty
+     */
+    @Override
+    public int getSmallest() {
+        if (n == 0) {
+            throw new NoSuchElementException("PQ is empty");
+        }
+        return heap[1];
+    }
+
+    /**
+     * Returns the smallest priority in the PQ.
+     *
+     * @return the smallest priority
+     * @throws NoSuchElementException if PQ is empty
+     */
+    @Override
+    public double smallestPriority() {
+        return priorities[getSmallest()];
+    }
+
+    /**
+     * Returns the priority of item {@code i}, which must be in the PQ.
+     *
+     * @param i the item
+     * @return the priority of the item
+     */
+    public double priority(int i) {
+        return priorities[i];
+    }
+
+    /**
+     * Removes and returns the item with smallest priority in the PQ.
+     *
+     * @return the item with smallest priority
+     * @throws NoSuchElementException if PQ is empty
+     */
+    @Override
+    public int removeSmallest() {
+        int smallest = getSmallest();
+        move(heap[n], 1);
+        n--;
+        pos[smallest] = 0;
+        if (n > 0) {
+            sink(1);
+        }
+        return smallest;
+    }
+
+    /**
+     * Sets the priority of item {@code i} to the given value.
+     *
+     * @param i the item
+     * @param priority the priority
+     * @throws IllegalArgumentException if {@code i} does not exist
+     */
+    @Override
+    public void changePriority(int i, double priority) {
+        if (!contains(i)) {
+            throw new IllegalArgumentException("argument to changePriority() does not exist");
+        }
+        double oldPriority = priorities[i];
+        priorities[i] = priority;
+        if (priority > oldPriority) {
+            sink(pos[i]);
+        } else {
+            swim(pos[i]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Removes all items. Takes time proportional to the number of items, not
+     * the capacity, so a PQ can be reused cheaply between searches.
+     */
+    @Override
+    public void clear() {
+        for (int k = 1; k <= n; k++) {
+            pos[heap[k]] = 0;
+        }
+        n = 0;
+    }
+
+    /**
+     * Moves the item at {@code x} up while it has lower priority than its parent.
+     *
+     * @param x the index of the item at the array
+     */
+    private void swim(int x) {
+        int item = heap[x];
+        double priority = priorities[item];
+        while (x > 1) {
+            int parent = (x - 2) / arity + 1;
+            if (priority >= priorities[heap[parent]]) {
+                break;
+            }
+            move(heap[parent], x);
+            x = parent;
+        }
+        move(item, x);
+    }
+
+    /**
+     * Moves the item at {@code x} down while it has higher priority than its
+     * smallest child.
+     *
+     * @param x the index of the item at the array
+     */
+    private void sink(int x) {
+        int item = heap[x];
+        double priority = priorities[item];
+        while (true) {
+            int first = arity * (x - 1) + 2;
+            if (first > n) {
+                break;
+            }
+            int last = Math.min(first + arity - 1, n);
+            int child = first;
+            double smallest = priorities[heap[first]];
+            for (int c = first + 1; c <= last; c++) {
+                double p = priorities[heap[c]];
+                if (p < smallest) {
+                    child = c;
+                    smallest = p;
+                }
+            }
+            if (smallest >= priority) {
+                break;
+            }
+            move(heap[child], x);
+            x = child;
+        }
+        move(item, x);
+    }
+
+    /** Places {@code item} at index {@code x} of the heap. */
+    private void move(int item, int x) {
+        heap[x] = item;
+        pos[item] = x;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOfRange(heap, 1, n + 1));
+    }
+}
@@ -0,0 +1,47 @@
+package bearmaps.proj2ab;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * The {@code DaryHeapMinPQ} class implements the ExtrinsicMinPQ interface with the
+ * d-ary heap of an {@link ArrayIndexMinPQ}, 4-ary by default. Each item gets an int
+ * handle the first time it is added, and the heap holds the handles, their
+ * priorities and their positions in plain arrays, so no node object is allocated per
+ * entry and moving an item in the heap touches no map.
+ *
+ * @author Hsingyi Lin
+ */
+
+public class DaryHeapMinPQ<T> extends HandleMinPQ<T> {
+    private static final int INIT_SIZE = 16;
+
+    /**
+     * Initializes an empty 4-ary priority queue.
+     */
+    public DaryHeapMinPQ() {
+        this(ArrayIndexMinPQ.DEFAULT_ARITY);
+    }
+
+    /**
+     * Initializes an empty priority queue in which each item has {@code arity}
+     * children.
+     *
+     * @param arity the number of children of each item, at least 2
+     */
+    public DaryHeapMinPQ(int arity) {
+        super(new ArrayIndexMinPQ(INIT_SIZE, arity), null, INIT_SIZE);
+    }
+
+    /**
+     * Initializes an empty priority queue of items with dense indices given by
+     * {@code indexer}, which must be distinct non-negative ints for distinct items.
+     * The PQ grows past {@code capacity} if it meets larger indices.
+     *
+     * @param indexer the index of each item
+     * @param capacity one more than the largest index expected
+     * @param arity the number of children of each item, at least 2
+     */
+    public DaryHeapMinPQ(ToIntFunction<T> indexer, int capacity, int arity) {
+        super(new ArrayIndexMinPQ(capacity, arity), indexer, capacity);
+    }
+}
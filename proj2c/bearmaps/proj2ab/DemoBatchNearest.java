@@ -0,0 +1,125 @@
+package bearmaps.proj2ab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times the ways of answering many nearest queries on KDTree and GeoGrid: one at a
+ * time in the order given, with and without the previous answer as a hint; in Hilbert
+ * order, with and without the hint; and BatchNearest itself, which adds the fork-join
+ * split on top of the last. Each is the best of five rounds, sorting included; the
+ * rounds take turns between the ways so that none of them gets a warmer JIT.
+ *
+ * The queries are random walks like GPS traces, first in the order they were recorded
+ * and then shuffled. Recorded traces are already in an order where each query is near
+ * the one before it, so the Hilbert sort can only pay off on the shuffled ones. Run with
+ * -Djava.util.concurrent.ForkJoinPool.common.parallelism=1 to time the batch on one
+ * core.
+ */
+public class DemoBatchNearest {
+    private static final int ROUNDS = 5;
+    private static final int NUM_POINTS = 150000;
+    private static final int NUM_QUERIES = 200000;
+    private static final int TRACE_LENGTH = 500;
+
+    /** A way of answering all the queries, returning the answers in query order. */
+    private interface Strategy {
+        int[] run(IndexedPointSet set, double[] xs, double[] ys);
+    }
+
+    public static void main(String[] args) {
+        Random r = new Random(81);
+        List<Point> points = new ArrayList<>(NUM_POINTS);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            points.add(new Point(-122.30 + r.nextDouble() * 0.1, 37.82 + r.nextDouble() * 0.07));
+        }
+        double[] xs = new double[NUM_QUERIES];
+        double[] ys = new double[NUM_QUERIES];
+        randomTraces(r, xs, ys);
+        double[] shuffledXs = xs.clone();
+        double[] shuffledYs = ys.clone();
+        for (int i = NUM_QUERIES - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            double t = shuffledXs[i];
+            shuffledXs[i] = shuffledXs[j];
+            shuffledXs[j] = t;
+            t = shuffledYs[i];
+            shuffledYs[i] = shuffledYs[j];
+            shuffledYs[j] = t;
+        }
+
+        IndexedPointSet[] sets = {new KDTree(points), new GeoGrid(points)};
+        System.out.printf("%d points, %d queries, %d cores:%n", NUM_POINTS, NUM_QUERIES,
+                ForkJoinPool.getCommonPoolParallelism());
+        for (IndexedPointSet set : sets) {
+            String name = set.getClass().getSimpleName();
+            compare(name + ", traces in order", set, xs, ys);
+            compare(name + ", traces shuffled", set, shuffledXs, shuffledYs);
+        }
+    }
+
+    /** Fills XS and YS with random walks, like a set of GPS traces. */
+    private static void randomTraces(Random r, double[] xs, double[] ys) {
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (i % TRACE_LENGTH == 0) {
+                x = -122.30 + r.nextDouble() * 0.1;
+                y = 37.82 + r.nextDouble() * 0.07;
+            }
+            x += r.nextGaussian() * 1e-4;
+            y += r.nextGaussian() * 1e-4;
+            xs[i] = x;
+            ys[i] = y;
+        }
+    }
+
+    /** Times every strategy on the queries and prints a summary. */
+    private static void compare(String name, IndexedPointSet set, double[] xs, double[] ys) {
+        String[] names = {"one at a time", "one at a time, hint", "Hilbert order",
+            "Hilbert order, hint", "BatchNearest"};
+        Strategy[] strategies = {
+            (s, qx, qy) -> inOrder(s, qx, qy, null, false),
+            (s, qx, qy) -> inOrder(s, qx, qy, null, true),
+            (s, qx, qy) -> inOrder(s, qx, qy, BatchNearest.hilbertOrder(qx, qy), false),
+            (s, qx, qy) -> inOrder(s, qx, qy, BatchNearest.hilbertOrder(qx, qy), true),
+            BatchNearest::nearestIndices
+        };
+        long[] best = new long[strategies.length];
+        Arrays.fill(best, Long.MAX_VALUE);
+        int[] expected = strategies[0].run(set, xs, ys);
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int k = 0; k < strategies.length; k++) {
+                long start = System.nanoTime();
+                int[] result = strategies[k].run(set, xs, ys);
+                best[k] = Math.min(best[k], System.nanoTime() - start);
+                if (!Arrays.equals(expected, result)) {
+                    throw new IllegalStateException(names[k] + " gave other answers.");
+                }
+            }
+        }
+        System.out.println(name + ":");
+        for (int k = 0; k < strategies.length; k++) {
+            System.out.printf("    %-20s %7.1f ms%n", names[k], best[k] / 1e6);
+        }
+    }
+
+    /**
+     * Answers the queries one at a time in the order ORDER, or in the order given if
+     * ORDER is null, passing the previous answer as a hint if HINT is true.
+     */
+    private static int[] inOrder(IndexedPointSet set, double[] xs, double[] ys, int[] order,
+                                 boolean hint) {
+        int[] result = new int[xs.length];
+        int previous = -1;
+        for (int i = 0; i < xs.length; i++) {
+            int q = order == null ? i : order[i];
+            previous = set.nearestIndex(xs[q], ys[q], hint ? previous : -1);
+            result[q] = previous;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,247 @@
+package bearmaps.proj2ab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A PointSet that buckets points into a grid of cells, taking x as the longitude and
+ * y as the latitude, for finding the closest point in constant expected time.
+ *
+ * The cells are square on the ground around the middle latitude of the points (a
+ * cell is 1 / cos(latitude) times wider in degrees of longitude than it is tall) and
+ * sized to hold a couple of points each on average. Points past the edges of the
+ * grid are put in its edge cells, which are treated as reaching out forever. The
+ * points are stored in flat arrays sorted by cell, with the start of each cell's run
+ * in another array. A search scans rings of cells outward from the goal's cell and
+ * stops once nothing outside the rings scanned can be closer than the best point so
+ * far.
+ *
+ * Points are compared by their great-circle distance like {@link Point#distance}, using
+ * the haversine term a = sin^2(dlat / 2) + cos(lat1) cos(lat2) sin^2(dlon / 2), so the
+ * grid only narrows the search and never changes its answer. As sin^2(dlon / 2)
+ * shrinks again past 180 degrees, the bound of a across the edge of the rings is
+ * capped by that of the farthest longitude of any point.
+ *
+ * @author Hsingyi Lin
+ */
+public class GeoGrid implements IndexedPointSet {
+
+    /** The average number of points per cell. */
+    private static final double POINTS_PER_CELL = 2;
+
+    /**
+     * The fraction of points on each side left out when spanning the grid, so a few
+     * far-off points do not stretch the cells over empty space.
+     */
+    private static final double OUTLIER_FRACTION = 0.001;
+
+    private final Point[] points;      // the points in the order given
+    private final double minX;         // x of the left edge of the grid
+    private final double minY;         // y of the bottom edge of the grid
+    private final double cellWidth;    // in degrees of longitude
+    private final double cellHeight;   // in degrees of latitude
+    private final int cols;
+    private final int rows;
+    private final int[] cellStart;     // first slot of each cell, cells row by row
+    private final double[] xs;         // x of each slot
+    private final double[] ys;         // y of each slot
+    private final double[] cosYs;      // cos of the latitude of each slot
+    private final int[] indices;       // index in points of each slot
+    private final int[] slots;         // slot of each point, the inverse of indices
+    private final double minCosY;      // the smallest cos of a latitude in the grid
+    private final double lowestX;      // the smallest x of any point
+    private final double highestX;     // the largest x of any point
+
+    /**
+     * Initializes the grid with the given list of points.
+     *
+     * @param points the list of points
+     */
+    public GeoGrid(List<Point> points) {
+        int n = points.size();
+        this.points = points.toArray(new Point[0]);
+
+        /* Spans the grid over all but the outermost points, which go in the edge cells. */
+        double[] sortedX = new double[n];
+        double[] sortedY = new double[n];
+        for (int i = 0; i < n; i++) {
+            sortedX[i] = this.points[i].getX();
+            sortedY[i] = this.points[i].getY();
+        }
+        Arrays.sort(sortedX);
+        Arrays.sort(sortedY);
+        int lo = (int) (n * OUTLIER_FRACTION);
+        int hi = Math.max(n - 1 - lo, 0);
+        minX = n == 0 ? 0 : sortedX[lo];
+        minY = n == 0 ? 0 : sortedY[lo];
+        double maxX = n == 0 ? 0 : sortedX[hi];
+        lowestX = n == 0 ? 0 : sortedX[0];
+        highestX = n == 0 ? 0 : sortedX[n - 1];
+        double maxY = n == 0 ? 0 : sortedY[hi];
+
+        /* Sizes square cells to hold POINTS_PER_CELL points each on average. */
+        double cosMid = Math.max(Math.cos(Math.toRadians((minY + maxY) / 2)), 1e-6);
+        double width = (maxX - minX) * cosMid;
+        double height = maxY - minY;
+        double cellSize;
+        if (width > 0 && height > 0) {
+            cellSize = Math.sqrt(width * height * POINTS_PER_CELL / n);
+        } else {
+            cellSize = Math.max(width, height) * POINTS_PER_CELL / Math.max(n, 1);
+        }
+        if (cellSize == 0) {
+            cellSize = 1;
+        }
+        cellHeight = cellSize;
+        cellWidth = cellSize / cosMid;
+        cols = (int) Math.min((maxX - minX) / cellWidth + 1, Math.max(n, 1));
+        rows = (int) Math.min((maxY - minY) / cellHeight + 1, Math.max(n, 1));
+
+        /* Counting sort of the points by cell. */
+        int[] cellOf = new int[n];
+        cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = row(this.points[i].getY()) * cols + col(this.points[i].getX());
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = Arrays.copyOf(cellStart, cols * rows);
+        xs = new double[n];
+        ys = new double[n];
+        cosYs = new double[n];
+        indices = new int[n];
+        slots = new int[n];
+        double min = 1;
+        for (int i = 0; i < n; i++) {
+            int slot = next[cellOf[i]]++;
+            xs[slot] = this.points[i].getX();
+            ys[slot] = this.points[i].getY();
+            cosYs[slot] = Math.cos(Math.toRadians(ys[slot]));
+            indices[slot] = i;
+            slots[i] = slot;
+            min = Math.min(min, cosYs[slot]);
+        }
+        minCosY = min;
+    }
+
+    /** Returns the column of the cell containing x, clamped to the grid. */
+    private int col(double x) {
+        int c = (int) ((x - minX) / cellWidth);
+        return Math.max(0, Math.min(cols - 1, c));
+    }
+
+    /** Returns the row of the cell containing y, clamped to the grid. */
+    private int row(double y) {
+        int r = (int) ((y - minY) / cellHeight);
+        return Math.max(0, Math.min(rows - 1, r));
+    }
+
+    @Override
+    public List<Point> points() {
+        return new ArrayList<>(Arrays.asList(points));
+    }
+
+    /**
+     * Return the nearest point to the given position.
+     *
+     * @param x the x-value of the goal point
+     * @param y the y-value of the goal point
+     * @return the nearest point
+     */
+    @Override
+    public Point nearest(double x, double y) {
+        int index = nearestIndex(x, y);
+        return index == -1 ? null : points[index];
+    }
+
+    @Override
+    public int nearestIndex(double x, double y, int hint) {
+        if (xs.length == 0) {
+            return -1;
+        }
+        double cosY = Math.cos(Math.toRadians(y));
+        double farthestX = sin2Half(Math.max(Math.abs(x - lowestX), Math.abs(x - highestX)));
+        int cx = col(x);
+        int cy = row(y);
+        int best = -1;
+        double bestA = Double.POSITIVE_INFINITY;
+        if (hint >= 0) {
+            best = slots[hint];
+            bestA = haversineA(x, y, cosY, best, 1.0);
+        }
+        for (int r = 0; ; r++) {
+            int left = cx - r;
+            int right = cx + r;
+            int bottom = cy - r;
+            int top = cy + r;
+
+            /* Scans the cells of ring r that are in the grid. */
+            for (int row = Math.max(bottom, 0); row <= Math.min(top, rows - 1); row++) {
+                boolean edgeRow = row == bottom || row == top;
+                int step = edgeRow ? 1 : right - left;
+                for (int col = left; col <= right; col += Math.max(step, 1)) {
+                    if (col < 0 || col >= cols) {
+                        continue;
+                    }
+                    int cell = row * cols + col;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        double a = haversineA(x, y, cosY, i, bestA);
+                        if (a < bestA) {
+                            best = i;
+                            bestA = a;
+                        }
+                    }
+                }
+            }
+
+            /* Stops once no point outside the rings scanned can beat the best. */
+            double gapX = Double.POSITIVE_INFINITY;
+            double gapY = Double.POSITIVE_INFINITY;
+            if (left > 0) {
+                gapX = x - (minX + left * cellWidth);
+            }
+            if (right < cols - 1) {
+                gapX = Math.min(gapX, minX + (right + 1) * cellWidth - x);
+            }
+            if (bottom > 0) {
+                gapY = y - (minY + bottom * cellHeight);
+            }
+            if (top < rows - 1) {
+                gapY = Math.min(gapY, minY + (top + 1) * cellHeight - y);
+            }
+            if (gapX == Double.POSITIVE_INFINITY && gapY == Double.POSITIVE_INFINITY) {
+                break;  // the rings cover the whole grid
+            }
+            double boundY = gapY == Double.POSITIVE_INFINITY
+                    ? gapY : sin2Half(Math.min(gapY, 180));
+            double boundX = gapX == Double.POSITIVE_INFINITY
+                    ? gapX : cosY * minCosY * Math.min(sin2Half(gapX), farthestX);
+            if (Math.min(boundX, boundY) >= bestA) {
+                break;
+            }
+        }
+        return indices[best];
+    }
+
+    /**
+     * Returns the haversine term a between the goal point and slot {@code i}, or just
+     * its latitude part if that alone is above {@code cutoff}, which saves the
+     * longitude part for most of the points a search looks at.
+     */
+    private double haversineA(double x, double y, double cosY, int i, double cutoff) {
+        double a = sin2Half(ys[i] - y);
+        if (a > cutoff) {
+            return a;
+        }
+        return a + cosY * cosYs[i] * sin2Half(xs[i] - x);
+    }
+
+    /** Returns sin^2(d / 2) of the angle {@code d} in degrees. */
+    private static double sin2Half(double d) {
+        double s = Math.sin(Math.toRadians(d) / 2);
+        return s * s;
+    }
+}
@@ -0,0 +1,146 @@
+package bearmaps.proj2ab;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * An ExtrinsicMinPQ that keeps the int handles of its items in an {@link IndexMinPQ}.
+ * Each item gets a handle the first time it is added, and the item of each handle
+ * is kept in an array, so the items themselves are never compared or moved.
+ *
+ * By default handles are given out in the order items are first added, which takes
+ * one hash lookup per call. Items that already have dense indices, like the vertices
+ * of an array-backed graph, can instead be given with a function returning the index
+ * of each item, which is then used as its handle and nothing is hashed at all.
+ *
+ * @author Hsingyi Lin
+ */
+
+abstract class HandleMinPQ<T> implements ExtrinsicMinPQ<T> {
+    private final ToIntFunction<T> indexer;  // handle of each item, null to hash
+    private final Map<T, Integer> handles;   // handle of each item, null if indexed
+    private final IndexMinPQ pq;             // the handles of the items in the PQ
+    private Object[] items;                  // item of each handle
+
+    /**
+     * Initializes an empty priority queue keeping its handles in {@code pq}, which
+     * must have room for {@code capacity} items.
+     *
+     * @param pq the PQ of handles
+     * @param indexer the index of each item, distinct non-negative ints for
+     *                distinct items, or null to hand out handles by hashing
+     * @param capacity one more than the largest handle expected
+     */
+    HandleMinPQ(IndexMinPQ pq, ToIntFunction<T> indexer, int capacity) {
+        this.indexer = indexer;
+        handles = indexer == null ? new HashMap<>() : null;
+        this.pq = pq;
+        items = new Object[capacity];
+    }
+
+    /**
+     * Adds an item of type T with the given priority.
+     *
+     * @param item the item
+     * @param priority the extrinsic priority
+     * @throws IllegalArgumentException if {@code item} already exists
+     */
+    @Override
+    public void add(T item, double priority) {
+        int handle;
+        if (indexer != null) {
+            handle = indexer.applyAsInt(item);
+        } else {
+            Integer h = handles.get(item);
+            if (h == null) {
+                h = handles.size();
+                handles.put(item, h);
+            }
+            handle = h;
+        }
+        if (handle >= items.length) {
+            int capacity = Math.max(items.length * 2, handle + 1);
+            items = Arrays.copyOf(items, capacity);
+            pq.ensureCapacity(capacity);
+        }
+        items[handle] = item;
+        pq.add(handle, priority);
+    }
+
+    @Override
+    public boolean contains(T item) {
+        int handle = handleOf(item);
+        return handle >= 0 && pq.contains(handle);
+    }
+
+    /**
+     * Returns the item with smallest priority in the PQ.
+     *
+     * @return the item with smallest priority
+     * @throws NoSuchElementException if PQ is empty
+     */
+    @Override
+    public T getSmallest() {
+        return item(pq.getSmallest());
+    }
+
+    /**
+     * Returns the smallest priority in the PQ.
+     *
+     * @return the smallest priority
+     * @throws NoSuchElementException if PQ is empty
+     */
+    public double smallestPriority() {
+        return pq.smallestPriority();
+    }
+
+    /**
+     * Removes and returns the item with smallest priority in the PQ.
+     *
+     * @return the item with smallest priority
+     * @throws NoSuchElementException if PQ is empty
+     */
+    @Override
+    public T removeSmallest() {
+        return item(pq.removeSmallest());
+    }
+
+    /**
+     * Sets the priority of the given item to the given value.
+     *
+     * @param item the item
+     * @param priority the priority
+     * @throws IllegalArgumentException if {@code item} does not exist
+     */
+    @Override
+    public void changePriority(T item, double priority) {
+        int handle = handleOf(item);
+        if (handle < 0 || !pq.contains(handle)) {
+            throw new IllegalArgumentException("argument to changePriority() does not exist");
+        }
+        pq.changePriority(handle, priority);
+    }
+
+    @Override
+    public int size() {
+        return pq.size();
+    }
+
+    /** Returns the handle of ITEM, or -1 if it has never been added. */
+    private int handleOf(T item) {
+        if (indexer != null) {
+            int handle = indexer.applyAsInt(item);
+            return handle < items.length ? handle : -1;
+        }
+        Integer handle = handles.get(item);
+        return handle == null ? -1 : handle;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int handle) {
+        return (T) items[handle];
+    }
+}
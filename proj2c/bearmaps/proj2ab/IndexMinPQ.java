@@ -0,0 +1,27 @@
+package bearmaps.proj2ab;
+
+/**
+ * Priority queue of the integers 0 to capacity - 1 with extrinsic priorities. It
+ * plays the role of an ExtrinsicMinPQ for graphs with dense vertex indices, where
+ * items can be tracked in arrays instead of hash maps.
+ */
+public interface IndexMinPQ {
+    /* Inserts item I with the given priority value. */
+    void add(int i, double priority);
+    /* Returns true if the PQ contains item I. */
+    boolean contains(int i);
+    /* Returns the minimum item. */
+    int getSmallest();
+    /* Returns the priority of the minimum item. */
+    double smallestPriority();
+    /* Removes and returns the minimum item. */
+    int removeSmallest();
+    /* Changes the priority of item I. Behavior undefined if the item doesn't exist. */
+    void changePriority(int i, double priority);
+    /* Returns the number of items in the PQ. */
+    int size();
+    /* Removes all items from the PQ. */
+    void clear();
+    /* Makes room for the items 0 to CAPACITY - 1. */
+    void ensureCapacity(int capacity);
+}
@@ -0,0 +1,43 @@
+package bearmaps.proj2ab;
+
+import java.util.List;
+
+/**
+ * A PointSet that can also name the nearest point by its index in the list the
+ * set was initialized with, so callers can keep data about each point in a plain
+ * array alongside it.
+ */
+public interface IndexedPointSet extends PointSet {
+
+    /**
+     * Returns the index of the nearest point to the given position in the list
+     * the set was initialized with, or -1 if the set is empty.
+     *
+     * @param x the x-value of the goal point
+     * @param y the y-value of the goal point
+     * @return the index of the nearest point
+     */
+    default int nearestIndex(double x, double y) {
+        return nearestIndex(x, y, -1);
+    }
+
+    /**
+     * Returns the index of the nearest point to the given position, starting the
+     * search from the point at index HINT, such as the answer for a nearby position,
+     * so that anything farther than it is skipped right away. A HINT of -1 gives
+     * the search no head start.
+     *
+     * @param x the x-value of the goal point
+     * @param y the y-value of the goal point
+     * @param hint the index of a point near the goal, or -1
+     * @return the index of the nearest point
+     */
+    int nearestIndex(double x, double y, int hint);
+
+    /**
+     * Returns the points of this set in the order they were given.
+     *
+     * @return the list of points
+     */
+    List<Point> points();
+}
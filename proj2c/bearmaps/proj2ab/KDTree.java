@@ -1,17 +1,50 @@
 package bearmaps.proj2ab;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * A efficient logarithmic-time solution to solve the problem of finding the
  * closest point to a given coordinate using K-D tree data structure.
+ *
+ * The tree is built all at once by splitting the points at the median of
+ * alternately their x and y values, so it is balanced whatever order the points
+ * come in. It is stored in flat arrays: the points of a subtree take up a range of
+ * the arrays with their root at the middle, so the children of a node are implied
+ * by its range and no node objects are needed.
+ *
+ * Distances are great-circle distances, taking x as the longitude and y as the
+ * latitude like {@link Point#distance}. Searches compare the haversine term
+ * a = sin^2(dlat / 2) + cos(lat1) cos(lat2) sin^2(dlon / 2), which grows with the
+ * distance, and prune a subtree when a lower bound of a for any point on its side
+ * of the splitting line is no less than the best so far. As sin^2(dlon / 2) shrinks
+ * again past 180 degrees, the bound across a longitude split is capped by that of the
+ * farthest longitude in the tree. Besides the nearest point,
+ * the tree answers the K nearest points and the points within a radius, keeping the
+ * candidates in a bounded max-heap.
+ *
  * @author Hsingyi Lin
  * date    10/05/2019
  */
 
-public class KDTree implements PointSet{
+public class KDTree implements IndexedPointSet {
 
-    private Node root;
+    private final Point[] points;   // the points in the order given
+    private final double[] xs;      // x of each node, in tree order
+    private final double[] ys;      // y of each node, in tree order
+    private final double[] cosYs;   // cos of the latitude of each node
+    private final int[] indices;    // index in points of each node
+    private final int[] slots;      // node of each point, the inverse of indices
+    private final double minCosY;   // the smallest cos of a latitude in the tree
+    private final double minX;      // the smallest x in the tree
+    private final double maxX;      // the largest x in the tree
+
+    /** The radius of the earth in miles, as in {@link Point#distance}. */
+    private static final double EARTH_RADIUS = 3963;
+
+    /** Per-thread states of searches. */
+    private static final ThreadLocal<Search> SEARCHES = ThreadLocal.withInitial(Search::new);
 
     /**
      * Initializes the whole tree with the given list of points.
@@ -19,74 +52,97 @@ public class KDTree implements PointSet{
      * @param points the list of points
      */
     public KDTree(List<Point> points) {
-        root = null;
-        for (Point p : points) {
-            if (root == null) {
-                root = new Node(p, 0);      // initialize the root node
-            }
-            else {
-                add(root, new Node(p, 0));  // add node to the tree
-            }
+        int n = points.size();
+        this.points = points.toArray(new Point[0]);
+        xs = new double[n];
+        ys = new double[n];
+        cosYs = new double[n];
+        indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = this.points[i].getX();
+            ys[i] = this.points[i].getY();
+            indices[i] = i;
         }
+        build(0, n, 0);
+        slots = new int[n];
+        for (int i = 0; i < n; i++) {
+            slots[indices[i]] = i;
+        }
+        double min = 1;
+        double lowX = Double.POSITIVE_INFINITY;
+        double highX = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            cosYs[i] = Math.cos(Math.toRadians(ys[i]));
+            min = Math.min(min, cosYs[i]);
+            lowX = Math.min(lowX, xs[i]);
+            highX = Math.max(highX, xs[i]);
+        }
+        minCosY = min;
+        minX = lowX;
+        maxX = highX;
     }
 
     /**
-     * Recursively looks through a branch of the tree by comparing the node
-     * {@code n} and the node to be added {@code o} to decide going left or
-     * right, and add the node to the leaf node.
-     *
-     * @param n the node that is currently went through
-     * @param o the node to be added
+     * Arranges the nodes in the range [lo, hi) into a subtree splitting on x if
+     * {@code layer} is 0 or on y if it is 1: the median goes to the middle, smaller
+     * values before it and larger values after it.
      */
-    private void add(Node n, Node o) {
-        if (n.compareTo(o) > 0) {
-            if (n.left == null) {
-                n.left = o;
-                o.layer = (n.layer + 1) % 2;
-            } else {
-                add(n.left, o);
-            }
-        }
-        else {
-            if (n.right == null) {
-                n.right = o;
-                o.layer = (n.layer + 1) % 2;
-            } else {
-                add(n.right, o);
-            }
+    private void build(int lo, int hi, int layer) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi, mid, layer == 0 ? xs : ys);
+            build(lo, mid, layer ^ 1);
+            lo = mid + 1;
+            layer ^= 1;
         }
     }
 
     /**
-     * {@code Node} class represents a node on the K-D tree. Each {@code Node}
-     * stores a point and its left and right child nodes. The layer indicates:
-     * layer = 0: partitions like an X-based Tree
-     * layer = 1: partitions like an Y-based Tree
+     * Partially sorts the range [lo, hi) by {@code keys} so that the node at
+     * {@code k} is where it would be if sorted (quickselect).
      */
-    private static class Node implements Comparable {
-
-        private Point point;
-        private int layer;
-        private Node left;
-        private Node right;
-
-        Node(Point p, int l) {
-            point = p;
-            layer = l;
-            left = null;
-            right = null;
-        }
-
-        // Compares the two points' x or y value based on the layer.
-        @Override
-        public int compareTo(Object o) {
-            Node other = (Node) o;
-            if (layer == 0) {
-                return Double.compare(point.getX(), other.point.getX());
+    private void select(int lo, int hi, int k, double[] keys) {
+        hi--;
+        while (lo < hi) {
+            double pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
             }
-            return Double.compare(point.getY(), other.point.getY());
         }
+    }
+
+    private void swap(int i, int j) {
+        double x = xs[i];
+        xs[i] = xs[j];
+        xs[j] = x;
+        double y = ys[i];
+        ys[i] = ys[j];
+        ys[j] = y;
+        int index = indices[i];
+        indices[i] = indices[j];
+        indices[j] = index;
+    }
 
+    @Override
+    public List<Point> points() {
+        return new ArrayList<>(Arrays.asList(points));
     }
 
     /**
@@ -98,63 +154,228 @@ public class KDTree implements PointSet{
      */
     @Override
     public Point nearest(double x, double y) {
-        return nearestHelper(root, new Point(x, y), root).point;
+        int index = nearestIndex(x, y);
+        return index == -1 ? null : points[index];
+    }
+
+    @Override
+    public int nearestIndex(double x, double y, int hint) {
+        Search search = SEARCHES.get();
+        search.clear();
+        if (hint >= 0) {
+            double cosY = Math.cos(Math.toRadians(y));
+            search.offer(haversineA(x, y, cosY, slots[hint], 1.0), slots[hint]);
+        }
+        search(search, x, y, 1, 1.0);
+        return search.size == 0 ? -1 : indices[search.nodes[0]];
     }
 
     /**
-     * Returns whichever is closer to the point {@code goal} out of:
-     * 1. the node {@code best}
-     * 2. all items in the subtree starting at node {@code n}
+     * Returns the K nearest points to the given position, nearest first. Returns
+     * all the points if there are fewer than K.
      *
-     * @param n the node
-     * @param goal the point of goal
-     * @param best the best (nearest to the goal) node so far
-     * @return the nearest node
+     * @param x the x-value of the goal point
+     * @param y the y-value of the goal point
+     * @param k the number of points
+     * @return the nearest points
      */
-    private Node nearestHelper(Node n, Point goal, Node best) {
-        if (n == null) {
-            return best;
+    public List<Point> kNearest(double x, double y, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
         }
-        if (Point.distance(goal, n.point) < Point.distance(goal, best.point)) {
-            best = n;
+        return collect(x, y, k, 1.0);
+    }
+
+    /**
+     * Returns the points within R miles of the given position, nearest first.
+     *
+     * @param x the x-value of the goal point
+     * @param y the y-value of the goal point
+     * @param r the radius in miles
+     * @return the points within the radius
+     */
+    public List<Point> withinRadius(double x, double y, double r) {
+        if (r < 0) {
+            return new ArrayList<>();
         }
-        Node good;
-        Node bad;
-        if (n.compareTo(new Node(goal, 0)) > 0) {
-            good = n.left;
-            bad = n.right;
+        double half = r / (2 * EARTH_RADIUS);
+        double maxA = half >= Math.PI / 2 ? 1.0 : Math.sin(half) * Math.sin(half);
+        return collect(x, y, Integer.MAX_VALUE, maxA);
+    }
+
+    /** Runs a search and returns the points found, nearest first. */
+    private List<Point> collect(double x, double y, int k, double maxA) {
+        Search search = SEARCHES.get();
+        search.clear();
+        search(search, x, y, k, maxA);
+        Point[] found = new Point[search.size];
+        while (search.size > 0) {
+            found[search.size - 1] = points[indices[search.nodes[0]]];
+            search.poll();
         }
-        else {
-            good = n.right;
-            bad = n.left;
+        return new ArrayList<>(Arrays.asList(found));
+    }
+
+    /**
+     * Finds the at most K nodes with the smallest haversine term a no greater than
+     * MAXA from the given position, adding them to the heap of SEARCH. Any nodes
+     * already in the heap take part as if found by the search.
+     *
+     * Subtrees are searched good side first. The bad side of a node is only kept for
+     * later if the lower bound of a across its splitting line can still beat the
+     * farthest node found, or MAXA while fewer than K are found; it is dropped as
+     * soon as a better set of nodes makes the bound too large.
+     */
+    private void search(Search search, double x, double y, int k, double maxA) {
+        if (xs.length == 0) {
+            return;
         }
-        best = nearestHelper(good, goal, best);
-        // If bad side could still has nearer point
-        if (badSideUseful(n, goal, best)) {
-            best = nearestHelper(bad, goal, best);
+        double cosY = Math.cos(Math.toRadians(y));
+        double farthestX = sin2Half(Math.max(Math.abs(x - minX), Math.abs(x - maxX)));
+        search.push(0, xs.length, 0, 0.0);
+        double limit = search.size < k ? maxA : search.keys[0];
+        while (search.depth > 0) {
+            search.pop();
+            if (search.bound > limit) {
+                continue;
+            }
+            int lo = search.lo;
+            int hi = search.hi;
+            int layer = search.layer;
+            // Goes down the good side, leaving the bad side for later
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                double a = haversineA(x, y, cosY, mid, limit);
+                if (search.size < k ? a <= maxA : a < search.keys[0]) {
+                    if (search.size == k) {
+                        search.poll();
+                    }
+                    search.offer(a, mid);
+                    limit = search.size < k ? maxA : search.keys[0];
+                }
+                double diff = layer == 0 ? x - xs[mid] : y - ys[mid];
+                double badBound = layer == 0
+                        ? cosY * minCosY * Math.min(sin2Half(diff), farthestX)
+                        : sin2Half(diff);
+                if (diff < 0) {
+                    if (badBound <= limit) {
+                        search.push(mid + 1, hi, layer ^ 1, badBound);
+                    }
+                    hi = mid;
+                } else {
+                    if (badBound <= limit) {
+                        search.push(lo, mid, layer ^ 1, badBound);
+                    }
+                    lo = mid + 1;
+                }
+                layer ^= 1;
+            }
         }
-        return best;
     }
 
     /**
-     * Returns {@code true} if the bad side of the given node {@code n} could
-     * have a nearer point to the point {@code goal} than the node {@code best}.
-     *
-     * @param n the Node of which the bad side is
-     * @param goal the point of goal
-     * @param best the best (nearest to the goal) node so far
-     * @return {@code true} if bad side could be useful, {@code false} otherwise
+     * Returns the haversine term a between the goal point and node {@code i}, or just
+     * its latitude part if that alone is above {@code cutoff}, which saves the
+     * longitude part for most of the points a search looks at.
      */
-    private boolean badSideUseful(Node n, Point goal, Node best) {
-        if (n.layer == 0) {
-            return Point.distance(new Point(n.point.getX(), goal.getY()), goal)
-                    < Point.distance(best.point, goal);
+    private double haversineA(double x, double y, double cosY, int i, double cutoff) {
+        double a = sin2Half(ys[i] - y);
+        if (a > cutoff) {
+            return a;
         }
-        if (n.layer == 1) {
-            return Point.distance(new Point(goal.getX(), n.point.getY()), goal)
-                    < Point.distance(best.point, goal);
+        return a + cosY * cosYs[i] * sin2Half(xs[i] - x);
+    }
+
+    /** Returns sin^2(d / 2) of the angle {@code d} in degrees. */
+    private static double sin2Half(double d) {
+        double s = Math.sin(Math.toRadians(d) / 2);
+        return s * s;
+    }
+
+    /**
+     * The state of a search: a growable stack of subtrees left to search, each a
+     * range of nodes with its splitting layer and a lower bound of a for its points,
+     * and a max-heap of the nodes found so far keyed by their a. {@link #pop} leaves
+     * the popped subtree in the public fields, so a search allocates nothing once
+     * the arrays have grown.
+     */
+    private static class Search {
+        private int[] ranges = new int[3 * 64];
+        private double[] bounds = new double[64];
+        int depth;
+
+        int lo;
+        int hi;
+        int layer;
+        double bound;
+
+        double[] keys = new double[16];
+        int[] nodes = new int[16];
+        int size;
+
+        void clear() {
+            depth = 0;
+            size = 0;
+        }
+
+        void push(int lo, int hi, int layer, double bound) {
+            if (depth == bounds.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            ranges[3 * depth] = lo;
+            ranges[3 * depth + 1] = hi;
+            ranges[3 * depth + 2] = layer;
+            bounds[depth] = bound;
+            depth++;
+        }
+
+        void pop() {
+            depth--;
+            lo = ranges[3 * depth];
+            hi = ranges[3 * depth + 1];
+            layer = ranges[3 * depth + 2];
+            bound = bounds[depth];
+        }
+
+        /** Adds a node to the heap. */
+        void offer(double key, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0 && keys[(i - 1) / 2] < key) {
+                int parent = (i - 1) / 2;
+                keys[i] = keys[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+        }
+
+        /** Removes the node with the largest key from the heap. */
+        void poll() {
+            size--;
+            double key = keys[size];
+            int node = nodes[size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] > keys[child]) {
+                    child++;
+                }
+                if (keys[child] <= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            keys[i] = key;
+            nodes[i] = node;
         }
-        return false;
     }
 
 }
@@ -0,0 +1,87 @@
+package bearmaps.proj2ab;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A naive implementation of PointSet which answers every query by scanning
+ * all the points, used as the reference for testing and benchmarking KDTree.
+ *
+ * @author Hsingyi Lin
+ */
+public class NaivePointSet implements PointSet {
+
+    private final List<Point> points;
+
+    /**
+     * Initializes the set with the given list of points.
+     *
+     * @param points the list of points
+     */
+    public NaivePointSet(List<Point> points) {
+        this.points = new ArrayList<>(points);
+    }
+
+    /**
+     * Return the nearest point to the given position.
+     *
+     * @param x the x-value of the goal point
+     * @param y the y-value of the goal point
+     * @return the nearest point
+     */
+    @Override
+    public Point nearest(double x, double y) {
+        Point goal = new Point(x, y);
+        Point best = null;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (Point p : points) {
+            double dist = Point.distance(p, goal);
+            if (dist < bestDist) {
+                best = p;
+                bestDist = dist;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the K nearest points to the given position, nearest first.
+     *
+     * @param x the x-value of the goal point
+     * @param y the y-value of the goal point
+     * @param k the number of points
+     * @return the nearest points
+     */
+    public List<Point> kNearest(double x, double y, int k) {
+        List<Point> sorted = sortedByDistance(x, y);
+        return new ArrayList<>(sorted.subList(0, Math.max(0, Math.min(k, sorted.size()))));
+    }
+
+    /**
+     * Returns the points within R miles of the given position, nearest first.
+     *
+     * @param x the x-value of the goal point
+     * @param y the y-value of the goal point
+     * @param r the radius in miles
+     * @return the points within the radius
+     */
+    public List<Point> withinRadius(double x, double y, double r) {
+        Point goal = new Point(x, y);
+        List<Point> found = new ArrayList<>();
+        for (Point p : sortedByDistance(x, y)) {
+            if (Point.distance(p, goal) > r) {
+                break;
+            }
+            found.add(p);
+        }
+        return found;
+    }
+
+    private List<Point> sortedByDistance(double x, double y) {
+        Point goal = new Point(x, y);
+        List<Point> sorted = new ArrayList<>(points);
+        sorted.sort(Comparator.comparingDouble(p -> Point.distance(p, goal)));
+        return sorted;
+    }
+}
@@ -0,0 +1,37 @@
+package bearmaps.proj2ab;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * The {@code RadixHeapMinPQ} class implements the ExtrinsicMinPQ interface with the
+ * radix heap of a {@link RadixIndexMinPQ}, for priorities that are non-negative and
+ * never smaller than the last smallest priority removed, as in Dijkstra's algorithm
+ * or A* with a consistent heuristic. Under that condition it returns items in the
+ * same order as a heap, but adding an item or lowering its priority takes constant
+ * time instead of logarithmic.
+ *
+ * @author Hsingyi Lin
+ */
+
+public class RadixHeapMinPQ<T> extends HandleMinPQ<T> {
+    private static final int INIT_SIZE = 16;
+
+    /**
+     * Initializes an empty priority queue.
+     */
+    public RadixHeapMinPQ() {
+        super(new RadixIndexMinPQ(INIT_SIZE), null, INIT_SIZE);
+    }
+
+    /**
+     * Initializes an empty priority queue of items with dense indices given by
+     * {@code indexer}, which must be distinct non-negative ints for distinct items.
+     * The PQ grows past {@code capacity} if it meets larger indices.
+     *
+     * @param indexer the index of each item
+     * @param capacity one more than the largest index expected
+     */
+    public RadixHeapMinPQ(ToIntFunction<T> indexer, int capacity) {
+        super(new RadixIndexMinPQ(capacity), indexer, capacity);
+    }
+}
@@ -0,0 +1,228 @@
+package bearmaps.proj2ab;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * The {@code RadixIndexMinPQ} class implements the IndexMinPQ interface with a radix
+ * heap, for searches whose priorities are non-negative and never drop below the last
+ * smallest priority removed, like Dijkstra's algorithm or A* with a consistent
+ * heuristic. Items are the integers 0 to capacity - 1.
+ *
+ * The bits of a non-negative double sort the same way as its value, so priorities
+ * are kept as those bits. An item goes in bucket 0 if its priority equals the last
+ * one removed, or else in bucket b if the highest bit in which the two differ is bit
+ * b - 1. Adding an item or changing its priority just moves it to its bucket. When
+ * bucket 0 runs out, the first bucket that is not empty is split: its smallest
+ * priority becomes the last one and its items move to lower buckets. An item can
+ * only move down, at most 64 times, so every operation takes amortized constant time
+ * instead of the logarithmic time of a heap.
+ *
+ * A priority below the last one removed would break the order, so it is raised to
+ * that. With a consistent heuristic this only happens by floating-point rounding,
+ * and changes priorities by no more than the rounding error.
+ *
+ * @author Hsingyi Lin
+ */
+
+public class RadixIndexMinPQ implements IndexMinPQ {
+    private static final int NUM_BUCKETS = 65;
+
+    private final int[][] buckets = new int[NUM_BUCKETS][];  // items of each bucket
+    private final int[] bucketSize = new int[NUM_BUCKETS];
+    private int[] bucketOf;       // bucket of each item, -1 if absent
+    private int[] slotOf;         // position of each item in its bucket
+    private long[] keys;          // bits of the priority of each item
+    private long last;            // bits of the last smallest priority removed
+    private int n;                // number of items
+
+    /**
+     * Initializes an empty priority queue of the items 0 to {@code capacity} - 1.
+     *
+     * @param capacity the number of possible items
+     */
+    public RadixIndexMinPQ(int capacity) {
+        for (int b = 0; b < NUM_BUCKETS; b++) {
+            buckets[b] = new int[8];
+        }
+        bucketOf = new int[capacity];
+        Arrays.fill(bucketOf, -1);
+        slotOf = new int[capacity];
+        keys = new long[capacity];
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        int old = bucketOf.length;
+        if (capacity > old) {
+            bucketOf = Arrays.copyOf(bucketOf, capacity);
+            Arrays.fill(bucketOf, old, capacity, -1);
+            slotOf = Arrays.copyOf(slotOf, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+    }
+
+    /**
+     * Adds item {@code i} with the given priority.
+     *
+     * @param i the item
+     * @param priority the extrinsic priority, non-negative
+     * @throws IllegalArgumentException if {@code i} already exists
+     */
+    @Override
+    public void add(int i, double priority) {
+        if (contains(i)) {
+            throw new IllegalArgumentException("argument to add() already exists in PQ");
+        }
+        n++;
+        insert(i, priority);
+    }
+
+    @Override
+    public boolean contains(int i) {
+        return bucketOf[i] >= 0;
+    }
+
+    /**
+     * Returns the item with smallest priority in the PQ.
+     *
+     * @return the item with smallest priority
+     * @throws NoSuchElementException if PQ is empty
+     */
+    @Override
+    public int getSmallest() {
+        if (n == 0) {
+            throw new NoSuchElementException("PQ is empty");
+        }
+        if (bucketSize[0] == 0) {
+            split();
+        }
+        return buckets[0][bucketSize[0] - 1];
+    }
+
+    @Override
+    public double smallestPriority() {
+        return Double.longBitsToDouble(keys[getSmallest()]);
+    }
+
+    /**
+     * Removes and returns the item with smallest priority in the PQ.
+     *
+     * @return the item with smallest priority
+     * @throws NoSuchElementException if PQ is empty
+     */
+    @Override
+    public int removeSmallest() {
+        int smallest = getSmallest();
+        bucketSize[0]--;
+        bucketOf[smallest] = -1;
+        n--;
+        return smallest;
+    }
+
+    /**
+     * Sets the priority of item {@code i} to the given value.
+     *
+     * @param i the item
+     * @param priority the priority, non-negative
+     * @throws IllegalArgumentException if {@code i} does not exist
+     */
+    @Override
+    public void changePriority(int i, double priority) {
+        if (!contains(i)) {
+            throw new IllegalArgumentException("argument to changePriority() does not exist");
+        }
+        remove(i);
+        insert(i, priority);
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Removes all items. Takes time proportional to the number of items, not
+     * the capacity, so a PQ can be reused cheaply between searches.
+     */
+    @Override
+    public void clear() {
+        for (int b = 0; b < NUM_BUCKETS; b++) {
+            for (int s = 0; s < bucketSize[b]; s++) {
+                bucketOf[buckets[b][s]] = -1;
+            }
+            bucketSize[b] = 0;
+        }
+        n = 0;
+        last = 0;
+    }
+
+    /** Puts item {@code i} with the given priority in its bucket. */
+    private void insert(int i, double priority) {
+        long key = Double.doubleToLongBits(priority + 0.0);  // +0.0 turns -0.0 into 0.0
+        keys[i] = Math.max(key, last);
+        place(i, bucket(keys[i]));
+    }
+
+    /** Returns the bucket of an item with priority bits {@code key}. */
+    private int bucket(long key) {
+        return key == last ? 0 : 64 - Long.numberOfLeadingZeros(key ^ last);
+    }
+
+    /** Appends item {@code i} to bucket {@code b}. */
+    private void place(int i, int b) {
+        if (bucketSize[b] == buckets[b].length) {
+            buckets[b] = Arrays.copyOf(buckets[b], bucketSize[b] * 2);
+        }
+        bucketOf[i] = b;
+        slotOf[i] = bucketSize[b];
+        buckets[b][bucketSize[b]++] = i;
+    }
+
+    /** Takes item {@code i} out of its bucket, filling its slot with the bucket's last. */
+    private void remove(int i) {
+        int b = bucketOf[i];
+        int moved = buckets[b][--bucketSize[b]];
+        buckets[b][slotOf[i]] = moved;
+        slotOf[moved] = slotOf[i];
+    }
+
+    /**
+     * Makes the smallest priority of the first bucket that is not empty the last
+     * one, moving all the items of that bucket to lower buckets, among them bucket 0.
+     */
+    private void split() {
+        int b = 1;
+        while (bucketSize[b] == 0) {
+            b++;
+        }
+        int[] items = buckets[b];
+        int size = bucketSize[b];
+        if (size == 1) {
+            last = keys[items[0]];
+            bucketSize[b] = 0;
+            place(items[0], 0);
+            return;
+        }
+        long smallest = keys[items[0]];
+        for (int s = 1; s < size; s++) {
+            smallest = Math.min(smallest, keys[items[s]]);
+        }
+        last = smallest;
+        bucketSize[b] = 0;
+        for (int s = 0; s < size; s++) {
+            place(items[s], bucket(keys[items[s]]));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int b = 0; b < NUM_BUCKETS; b++) {
+            for (int s = 0; s < bucketSize[b]; s++) {
+                sb.append(sb.length() > 1 ? ", " : "").append(buckets[b][s]);
+            }
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -1,12 +1,22 @@
 package bearmaps.proj2c;
 
-import bearmaps.hw4.WeightedEdge;
+import bearmaps.hw4.ContractionHierarchy;
+import bearmaps.hw4.IndexedDijkstra;
+import bearmaps.hw4.Landmarks;
 import bearmaps.hw4.streetmap.Node;
+import bearmaps.hw4.streetmap.SnapshotIO;
 import bearmaps.hw4.streetmap.StreetMapGraph;
 import bearmaps.lab9.LocationTrieSet;
+import bearmaps.proj2ab.BatchNearest;
+import bearmaps.proj2ab.GeoGrid;
+import bearmaps.proj2ab.IndexedPointSet;
 import bearmaps.proj2ab.KDTree;
 import bearmaps.proj2ab.Point;
+import bearmaps.proj2c.utils.Constants;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -18,40 +28,189 @@ import java.util.*;
  */
 public class AugmentedStreetMapGraph extends StreetMapGraph {
 
-    private HashMap<Point, Long> points;
-    private KDTree kdtree;
+    /** The number of landmarks of the ALT heuristic. */
+    private static final int NUM_LANDMARKS = 8;
+
+    private IndexedPointSet pointSet;
+    private long[] pointIds;  // node id of each point of the point set
     private LocationTrieSet trie;
+    private ContractionHierarchy ch;
+    private Landmarks landmarks;
 
     /**
      * Initializes a map consist of the nodes of the input graph file and
      * their corresponding points (only includes those have neighbors).
+     * If an up-to-date snapshot of the graph file exists, the graph and its
+     * indexes are loaded from it; otherwise the graph file is parsed and a
+     * new snapshot is saved for the next start. A contraction hierarchy
+     * prepared offline by {@link MapPreprocessor} is loaded too if there is one.
      *
      * @param dbPath
      *
      * Filled out by Hsingyi Lin 10/14/2019.
      */
     public AugmentedStreetMapGraph(String dbPath) {
-        super(dbPath);
-        List<Node> nodes = this.getNodes();
+        this(dbPath, true);
+    }
+
+    /**
+     * Same as above, but only saves a new snapshot if SAVESNAPSHOT is true, so that
+     * tests and one-off tools do not write next to the graph file. An existing
+     * snapshot is still loaded either way.
+     *
+     * @param dbPath the classpath location of the OSM XML file
+     * @param saveSnapshot whether to save a snapshot if there is none
+     */
+    public AugmentedStreetMapGraph(String dbPath, boolean saveSnapshot) {
+        this(dbPath, MapSnapshot.open(dbPath), saveSnapshot);
+    }
+
+    private AugmentedStreetMapGraph(String dbPath, ByteBuffer snapshot, boolean saveSnapshot) {
+        super(snapshot == null ? readFromOSM(dbPath) : readGraph(snapshot));
+        if (snapshot != null) {
+            readIndexes(snapshot);
+        } else {
+            buildIndexes();
+            if (saveSnapshot) {
+                MapSnapshot.write(dbPath, this::writeSnapshot);
+            }
+        }
+        ByteBuffer chSnapshot = MapSnapshot.open(dbPath, MapPreprocessor.CH_SUFFIX);
+        if (chSnapshot != null) {
+            ch = ContractionHierarchy.read(this, chSnapshot);
+        }
+    }
+
+    /**
+     * Returns the contraction hierarchy of this graph, or null if none has been
+     * prepared.
+     *
+     * @return the contraction hierarchy, or null
+     */
+    public ContractionHierarchy contractionHierarchy() {
+        return ch;
+    }
+
+    /**
+     * Returns the better of the great-circle distance and the landmark lower bound
+     * between the vertices at indices S and GOAL. Both are lower bounds, so A* still
+     * finds shortest paths, while the landmarks let it skip most of the vertices the
+     * great-circle distance alone would visit on winding roads.
+     */
+    @Override
+    public double estimatedDistanceToGoal(int s, int goal) {
+        double greatCircle = super.estimatedDistanceToGoal(s, goal);
+        if (landmarks == null) {
+            return greatCircle;
+        }
+        return Math.max(greatCircle, landmarks.lowerBound(s, goal));
+    }
 
+    /**
+     * Returns the landmarks of the ALT heuristic of this graph.
+     *
+     * @return the landmarks
+     */
+    public Landmarks landmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Builds the point set, trie and landmarks from the graph.
+     */
+    private void buildIndexes() {
         /* Initializes a map of points and node ids consisting of only those have neighbors. */
-        points = new HashMap<>();
-        for (Node n : nodes) {
-            if (!neighbors(n.id()).isEmpty()) {
-                points.put(new Point(n.lon(), n.lat()), n.id());
+        HashMap<Point, Long> points = new HashMap<>();
+        for (int v = 0; v < numVertices(); v++) {
+            if (edgeEnd(v) > edgeStart(v)) {
+                points.put(new Point(vertexLon(v), vertexLat(v)), id(v));
             }
         }
 
-        /* Initializes a kd tree for closest method. */
-        kdtree = new KDTree(new ArrayList(points.keySet()));
+        /* Initializes a point set for closest method. */
+        List<Point> indexedPoints = new ArrayList<>(points.keySet());
+        pointIds = new long[indexedPoints.size()];
+        for (int i = 0; i < pointIds.length; i++) {
+            pointIds[i] = points.get(indexedPoints.get(i));
+        }
+        pointSet = newPointSet(indexedPoints);
 
         /* Initializes a trie for the autocomplete and search method. */
-        trie = new LocationTrieSet();
-        for (Node n : nodes) {
-            if (n.name() != null && n.name().length() > 0) {
-                trie.add(n.name(), n);
+        trie = new LocationTrieSet(this.getNodes());
+
+        /* Picks the landmarks for the A* heuristic. */
+        landmarks = new Landmarks(this, NUM_LANDMARKS);
+    }
+
+    /**
+     * Returns the index of the given points for the closest method: a GeoGrid, or a
+     * KDTree if {@link Constants#SNAP_WITH_GEO_GRID} is off.
+     */
+    private static IndexedPointSet newPointSet(List<Point> points) {
+        return Constants.SNAP_WITH_GEO_GRID ? new GeoGrid(points) : new KDTree(points);
+    }
+
+    /**
+     * Writes the graph and its indexes as the payload of a snapshot. The point set
+     * is written as its points along with their node ids, and the
+     * trie as the indices of the named vertices, followed by the landmarks.
+     *
+     * @param out the snapshot output
+     */
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        writeGraph(out);
+
+        List<Point> indexedPoints = pointSet.points();
+        double[] lons = new double[indexedPoints.size()];
+        double[] lats = new double[indexedPoints.size()];
+        for (int i = 0; i < indexedPoints.size(); i++) {
+            Point p = indexedPoints.get(i);
+            lons[i] = p.getX();
+            lats[i] = p.getY();
+        }
+        SnapshotIO.writeDoubles(out, lons, lons.length);
+        SnapshotIO.writeDoubles(out, lats, lats.length);
+        SnapshotIO.writeLongs(out, pointIds, pointIds.length);
+
+        int[] named = new int[numVertices()];
+        int numNamed = 0;
+        for (int v = 0; v < numVertices(); v++) {
+            String name = name(id(v));
+            if (name != null && name.length() > 0) {
+                named[numNamed++] = v;
             }
         }
+        SnapshotIO.writeInts(out, named, numNamed);
+
+        landmarks.write(out);
+    }
+
+    /**
+     * Restores the indexes from the rest of a snapshot payload, which is
+     * positioned right after the graph.
+     *
+     * @param in the snapshot payload
+     */
+    private void readIndexes(ByteBuffer in) {
+        double[] lons = SnapshotIO.readDoubles(in);
+        double[] lats = SnapshotIO.readDoubles(in);
+        pointIds = SnapshotIO.readLongs(in);
+        List<Point> indexedPoints = new ArrayList<>(pointIds.length);
+        for (int i = 0; i < pointIds.length; i++) {
+            indexedPoints.add(new Point(lons[i], lats[i]));
+        }
+        pointSet = newPointSet(indexedPoints);
+
+        int[] named = SnapshotIO.readInts(in);
+        List<Node> namedNodes = new ArrayList<>(named.length);
+        for (int v : named) {
+            Node n = Node.of(id(v), vertexLat(v), vertexLon(v));
+            n.setName(name(id(v)));
+            namedNodes.add(n);
+        }
+        trie = new LocationTrieSet(namedNodes);
+
+        landmarks = Landmarks.read(in);
     }
 
 
@@ -65,8 +224,63 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
      * Filled out by Hsingyi Lin 10/14/2019.
      */
     public long closest(double lon, double lat) {
-        Point closestP = kdtree.nearest(lon, lat);
-        return points.get(closestP);
+        return pointIds[pointSet.nearestIndex(lon, lat)];
+    }
+
+    /**
+     * Returns the vertex closest to each of the given positions, for snapping many
+     * positions at once. The positions are sorted along a Hilbert curve so each
+     * search starts from the answer to a nearby one, and are answered in parallel.
+     * @param lons The target longitudes.
+     * @param lats The target latitudes, as many as the longitudes.
+     * @return The ids of the nodes closest to the targets, in order.
+     */
+    public long[] closest(double[] lons, double[] lats) {
+        int[] nearest = BatchNearest.nearestIndices(pointSet, lons, lats);
+        long[] ids = new long[nearest.length];
+        for (int i = 0; i < nearest.length; i++) {
+            ids[i] = pointIds[nearest[i]];
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the travel distance from each source position to each target position,
+     * for jobs like dispatching that need every pair of a few hundred points. All the
+     * positions are snapped to their closest vertices at once, and then a single
+     * Dijkstra search per source, stopping once it has reached every target, finds a
+     * whole row. The searches run in parallel.
+     * @param sourceLons The source longitudes.
+     * @param sourceLats The source latitudes, as many as the source longitudes.
+     * @param targetLons The target longitudes.
+     * @param targetLats The target latitudes, as many as the target longitudes.
+     * @return The distances, row i holding those from source i in the order of the
+     * targets, or infinity where a target cannot be reached.
+     */
+    public double[][] distanceMatrix(double[] sourceLons, double[] sourceLats,
+                                     double[] targetLons, double[] targetLats) {
+        return distanceMatrix(closest(sourceLons, sourceLats), closest(targetLons, targetLats));
+    }
+
+    /**
+     * Returns the travel distance from each source node to each target node, as
+     * {@link #distanceMatrix(double[], double[], double[], double[])} does for positions.
+     * @param sources The source node ids.
+     * @param targets The target node ids.
+     * @return The distances, row i holding those from source i in the order of the
+     * targets, or infinity where a target cannot be reached or a node does not exist.
+     */
+    public double[][] distanceMatrix(long[] sources, long[] targets) {
+        return IndexedDijkstra.distanceMatrix(this, indices(sources), indices(targets));
+    }
+
+    /** Returns the index of the vertex of each node id, or -1 where there is none. */
+    private int[] indices(long[] ids) {
+        int[] indices = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            indices[i] = index(ids[i]);
+        }
+        return indices;
     }
 
 
@@ -85,6 +299,21 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
         return trie.keysWithPrefix(cleanString(prefix));
     }
 
+    /**
+     * Returns the names of the K most popular OSM locations that prefix-match the
+     * query string, the location names shared by the most nodes first. Takes time
+     * in the length of the prefix and K, however many names match.
+     *
+     * @param prefix Prefix string to be searched for. Could be any case, with or without
+     *               punctuation.
+     * @param k The number of names.
+     * @return A <code>List</code> of the full names of the best locations whose cleaned
+     * name matches the cleaned <code>prefix</code>.
+     */
+    public List<String> getLocationsByPrefix(String prefix, int k) {
+        return trie.topKWithPrefix(cleanString(prefix), k);
+    }
+
 
     /**
      * For Project Part III (gold points)
@@ -93,7 +322,10 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
      *
      * @param locationName A full name of a location searched for.
      * @return A list of locations whose cleaned name matches the
-     * cleaned <code>locationName</code>, and each location is a map of parameters for the Json
+     * cleaned <code>locationName</code>, or failing that the locations whose cleaned name
+     * is closest to it: within one edit for names of three to five characters, or
+     * {@link Constants#SEARCH_MAX_EDIT_DISTANCE} edits for longer ones. Each
+     * location is a map of parameters for the Json
      * response as specified: <br>
      * "lat" -> Number, The latitude of the node. <br>
      * "lon" -> Number, The longitude of the node. <br>
@@ -105,6 +337,11 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
     public List<Map<String, Object>> getLocations(String locationName) {
         LinkedList<Map<String, Object>> res = new LinkedList<>();
         List<Node> match = trie.idsMatched(locationName);
+        int maxDistance = maxEditDistance(cleanString(locationName).length());
+        if ((match == null || match.isEmpty()) && maxDistance > 0) {
+            /* Falls back to the closest names in case of a typo. */
+            match = trie.idsMatchedFuzzy(locationName, maxDistance);
+        }
         if (match == null) {
             return null;
         }
@@ -120,6 +357,25 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
     }
 
 
+    /**
+     * Returns the largest edit distance allowed between a searched name of the given
+     * length, once cleaned, and the names found for it. Short names allow fewer edits,
+     * as a couple of edits turn them into almost any other short name, and an empty
+     * one allows none.
+     *
+     * @param length the length of the cleaned name
+     * @return the largest edit distance allowed
+     */
+    private static int maxEditDistance(int length) {
+        if (length <= 2) {
+            return 0;
+        }
+        if (length <= 5) {
+            return Math.min(1, Constants.SEARCH_MAX_EDIT_DISTANCE);
+        }
+        return Constants.SEARCH_MAX_EDIT_DISTANCE;
+    }
+
     /**
      * Returns the distance of the two input node ids. This is only useful for Part IV
      * of the project.
@@ -137,22 +393,18 @@ public class AugmentedStreetMapGraph extends StreetMapGraph {
 
     /**
      * Returns the name of the <code>WeightedEdge</code> of the two input node ids.
-     * This is only useful for Part IV of the project.
+     * This is only useful for Part IV of the project. The name comes from the way
+     * table, so no edges are created to look it up.
      *
      * @param from the start node id
      * @param to the end node id
-     * @return the <code>WeightedEdge</code> of the two input node ids
+     * @return the name of the way of the edge, or null if there is no such edge
      *
      * Filled out by Hsingyi Lin 10/15/2019.
      */
     public String edgeName(Long from, Long to) {
-        List<WeightedEdge<Long>> neighbors = neighbors(from);
-        for (WeightedEdge e : neighbors) {
-            if (e.to().equals(to)) {
-                return e.getName();
-            }
-        }
-        return null;
+        int e = edgeIndex(index(from), index(to));
+        return e < 0 ? null : edgeName(e);
     }
 
 
@@ -0,0 +1,135 @@
+package bearmaps.proj2c;
+
+import bearmaps.hw4.IndexedDijkstra;
+
+import java.util.Arrays;
+
+/**
+ * The street nodes reachable from a location within a distance budget, along with a
+ * polygon around them for display. This class acts as a helper for the
+ * IsochroneAPIHandler.
+ *
+ * The nodes are found by a Dijkstra search from the node closest to the location,
+ * which stops at the first node beyond the budget. The polygon is the outline of the
+ * nodes seen from the start: the plane around the start is cut into equal angular
+ * sectors, the node farthest from the start in each sector is a corner, and the
+ * corners are joined in order of angle. Unlike a convex hull, this follows the dents
+ * where the roads run out, and it takes a single pass over the nodes.
+ *
+ * @author Hsingyi Lin
+ */
+public class Isochrone {
+    private int[] vertices = new int[16];       // vertices reached, nearest first
+    private double[] distances = new double[16];
+    private int size;
+    private int[] hull;                         // corners of the polygon, in order of angle
+
+    private Isochrone() {
+    }
+
+    /**
+     * Returns the nodes reachable from the node closest to the given location within
+     * the given distance, and their outline cut into the given number of sectors.
+     * @param g The graph to use.
+     * @param lon The longitude of the location.
+     * @param lat The latitude of the location.
+     * @param budget The largest distance traveled, in miles.
+     * @param sectors The number of angular sectors of the outline, at least 3.
+     * @return The reachable nodes and their outline.
+     */
+    public static Isochrone reachable(AugmentedStreetMapGraph g, double lon, double lat,
+                                      double budget, int sectors) {
+        Isochrone iso = new Isochrone();
+        int s = g.index(g.closest(lon, lat));
+        if (s >= 0 && budget >= 0) {
+            IndexedDijkstra.within(g, s, budget, iso::add);
+        }
+        iso.hull = iso.outline(g, sectors);
+        return iso;
+    }
+
+    private void add(int v, double dist) {
+        if (size == vertices.length) {
+            vertices = Arrays.copyOf(vertices, size * 2);
+            distances = Arrays.copyOf(distances, size * 2);
+        }
+        vertices[size] = v;
+        distances[size] = dist;
+        size++;
+    }
+
+    /**
+     * Returns the corners of the outline of the reached vertices: the farthest from
+     * the start in each sector that has any, or none if there are fewer than three.
+     * Longitudes are scaled by the cosine of the latitude so that the sectors are equal
+     * on the ground.
+     */
+    private int[] outline(AugmentedStreetMapGraph g, int sectors) {
+        if (size == 0) {
+            return new int[0];
+        }
+        double lon0 = g.vertexLon(vertices[0]);
+        double lat0 = g.vertexLat(vertices[0]);
+        double scale = Math.cos(Math.toRadians(lat0));
+        int[] farthest = new int[sectors];
+        double[] radius = new double[sectors];
+        Arrays.fill(farthest, -1);
+        for (int i = 1; i < size; i++) {
+            double dx = (g.vertexLon(vertices[i]) - lon0) * scale;
+            double dy = g.vertexLat(vertices[i]) - lat0;
+            double r = dx * dx + dy * dy;
+            if (r == 0) {
+                continue;
+            }
+            int sector = (int) ((Math.atan2(dy, dx) + Math.PI) / (2 * Math.PI) * sectors);
+            sector = Math.min(sector, sectors - 1);
+            if (r > radius[sector]) {
+                radius[sector] = r;
+                farthest[sector] = vertices[i];
+            }
+        }
+        int[] corners = new int[sectors];
+        int numCorners = 0;
+        for (int v : farthest) {
+            if (v >= 0) {
+                corners[numCorners++] = v;
+            }
+        }
+        return numCorners < 3 ? new int[0] : Arrays.copyOf(corners, numCorners);
+    }
+
+    /**
+     * Returns the number of nodes reached.
+     * @return The number of nodes reached.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the I-th nearest vertex reached, the start being the 0-th.
+     * @param i The rank of the vertex by distance.
+     * @return The index of the vertex.
+     */
+    public int vertex(int i) {
+        return vertices[i];
+    }
+
+    /**
+     * Returns the distance to the I-th nearest vertex reached, in miles.
+     * @param i The rank of the vertex by distance.
+     * @return The distance from the start to the vertex.
+     */
+    public double distance(int i) {
+        return distances[i];
+    }
+
+    /**
+     * Returns the vertex indices of the corners of the outline of the nodes reached,
+     * in counterclockwise order, or none if the nodes do not span an area.
+     * @return The corners of the outline.
+     */
+    public int[] hull() {
+        return hull.clone();
+    }
+}
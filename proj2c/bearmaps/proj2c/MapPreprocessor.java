@@ -0,0 +1,33 @@
+package bearmaps.proj2c;
+
+import bearmaps.hw4.ContractionHierarchy;
+import bearmaps.proj2c.utils.Constants;
+
+/**
+ * Prepares the routing data of a map offline, so that the server only has to load
+ * it. Builds the contraction hierarchy of the map and saves it next to the OSM XML
+ * file as "[xml file].ch", where {@link AugmentedStreetMapGraph} picks it up on the
+ * next start. Run again whenever the XML file changes; a hierarchy older than its
+ * XML file is ignored.
+ *
+ * Usage: java bearmaps.proj2c.MapPreprocessor [OSM XML path]
+ *
+ * @author Hsingyi Lin
+ */
+public class MapPreprocessor {
+
+    /** The suffix of the contraction hierarchy snapshot. */
+    static final String CH_SUFFIX = ".ch";
+
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : Constants.OSM_DB_PATH;
+        AugmentedStreetMapGraph graph = new AugmentedStreetMapGraph(dbPath);
+
+        long startTime = System.nanoTime();
+        ContractionHierarchy ch = new ContractionHierarchy(graph);
+        System.out.printf("Contracted %d vertices into %d upward edges in %.1f s%n",
+                graph.numVertices(), ch.numUpwardEdges(), (System.nanoTime() - startTime) / 1e9);
+
+        MapSnapshot.write(dbPath, CH_SUFFIX, ch::write);
+    }
+}
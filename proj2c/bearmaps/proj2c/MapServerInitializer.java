@@ -22,6 +22,7 @@ public class MapServerInitializer {
     public static void initializeServer(Map<String, APIRouteHandler> apiHandlers){
         port(getHerokuAssignedPort());
         Constants.SEMANTIC_STREET_GRAPH = new AugmentedStreetMapGraph(Constants.OSM_DB_PATH);
+        Constants.TILE_CACHE.warmUp(Constants.TILE_WARM_UP_DEPTH);
         staticFileLocation("/page");
         /* Allow for all origin requests (since this is not an authenticated server, we do not
          * care about CSRF).  */
@@ -0,0 +1,197 @@
+package bearmaps.proj2c;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A versioned binary snapshot of an {@link AugmentedStreetMapGraph}, saved next to the
+ * OSM XML file it was built from (as "[xml file].snapshot"), so that a restarted server
+ * can memory-map the cleaned graph and its indexes instead of parsing the XML again.
+ * Data prepared offline for the same XML file, such as a contraction hierarchy, is
+ * saved the same way under a different suffix.
+ *
+ * The file starts with a header of the magic number, the format version, and the length
+ * and last-modified time of the source XML file. A snapshot is only used if its header
+ * matches all of these; otherwise the caller falls back to the XML path and writes a
+ * fresh snapshot. The payload after the header is written and read by
+ * {@link AugmentedStreetMapGraph} itself.
+ *
+ * @author Hsingyi Lin
+ */
+class MapSnapshot {
+
+    /** "BMAP" in ASCII. */
+    private static final int MAGIC = 0x424D4150;
+
+    /** Bump whenever the payload layout changes, so that old snapshots are rebuilt. */
+    static final int FORMAT_VERSION = 3;
+
+    /** Magic number, version, source length and time, and payload length. */
+    private static final int HEADER_LENGTH = Integer.BYTES * 2 + Long.BYTES * 3;
+
+    /** The suffix of the snapshot of the graph and its indexes. */
+    static final String SUFFIX = ".snapshot";
+
+    /** Writes the payload of a snapshot. */
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private MapSnapshot() {
+    }
+
+    /**
+     * Returns the mapped payload of the snapshot of DBPATH, positioned right after the
+     * header, or null if there is no snapshot or it is stale.
+     *
+     * @param dbPath the classpath location of the OSM XML file
+     * @return the payload of the snapshot, or null
+     */
+    static ByteBuffer open(String dbPath) {
+        return open(dbPath, SUFFIX);
+    }
+
+    /**
+     * Returns the mapped payload of the snapshot of DBPATH saved under SUFFIX,
+     * positioned right after the header, or null if there is none or it is stale.
+     *
+     * @param dbPath the classpath location of the OSM XML file
+     * @param suffix the suffix of the snapshot file
+     * @return the payload of the snapshot, or null
+     */
+    static ByteBuffer open(String dbPath, String suffix) {
+        File file = snapshotFile(dbPath, suffix);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_LENGTH
+                    || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long[] source = sourceFingerprint(dbPath);
+            long length = buffer.getLong();
+            long lastModified = buffer.getLong();
+            long payloadLength = buffer.getLong();
+            if (source != null && (source[0] != length || source[1] != lastModified)) {
+                return null;
+            }
+            if (payloadLength != buffer.remaining()) {
+                return null;
+            }
+            return buffer;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of DBPATH whose payload is produced by WRITER. The snapshot is
+     * written to a temporary file first and then moved in place, so a crash never leaves
+     * a half-written snapshot behind. Does nothing if the XML file is not a plain file
+     * (e.g. it is packed in a jar).
+     *
+     * @param dbPath the classpath location of the OSM XML file
+     * @param writer writes the payload
+     */
+    static void write(String dbPath, Writer writer) {
+        write(dbPath, SUFFIX, writer);
+    }
+
+    /**
+     * Same as above, but saves the snapshot under SUFFIX.
+     *
+     * @param dbPath the classpath location of the OSM XML file
+     * @param suffix the suffix of the snapshot file
+     * @param writer writes the payload
+     */
+    static void write(String dbPath, String suffix, Writer writer) {
+        File file = snapshotFile(dbPath, suffix);
+        long[] source = sourceFingerprint(dbPath);
+        if (file == null || source == null) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(source[0]);
+                out.writeLong(source[1]);
+                out.writeLong(0);  // payload length, filled in below
+                writer.write(out);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+                raf.seek(HEADER_LENGTH - Long.BYTES);
+                raf.writeLong(raf.length() - HEADER_LENGTH);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Returns the snapshot file for DBPATH with SUFFIX, or null if DBPATH does not
+     * live in a directory on the file system.
+     */
+    private static File snapshotFile(String dbPath, String suffix) {
+        URL url = resource(dbPath + suffix);
+        if (url == null) {
+            url = resource(dbPath);
+            if (url == null || !"file".equals(url.getProtocol())) {
+                return null;
+            }
+            return new File(toFile(url).getPath() + suffix);
+        }
+        return "file".equals(url.getProtocol()) ? toFile(url) : null;
+    }
+
+    /**
+     * Returns the length and last-modified time of the XML file DBPATH, or null if it
+     * cannot be found, in which case any snapshot of it is considered up to date.
+     */
+    private static long[] sourceFingerprint(String dbPath) {
+        URL url = resource(dbPath);
+        if (url == null) {
+            return null;
+        }
+        try {
+            URLConnection connection = url.openConnection();
+            long[] fingerprint = {connection.getContentLengthLong(), connection.getLastModified()};
+            connection.getInputStream().close();
+            return fingerprint;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static URL resource(String path) {
+        return Thread.currentThread().getContextClassLoader().getResource(path);
+    }
+
+    private static File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return new File(url.getPath());
+        }
+    }
+}
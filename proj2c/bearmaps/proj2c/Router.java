@@ -1,6 +1,6 @@
 package bearmaps.proj2c;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.regex.Matcher;
@@ -26,9 +26,46 @@ public class Router {
      */
     public static List<Long> shortestPath(AugmentedStreetMapGraph g, double stlon, double stlat,
                                           double destlon, double destlat) {
+        return shortestPath(g, stlon, stlat, destlon, destlat, SearchMode.UNIDIRECTIONAL);
+    }
+
+    /**
+     * Same as above, but searches in the given mode. If a contraction hierarchy
+     * of the graph has been prepared, it is used instead whatever the mode.
+     * @param g The graph to use.
+     * @param stlon The longitude of the start location.
+     * @param stlat The latitude of the start location.
+     * @param destlon The longitude of the destination location.
+     * @param destlat The latitude of the destination location.
+     * @param mode Whether to search from the start only or from both ends.
+     * @return A list of node id's in the order visited on the shortest path.
+     */
+    public static List<Long> shortestPath(AugmentedStreetMapGraph g, double stlon, double stlat,
+                                          double destlon, double destlat, SearchMode mode) {
+        return solve(g, stlon, stlat, destlon, destlat, mode).solution();
+    }
+
+    /**
+     * Same as shortestPath, but returns the solver itself, whose solution also holds
+     * the vertex and edge indices of the path for {@link #routeDirections(
+     * AugmentedStreetMapGraph, IndexedShortestPathsSolver)}.
+     * @param g The graph to use.
+     * @param stlon The longitude of the start location.
+     * @param stlat The latitude of the start location.
+     * @param destlon The longitude of the destination location.
+     * @param destlat The latitude of the destination location.
+     * @param mode Whether to search from the start only or from both ends.
+     * @return The solver that found the shortest path.
+     */
+    public static IndexedShortestPathsSolver solve(AugmentedStreetMapGraph g, double stlon,
+                                                   double stlat, double destlon, double destlat,
+                                                   SearchMode mode) {
         long src = g.closest(stlon, stlat);
         long dest = g.closest(destlon, destlat);
-        return new AStarSolver<>(g, src, dest, 20).solution();
+        if (g.contractionHierarchy() != null) {
+            return new ContractionHierarchySolver(g.contractionHierarchy(), src, dest, 20);
+        }
+        return new IndexedAStarSolver(g, src, dest, 20, mode);
     }
 
     /**
@@ -42,45 +79,68 @@ public class Router {
      * Filled out by Hsingyi Lin 10/15/2019.
      */
     public static List<NavigationDirection> routeDirections(AugmentedStreetMapGraph g, List<Long> route) {
+        int[] vertices = new int[route.size()];
+        int i = 0;
+        for (long id : route) {
+            vertices[i++] = g.index(id);
+        }
+        int[] edges = new int[Math.max(vertices.length - 1, 0)];
+        for (i = 0; i < edges.length; i++) {
+            edges[i] = g.edgeIndex(vertices[i], vertices[i + 1]);
+        }
+        return routeDirections(g, vertices, edges);
+    }
+
+    /**
+     * Create the list of directions corresponding to the solution of SOLVER, reading
+     * the edges of the path off the solver instead of looking them up.
+     * @param g The graph the solver searched.
+     * @param solver The solver whose solution to translate into directions.
+     * @return A list of NavigatiionDirection objects corresponding to the solution.
+     */
+    public static List<NavigationDirection> routeDirections(AugmentedStreetMapGraph g,
+                                                            IndexedShortestPathsSolver solver) {
+        return routeDirections(g, solver.solutionVertices(), solver.solutionEdges());
+    }
+
+    /**
+     * Walks the path once, the I-th hop going from VERTICES[I] to VERTICES[I + 1] along
+     * EDGES[I], or -1 if there is no such edge. A hop continues the last direction if it
+     * is on a way of the same name, and starts a new direction otherwise.
+     */
+    private static List<NavigationDirection> routeDirections(AugmentedStreetMapGraph g,
+                                                             int[] vertices, int[] edges) {
         /* If there's only 0 or 1 node on the route, return null since no route
            can be formed. */
-        if (route.size() < 2) {
+        if (vertices.length < 2) {
             return null;
         }
-        LinkedList<NavigationDirection> res = new LinkedList<>();
-        /* Initializes the first nav. direction. */
-        Long last = route.remove(0);
-        route.add(last);              // always add the node back to avoid changing the route
-        Long curr = route.remove(0);
-        route.add(curr);
-        NavigationDirection init = createNav(g, last, curr, 0);
-        res.add(init);
-        /* If there's only 2 node on the route, return the nav. direction. */
-        if (route.size() < 3) {
-            return res;
-        }
+        List<NavigationDirection> res = new ArrayList<>();
+        NavigationDirection nav = createNav(g, vertices[0], vertices[1], edges[0],
+                NavigationDirection.START);
+        res.add(nav);
         /* For all the rest nodes, considers the previous and current bearings and ways. */
-        for (int i = 0; i < route.size() - 2; i++) {
-            Long next = route.remove(0);
-            route.add(next);
-            String currWay = res.getLast().way;
-            String nextWay = g.edgeName(next, curr);
-            double currBearing = NavigationDirection.bearing(g.lon(last), g.lon(curr), g.lat(last), g.lat(curr));
-            double nextBearing = NavigationDirection.bearing(g.lon(curr), g.lon(next), g.lat(curr), g.lat(next));
-            int direction = NavigationDirection.getDirection(currBearing, nextBearing);
+        for (int i = 1; i < edges.length; i++) {
+            int last = vertices[i - 1];
+            int curr = vertices[i];
+            int next = vertices[i + 1];
+            String nextWay = edges[i] < 0 ? null : g.edgeName(edges[i]);
             /* If both ways are null or have identical names, adds the new distance to the
                previous nav. direction. */
-            if ((nextWay == null && Objects.equals(currWay, NavigationDirection.UNKNOWN_ROAD))
-                    || (nextWay != null && nextWay.equals(currWay))) {
-                res.getLast().distance += g.distance(curr, next);
+            if ((nextWay == null && Objects.equals(nav.way, NavigationDirection.UNKNOWN_ROAD))
+                    || (nextWay != null && nextWay.equals(nav.way))) {
+                nav.distance += hopDistance(g, curr, next, edges[i]);
             }
             /* Otherwise both ways have different names, creates new nav. direction. */
             else {
-                NavigationDirection nav = createNav(g, curr, next, direction);
+                double currBearing = NavigationDirection.bearing(lon(g, last), lon(g, curr),
+                        lat(g, last), lat(g, curr));
+                double nextBearing = NavigationDirection.bearing(lon(g, curr), lon(g, next),
+                        lat(g, curr), lat(g, next));
+                int direction = NavigationDirection.getDirection(currBearing, nextBearing);
+                nav = createNav(g, curr, next, edges[i], direction);
                 res.add(nav);
             }
-            last = curr;
-            curr = next;
         }
         return res;
     }
@@ -89,26 +149,52 @@ public class Router {
      * Helper function to create and return a nav. direction by the given inputs.
      *
      * @param g The graph to use.
-     * @param from The id of the first node
-     * @param to the id of the second node
+     * @param from The index of the first node
+     * @param to the index of the second node
+     * @param e the index of the edge between them, or -1 if there is none
      * @param drct the direction from the first node to the second
      * @return the nav. direction created
      *
      * Filled out by Hsingyi Lin 10/15/2019.
      */
     private static NavigationDirection createNav(AugmentedStreetMapGraph g,
-                                          Long from,
-                                          Long to,
+                                          int from,
+                                          int to,
+                                          int e,
                                           int drct) {
         NavigationDirection nav = new NavigationDirection();
         nav.direction = drct;
-        nav.distance = g.distance(from, to);
-        if (g.edgeName(from, to) != null) {
-            nav.way = g.edgeName(from, to);
+        nav.distance = hopDistance(g, from, to, e);
+        if (e >= 0) {
+            nav.way = g.edgeName(e);
         }
         return nav;
     }
 
+    /** Returns the longitude of the vertex at index V, or 0.0 if it is not in the graph. */
+    private static double lon(AugmentedStreetMapGraph g, int v) {
+        return v < 0 ? 0.0 : g.vertexLon(v);
+    }
+
+    /** Returns the latitude of the vertex at index V, or 0.0 if it is not in the graph. */
+    private static double lat(AugmentedStreetMapGraph g, int v) {
+        return v < 0 ? 0.0 : g.vertexLat(v);
+    }
+
+    /**
+     * Returns the distance of the hop from FROM to TO: the weight of edge E if any, or
+     * 0.0 if either end is not in the graph.
+     */
+    private static double hopDistance(AugmentedStreetMapGraph g, int from, int to, int e) {
+        if (e >= 0) {
+            return g.edgeWeight(e);
+        }
+        if (from < 0 || to < 0) {
+            return 0.0;
+        }
+        return g.distance(g.id(from), g.id(to));
+    }
+
     /**
      * Class to represent a navigation direction, which consists of 3 attributes:
      * a direction to go, a way, and the distance to travel for. This is only
@@ -20,7 +20,7 @@ import static spark.Spark.halt;
 public abstract class APIRouteHandler<Req, Res> implements Route {
 
     /** HTTP failed response. */
-    private static final int HALT_RESPONSE = 403;
+    protected static final int HALT_RESPONSE = 403;
 
     private Gson gson;
 
@@ -32,7 +32,7 @@ public abstract class APIRouteHandler<Req, Res> implements Route {
     public Object handle(Request request, Response response) throws Exception {
         Req requestParams = parseRequestParams(request);
         Res result = processRequest(requestParams, response);
-        return buildJsonResponse(result);
+        return buildJsonResponse(request, result);
     }
 
     /**
@@ -59,6 +59,27 @@ public abstract class APIRouteHandler<Req, Res> implements Route {
         return gson.toJson(result);
     }
 
+    /**
+     * Builds a JSON response to return from the result object, for handlers whose
+     * response also depends on who sent the request.
+     * @param request the request object received
+     * @param result
+     * @return
+     */
+    protected Object buildJsonResponse(Request request, Res result) {
+        return buildJsonResponse(result);
+    }
+
+    /**
+     * Returns the key identifying the client who sent the request, which is the id
+     * of their session (a new session is started if they have none yet).
+     * @param request the request object received
+     * @return the client key
+     */
+    protected String clientKey(Request request) {
+        return request.session(true).id();
+    }
+
     /**
      * Validate & return a parameter map of the required request parameters.
      * Requires that all input parameters are doubles.
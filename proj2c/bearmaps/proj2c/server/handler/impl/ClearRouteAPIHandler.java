@@ -4,24 +4,26 @@ import bearmaps.proj2c.server.handler.APIRouteHandler;
 import spark.Request;
 import spark.Response;
 
-import static bearmaps.proj2c.utils.Constants.ROUTE_LIST;
+import static bearmaps.proj2c.utils.Constants.RASTER_CACHE;
+import static bearmaps.proj2c.utils.Constants.ROUTES;
 
 
 /**
  * Handles the "Clear Route" button in Bearmaps.
  * Created by rahul
  */
-public class ClearRouteAPIHandler extends APIRouteHandler {
+public class ClearRouteAPIHandler extends APIRouteHandler<String, Object> {
 
 
+    /** Returns the key of the client whose route is cleared. */
     @Override
-    protected Object parseRequestParams(Request request) {
-        return null;
+    protected String parseRequestParams(Request request) {
+        return clientKey(request);
     }
 
     @Override
-    protected Object processRequest(Object requestParams, Response response) {
-        ROUTE_LIST.clear();
+    protected Object processRequest(String client, Response response) {
+        RASTER_CACHE.invalidateRoute(ROUTES.clear(client).version());
         return true;
     }
 }
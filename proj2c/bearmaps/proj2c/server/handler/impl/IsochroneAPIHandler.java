@@ -0,0 +1,99 @@
+package bearmaps.proj2c.server.handler.impl;
+
+import bearmaps.proj2c.Isochrone;
+import bearmaps.proj2c.server.handler.APIRouteHandler;
+import spark.Request;
+import spark.Response;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static bearmaps.proj2c.utils.Constants.ISOCHRONE_SECTORS;
+import static bearmaps.proj2c.utils.Constants.MAX_ISOCHRONE_MILES;
+import static bearmaps.proj2c.utils.Constants.SEMANTIC_STREET_GRAPH;
+import static spark.Spark.halt;
+
+/**
+ * Handles requests from the web browser for the street nodes reachable from a
+ * location within a distance, which are returned along with a polygon around them
+ * to draw on the map.
+ */
+public class IsochroneAPIHandler extends APIRouteHandler<Map<String, Double>, Map<String, Object>> {
+
+    /**
+     * Each isochrone request to the server will have the following parameters
+     * as keys in the params map.<br>
+     * lat : location latitude,<br> lon : location longitude,<br>
+     * distance : the largest distance traveled, in miles.
+     **/
+    private static final String[] REQUIRED_ISOCHRONE_REQUEST_PARAMS = {"lat", "lon", "distance"};
+
+    /**
+     * Returns the request parameters, halting the request if the distance is negative
+     * or not a number.
+     */
+    @Override
+    protected Map<String, Double> parseRequestParams(Request request) {
+        Map<String, Double> params = getRequestParams(request, REQUIRED_ISOCHRONE_REQUEST_PARAMS);
+        double distance = params.get("distance");
+        if (Double.isNaN(distance) || distance < 0) {
+            halt(HALT_RESPONSE, "Incorrect parameters - distance must be a non-negative number.");
+        }
+        return params;
+    }
+
+    /**
+     * Finds the street nodes reachable from the node closest to the requested location
+     * within the requested distance, or within {@link
+     * bearmaps.proj2c.utils.Constants#MAX_ISOCHRONE_MILES} if that is less.
+     *
+     * @param requestParams A map of the HTTP GET request's query parameters - the
+     *                      location lat/lon and the distance.
+     * @param response : Not used by this function. You may ignore.
+     * @return A map of results for the front end as specified: <br>
+     * "isochrone_success" : Boolean, whether any node was reached. <br>
+     * "distance" : Number, the distance actually searched, in miles. <br>
+     * "nodes" : List, the nodes reached, nearest first, each a map of <br>
+     *           "id" -> Number, "lon" -> Number, "lat" -> Number and "distance" -> Number,
+     *           the distance traveled to the node in miles. <br>
+     * "hull" : List, the corners of a polygon around the nodes in counterclockwise
+     *          order, each a map of "lon" -> Number and "lat" -> Number; empty if the
+     *          nodes do not span an area.
+     */
+    @Override
+    protected Map<String, Object> processRequest(Map<String, Double> requestParams,
+                                                 Response response) {
+        double distance = Math.min(requestParams.get("distance"), MAX_ISOCHRONE_MILES);
+        Isochrone iso = Isochrone.reachable(SEMANTIC_STREET_GRAPH,
+                requestParams.get("lon"), requestParams.get("lat"), distance, ISOCHRONE_SECTORS);
+
+        List<Map<String, Object>> nodes = new ArrayList<>(iso.size());
+        for (int i = 0; i < iso.size(); i++) {
+            Map<String, Object> node = location(iso.vertex(i));
+            node.put("id", SEMANTIC_STREET_GRAPH.id(iso.vertex(i)));
+            node.put("distance", iso.distance(i));
+            nodes.add(node);
+        }
+        List<Map<String, Object>> hull = new ArrayList<>();
+        for (int v : iso.hull()) {
+            hull.add(location(v));
+        }
+
+        Map<String, Object> isochroneParams = new HashMap<>();
+        isochroneParams.put("isochrone_success", !nodes.isEmpty());
+        isochroneParams.put("distance", distance);
+        isochroneParams.put("nodes", nodes);
+        isochroneParams.put("hull", hull);
+        return isochroneParams;
+    }
+
+    /** Returns a map of the longitude and latitude of vertex V for the Json response. */
+    private static Map<String, Object> location(int v) {
+        Map<String, Object> location = new HashMap<>();
+        location.put("lon", SEMANTIC_STREET_GRAPH.vertexLon(v));
+        location.put("lat", SEMANTIC_STREET_GRAPH.vertexLat(v));
+        return location;
+    }
+}
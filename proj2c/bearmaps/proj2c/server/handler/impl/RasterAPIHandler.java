@@ -5,6 +5,9 @@ import bearmaps.proj2c.server.handler.APIRouteHandler;
 import spark.Request;
 import spark.Response;
 import bearmaps.proj2c.utils.Constants;
+import bearmaps.proj2c.utils.RasterCache;
+import bearmaps.proj2c.utils.RouteStore;
+import bearmaps.proj2c.utils.TileCache;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -12,10 +15,17 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static bearmaps.proj2c.utils.Constants.*;
 
@@ -44,6 +54,14 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
     private static final String[] REQUIRED_RASTER_RESULT_PARAMS = {"render_grid", "raster_ul_lon",
             "raster_ul_lat", "raster_lr_lon", "raster_lr_lat", "depth", "query_success"};
 
+    /** The threads fetching and drawing tiles, shared by all raster requests. */
+    private static final ExecutorService TILE_POOL = Executors.newFixedThreadPool(
+            RASTER_THREADS, r -> {
+                Thread t = new Thread(r, "raster-tiles");
+                t.setDaemon(true);
+                return t;
+            });
+
 
     @Override
     protected Map<String, Double> parseRequestParams(Request request) {
@@ -131,7 +149,7 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
         String[][] grid = new String[lrRow - ulRow + 1][lrCol - ulCol + 1];
         for (int i = ulRow; i <= lrRow; i++) {
             for (int j = ulCol; j <= lrCol; j++) {
-                grid[i - ulRow][j - ulCol] = "d" + depth + "_x" + j + "_y" + i + ".png";
+                grid[i - ulRow][j - ulCol] = TileCache.tileName(depth, j, i);
             }
         }
         results.put("render_grid", grid);
@@ -139,19 +157,67 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
         return results;
     }
 
+    /**
+     * Builds the JSON response with the rastered image, drawing on it the route of
+     * the client who sent the request. The encoded image is taken from the raster
+     * cache if the same tiles have been rastered with the same route before. If the
+     * image cannot be drawn, the query fails and nothing is cached.
+     */
     @Override
-    protected Object buildJsonResponse(Map<String, Object> result) {
+    protected Object buildJsonResponse(Request request, Map<String, Object> result) {
         boolean rasterSuccess = validateRasteredImgParams(result);
 
         if (rasterSuccess) {
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            writeImagesToOutputStream(result, os);
-            String encodedImage = Base64.getEncoder().encodeToString(os.toByteArray());
-            result.put("b64_encoded_image_data", encodedImage);
+            RouteStore.Route route = ROUTES.get(clientKey(request));
+            RasterCache.Key key = rasterKey(result, route.version());
+            RasterCache.Raster raster;
+            try {
+                raster = RASTER_CACHE.get(key, () -> encodeImage(result, route.nodes()));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return super.buildJsonResponse(queryFail());
+            }
+            result.put("raster_width", raster.width());
+            result.put("raster_height", raster.height());
+            result.put("b64_encoded_image_data", raster.encodedImage());
         }
         return super.buildJsonResponse(result);
     }
 
+    /**
+     * Draws the rastered image of a successful rastering result with the given route
+     * and encodes it as base64 PNG.
+     * @throws IOException if the image cannot be drawn or encoded
+     */
+    private RasterCache.Raster encodeImage(Map<String, Object> result, List<Long> route)
+            throws IOException {
+        // Encodes the PNG to base64 as it is written, so the raw PNG is never
+        // buffered. The base64 text is still copied twice: out of the buffer into
+        // the String kept in the raster cache, and by Gson into the JSON response
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (OutputStream b64 = Base64.getEncoder().wrap(os)) {
+            writeImagesToOutputStream(result, route, b64);
+        }  // closing writes the last base64 characters
+        return new RasterCache.Raster(os.toString("ISO-8859-1"),
+                (int) result.get("raster_width"), (int) result.get("raster_height"));
+    }
+
+    /**
+     * Returns the raster cache key of a successful rastering result: its depth and
+     * tile range, recovered from its bounding box and grid, and the route version.
+     */
+    private static RasterCache.Key rasterKey(Map<String, Object> result, long routeVersion) {
+        int depth = (int) result.get("depth");
+        String[][] grid = (String[][]) result.get("render_grid");
+        int numTile = 1 << depth;
+        double widthTile = (ROOT_LRLON - ROOT_ULLON) / numTile;
+        double heightTile = (ROOT_ULLAT - ROOT_LRLAT) / numTile;
+        int ulCol = (int) Math.round(((double) result.get("raster_ul_lon") - ROOT_ULLON) / widthTile);
+        int ulRow = (int) Math.round((ROOT_ULLAT - (double) result.get("raster_ul_lat")) / heightTile);
+        return new RasterCache.Key(depth, ulCol, ulRow,
+                ulCol + grid[0].length - 1, ulRow + grid.length - 1, routeVersion);
+    }
+
     private Map<String, Object> queryFail() {
         Map<String, Object> results = new HashMap<>();
         results.put("render_grid", null);
@@ -186,12 +252,16 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
     }
 
     /**
-     * Writes the images corresponding to rasteredImgParams to the output stream.
+     * Writes the images corresponding to rasteredImgParams to the output stream,
+     * with the given route drawn on them.
      * In Spring 2016, students had to do this on their own, but in 2017,
      * we made this into provided code since it was just a bit too low level.
+     * @throws IOException if a tile cannot be read, drawing is interrupted, or the
+     *                     image cannot be written, so that no partial image is used
      */
     private  void writeImagesToOutputStream(Map<String, Object> rasteredImageParams,
-                                                  ByteArrayOutputStream os) {
+                                            List<Long> route, OutputStream os)
+            throws IOException {
         String[][] renderGrid = (String[][]) rasteredImageParams.get("render_grid");
         int numVertTiles = renderGrid.length;
         int numHorizTiles = renderGrid[0].length;
@@ -199,17 +269,32 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
         BufferedImage img = new BufferedImage(numHorizTiles * Constants.TILE_SIZE,
                 numVertTiles * Constants.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
         Graphics graphic = img.getGraphics();
-        int x = 0, y = 0;
 
+        /* Fetches and draws each row of tiles on its own thread. The rows cover
+           separate parts of the image, so they can be drawn at the same time. */
+        List<Future<?>> rows = new ArrayList<>();
         for (int r = 0; r < numVertTiles; r += 1) {
-            for (int c = 0; c < numHorizTiles; c += 1) {
-                graphic.drawImage(getImage(Constants.IMG_ROOT + renderGrid[r][c]), x, y, null);
-                x += Constants.TILE_SIZE;
-                if (x >= img.getWidth()) {
-                    x = 0;
-                    y += Constants.TILE_SIZE;
-                }
+            final int row = r;
+            rows.add(TILE_POOL.submit(() -> {
+                drawRow(img, renderGrid[row], row);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> row : rows) {
+                row.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<?> row : rows) {
+                row.cancel(true);
+            }
+            throw new InterruptedIOException("Interrupted while drawing the tiles.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to draw the tiles.", e.getCause());
         }
 
         /* If there is a route, draw it. */
@@ -221,7 +306,6 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
         final double wdpp = (lrlon - ullon) / img.getWidth();
         final double hdpp = (ullat - lrlat) / img.getHeight();
         AugmentedStreetMapGraph graph = SEMANTIC_STREET_GRAPH;
-        List<Long> route = ROUTE_LIST;
 
         if (route != null && !route.isEmpty()) {
             Graphics2D g2d = (Graphics2D) graphic;
@@ -240,25 +324,28 @@ public class RasterAPIHandler extends APIRouteHandler<Map<String, Double>, Map<S
         rasteredImageParams.put("raster_width", img.getWidth());
         rasteredImageParams.put("raster_height", img.getHeight());
 
-        try {
-            ImageIO.write(img, "png", os);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (!ImageIO.write(img, "png", os)) {
+            throw new IOException("No PNG writer available.");
         }
-
     }
 
-    private BufferedImage getImage(String imgPath) {
-        BufferedImage tileImg = null;
-        if (tileImg == null) {
-            try {
-                tileImg = ImageIO.read(Thread.currentThread().getContextClassLoader().getResource(imgPath));
-//                File in = new File(imgPath);
-//                tileImg = ImageIO.read(in);
-            } catch (IOException | NullPointerException e) {
-                e.printStackTrace();
+    /**
+     * Draws the tiles of the given row of the render grid onto the image.
+     * @throws IOException if a tile cannot be read
+     */
+    private static void drawRow(BufferedImage img, String[] tiles, int row) throws IOException {
+        Graphics graphic = img.createGraphics();
+        try {
+            int y = row * Constants.TILE_SIZE;
+            for (int c = 0; c < tiles.length; c += 1) {
+                BufferedImage tile = TILE_CACHE.get(tiles[c]);
+                if (tile == null) {
+                    throw new IOException("Missing tile " + tiles[c] + ".");
+                }
+                graphic.drawImage(tile, c * Constants.TILE_SIZE, y, null);
             }
+        } finally {
+            graphic.dispose();
         }
-        return tileImg;
     }
 }
@@ -1,7 +1,9 @@
 package bearmaps.proj2c.server.handler.impl;
 
+import bearmaps.hw4.IndexedShortestPathsSolver;
 import bearmaps.proj2c.Router;
 import bearmaps.proj2c.server.handler.APIRouteHandler;
+import bearmaps.proj2c.utils.Tuple;
 import spark.Request;
 import spark.Response;
 
@@ -9,15 +11,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static bearmaps.proj2c.utils.Constants.ROUTE_SEARCH_MODE;
 import static bearmaps.proj2c.utils.Constants.SEMANTIC_STREET_GRAPH;
-import static bearmaps.proj2c.utils.Constants.ROUTE_LIST;
+import static bearmaps.proj2c.utils.Constants.RASTER_CACHE;
+import static bearmaps.proj2c.utils.Constants.ROUTES;
 
 /**
  * Handles requests from the web browser for routes between locations. The
  * route will be returned as image data, as well as (optionally) driving directions. *
  * Created by rahul
  */
-public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<String, Object>> {
+public class RoutingAPIHandler
+        extends APIRouteHandler<Tuple<String, Map<String, Double>>, Map<String, Object>> {
 
     /**
      * Each route request to the server will have the following parameters
@@ -28,9 +33,14 @@ public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<
     private static final String[] REQUIRED_ROUTE_REQUEST_PARAMS = {"start_lat", "start_lon",
             "end_lat", "end_lon"};
 
+    /**
+     * Returns the key of the client who asked for the route along with the
+     * route request parameters.
+     */
     @Override
-    protected Map<String, Double> parseRequestParams(Request request) {
-        return getRequestParams(request, REQUIRED_ROUTE_REQUEST_PARAMS);
+    protected Tuple<String, Map<String, Double>> parseRequestParams(Request request) {
+        return new Tuple<>(clientKey(request),
+                getRequestParams(request, REQUIRED_ROUTE_REQUEST_PARAMS));
     }
 
     /**
@@ -38,15 +48,15 @@ public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<
      * street directions between the given points. THis method has been
      * completed for you.
      *
-     * The route to draw on the map should be added to the end of
-     * bearmaps.proj2c.utils.Constants.ROUTE_LIST. This is a LinkedList of longs,
-     * where each long corresponds to one point on the map.
+     * The route to draw on the map is stored as the route of the requesting client
+     * in bearmaps.proj2c.utils.Constants.ROUTES. This is a list of longs, where each
+     * long corresponds to one point on the map.
      *
      * Street directions can also be provided in the form of text as a return
      * value to this function.
      *
-     * @param requestParams Map of the HTTP GET request's query parameters - the starting lat/long
-     *                      and the destination lat/lon.
+     * @param request The client key, and a map of the HTTP GET request's query parameters -
+     *                the starting lat/long and the destination lat/lon.
      *
      * @param response : Not used by this function. You may ignore.
      * @return A map of results for the front end as specified: <br>
@@ -57,13 +67,17 @@ public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<
      * "directions"      : String. The text directions you want to display, in HTML format.
      */
     @Override
-    protected Map<String, Object> processRequest(Map<String, Double> requestParams, Response response) {
-        List<Long> route = Router.shortestPath(
+    protected Map<String, Object> processRequest(Tuple<String, Map<String, Double>> request,
+                                                 Response response) {
+        Map<String, Double> requestParams = request.getSecond();
+        IndexedShortestPathsSolver solver = Router.solve(
                 SEMANTIC_STREET_GRAPH,
                 requestParams.get("start_lon"), requestParams.get("start_lat"),
-                requestParams.get("end_lon"), requestParams.get("end_lat"));
-        ROUTE_LIST.addAll(route);
-        String directions = getDirectionsText();
+                requestParams.get("end_lon"), requestParams.get("end_lat"),
+                ROUTE_SEARCH_MODE);
+        List<Long> route = solver.solution();
+        RASTER_CACHE.invalidateRoute(ROUTES.put(request.getFirst(), route).version());
+        String directions = getDirectionsText(solver);
 
         Map<String, Object> routeParams = new HashMap<>();
         routeParams.put("routing_success", !route.isEmpty());
@@ -73,12 +87,12 @@ public class RoutingAPIHandler extends APIRouteHandler<Map<String, Double>, Map<
     }
 
     /**
-     * Takes the route of this MapServer and converts it into an HTML friendly
+     * Takes the route found by the given solver and converts it into an HTML friendly
      * String to be passed to the frontend.
      */
-    private String getDirectionsText() {
+    private String getDirectionsText(IndexedShortestPathsSolver solver) {
 
-        List<Router.NavigationDirection> directions = Router.routeDirections(SEMANTIC_STREET_GRAPH, ROUTE_LIST);
+        List<Router.NavigationDirection> directions = Router.routeDirections(SEMANTIC_STREET_GRAPH, solver);
         if (directions == null || directions.isEmpty()) {
             return "";
         }
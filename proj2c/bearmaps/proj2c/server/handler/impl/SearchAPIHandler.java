@@ -3,12 +3,14 @@ package bearmaps.proj2c.server.handler.impl;
 import bearmaps.proj2c.server.handler.APIRouteHandler;
 import spark.Request;
 import spark.Response;
+import bearmaps.proj2c.utils.Constants;
 import bearmaps.proj2c.utils.Tuple;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static bearmaps.proj2c.utils.Constants.AUTOCOMPLETE_SUGGESTIONS;
 import static bearmaps.proj2c.utils.Constants.SEMANTIC_STREET_GRAPH;
 
 /**
@@ -38,7 +40,8 @@ public class SearchAPIHandler extends APIRouteHandler<Tuple<Set<String>, String>
     }
 
     /**
-     * In linear time, collect all the names of OSM locations that prefix-match the query string.
+     * Collect the names of the {@link Constants#AUTOCOMPLETE_SUGGESTIONS} most popular OSM
+     * locations that prefix-match the query string, in time independent of how many match.
      * @param prefix Prefix string to be searched for. Could be any case, with our without
      *               punctuation.
      * @return A <code>List</code> of the full names of locations whose cleaned name matches the
@@ -46,7 +49,7 @@ public class SearchAPIHandler extends APIRouteHandler<Tuple<Set<String>, String>
      */
     public List<String> getLocationsByPrefix(String prefix) {
 
-        return SEMANTIC_STREET_GRAPH.getLocationsByPrefix(prefix);
+        return SEMANTIC_STREET_GRAPH.getLocationsByPrefix(prefix, AUTOCOMPLETE_SUGGESTIONS);
     }
 
     /**
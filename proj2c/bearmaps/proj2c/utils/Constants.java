@@ -1,10 +1,9 @@
 package bearmaps.proj2c.utils;
 
+import bearmaps.hw4.SearchMode;
 import bearmaps.proj2c.AugmentedStreetMapGraph;
 
 import java.awt.*;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * A class holding all the constant values used throughout the project
@@ -39,11 +38,62 @@ public class Constants {
     /** Each tile is 256x256 pixels. */
     public static final int TILE_SIZE = 256;
 
+    /** The decoded tiles kept in memory: 128 MB of pixel data, about 700 tiles. */
+    public static final long TILE_CACHE_BYTES = 128L << 20;
+
+    /** Every tile down to this depth is decoded when the server starts; -1 for none. */
+    public static final int TILE_WARM_UP_DEPTH = 3;
+
+    public static final TileCache TILE_CACHE = new TileCache(TILE_CACHE_BYTES);
+
+    /** The number of threads fetching and drawing tiles for raster requests. */
+    public static final int RASTER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** The number of encoded rastered images kept in memory. */
+    public static final int RASTER_CACHE_CAPACITY = 64;
+
+    public static final RasterCache RASTER_CACHE = new RasterCache(RASTER_CACHE_CAPACITY);
+
     public static AugmentedStreetMapGraph SEMANTIC_STREET_GRAPH;
 
     /**
-     * This is used to maintain a single List of route so that the same instance(object) is accessed
-     * from everywhere in the code. Enum is a cleaner way to achieve such a singleton pattern.
+     * Whether the closest node is found with a GeoGrid rather than a KDTree. Both give
+     * the same answers; the grid is faster for dense city data.
+     */
+    public static final boolean SNAP_WITH_GEO_GRID = true;
+
+    /**
+     * How the routing handler searches when no contraction hierarchy has been prepared.
+     * Both modes find equally short routes; with the landmark heuristic a search from
+     * the start alone explores slightly fewer states, so it is the default.
+     */
+    public static final SearchMode ROUTE_SEARCH_MODE = SearchMode.UNIDIRECTIONAL;
+
+    /** The number of names suggested for each keystroke of a search. */
+    public static final int AUTOCOMPLETE_SUGGESTIONS = 10;
+
+    /**
+     * The largest edit distance between a searched name of more than five characters
+     * and the names found when no name matches exactly; 0 for exact matches only.
+     * Shorter names allow at most one edit, and names of two characters or fewer none.
+     */
+    public static final int SEARCH_MAX_EDIT_DISTANCE = 2;
+
+    /** The number of angular sectors of the polygon drawn around an isochrone. */
+    public static final int ISOCHRONE_SECTORS = 72;
+
+    /**
+     * The largest distance an isochrone may reach, in miles, which bounds the work and the
+     * size of the response of a single request; some two fifths of the span of the map.
+     */
+    public static final double MAX_ISOCHRONE_MILES = 2;
+
+    /** The maximum number of clients whose routes are kept at once. */
+    public static final int MAX_ROUTE_CLIENTS = 1024;
+
+    /**
+     * The current route of each client, so that the same instance(object) is accessed from
+     * everywhere in the code while every client sees only their own route.
      */
-    public static final List<Long> ROUTE_LIST = new LinkedList<>();
+    public static final RouteStore ROUTES = new RouteStore(MAX_ROUTE_CLIENTS);
 }
@@ -0,0 +1,178 @@
+package bearmaps.proj2c.utils;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A cache of encoded rastered images, so that viewing the same part of the map again
+ * costs a lookup instead of drawing and encoding a PNG. A rastered image only depends
+ * on the depth, the range of tiles and the route drawn on it, which together make
+ * the key. Route versions come from {@link RouteStore}; when a route changes, the
+ * images drawn with the old one are dropped by {@link #invalidateRoute}.
+ *
+ * At most a fixed number of images are kept, the least recently used going first.
+ * Images are held through soft references, so the garbage collector can also reclaim
+ * them when memory runs low. All methods are thread-safe.
+ *
+ * @author Hsingyi Lin
+ */
+public class RasterCache {
+
+    private final LinkedHashMap<Key, SoftReference<Raster>> rasters;
+
+    /** The depth, tile range and route version of a rastered image. */
+    public static class Key {
+        private final int depth;
+        private final int ulCol;
+        private final int ulRow;
+        private final int lrCol;
+        private final int lrRow;
+        private final long routeVersion;
+
+        public Key(int depth, int ulCol, int ulRow, int lrCol, int lrRow, long routeVersion) {
+            this.depth = depth;
+            this.ulCol = ulCol;
+            this.ulRow = ulRow;
+            this.lrCol = lrCol;
+            this.lrRow = lrRow;
+            this.routeVersion = routeVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return depth == other.depth && ulCol == other.ulCol && ulRow == other.ulRow
+                    && lrCol == other.lrCol && lrRow == other.lrRow
+                    && routeVersion == other.routeVersion;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(depth, ulCol, ulRow, lrCol, lrRow, routeVersion);
+        }
+    }
+
+    /** A rastered image encoded as base64 PNG, along with its size in pixels. */
+    public static class Raster {
+        private final String encodedImage;
+        private final int width;
+        private final int height;
+
+        public Raster(String encodedImage, int width, int height) {
+            this.encodedImage = encodedImage;
+            this.width = width;
+            this.height = height;
+        }
+
+        public String encodedImage() {
+            return encodedImage;
+        }
+
+        public int width() {
+            return width;
+        }
+
+        public int height() {
+            return height;
+        }
+    }
+
+    /** Draws and encodes a rastered image. */
+    public interface Renderer {
+        Raster render() throws IOException;
+    }
+
+    /**
+     * Initializes an empty cache of at most {@code capacity} images.
+     *
+     * @param capacity the maximum number of images
+     */
+    public RasterCache(int capacity) {
+        rasters = new LinkedHashMap<Key, SoftReference<Raster>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<Raster>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the image cached under {@code key}, or null if there is none.
+     *
+     * @param key the key
+     * @return the image, or null
+     */
+    public synchronized Raster get(Key key) {
+        SoftReference<Raster> ref = rasters.get(key);
+        if (ref == null) {
+            return null;
+        }
+        Raster raster = ref.get();
+        if (raster == null) {
+            rasters.remove(key);  // reclaimed by the garbage collector
+        }
+        return raster;
+    }
+
+    /**
+     * Returns the image cached under {@code key}, rendering it with {@code renderer}
+     * and caching it if there is none. The image is rendered outside the lock, and
+     * only cached once it has been rendered in full.
+     *
+     * @param key the key
+     * @param renderer renders the image on a miss
+     * @return the image
+     * @throws IOException if the image is not cached and rendering it fails, in which
+     *                     case nothing is cached
+     */
+    public Raster get(Key key, Renderer renderer) throws IOException {
+        Raster raster = get(key);
+        if (raster == null) {
+            raster = renderer.render();
+            put(key, raster);
+        }
+        return raster;
+    }
+
+    /**
+     * Caches {@code raster} under {@code key}.
+     *
+     * @param key the key
+     * @param raster the image
+     */
+    public synchronized void put(Key key, Raster raster) {
+        rasters.put(key, new SoftReference<>(raster));
+    }
+
+    /**
+     * Drops every image drawn with the route of version {@code routeVersion}.
+     *
+     * @param routeVersion the version of a route that has been replaced or cleared
+     */
+    public synchronized void invalidateRoute(long routeVersion) {
+        if (routeVersion == RouteStore.NO_ROUTE.version()) {
+            return;  // still shared by every client without a route
+        }
+        Iterator<Key> keys = rasters.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().routeVersion == routeVersion) {
+                keys.remove();
+            }
+        }
+    }
+
+    /** Returns the number of images cached, including any already reclaimed. */
+    public synchronized int size() {
+        return rasters.size();
+    }
+}
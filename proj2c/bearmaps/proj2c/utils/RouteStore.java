@@ -0,0 +1,104 @@
+package bearmaps.proj2c.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the current route of each client of the server, so that every user sees
+ * their own route and concurrent requests never share a list. Clients are keyed by
+ * their session id. At most a fixed number of clients are kept; once it is full,
+ * the route of the client who has gone longest without a request is dropped.
+ *
+ * All methods are thread-safe. Routes are stored and returned as unmodifiable
+ * lists, so a route can be read while another request replaces it. Every route
+ * stored gets a new version number, so anything drawn from a route can be cached
+ * under its version and told apart from what was drawn from an older route.
+ *
+ * @author Hsingyi Lin
+ */
+public class RouteStore {
+
+    /** The route of a client without one. */
+    public static final Route NO_ROUTE = new Route(Collections.emptyList(), 0);
+
+    private final Map<String, Route> routes;
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    /** A route as node ids in order, along with its version number. */
+    public static class Route {
+        private final List<Long> nodes;
+        private final long version;
+
+        private Route(List<Long> nodes, long version) {
+            this.nodes = nodes;
+            this.version = version;
+        }
+
+        public List<Long> nodes() {
+            return nodes;
+        }
+
+        public long version() {
+            return version;
+        }
+    }
+
+    /**
+     * Initializes an empty store of the routes of at most {@code capacity} clients.
+     *
+     * @param capacity the maximum number of clients
+     */
+    public RouteStore(int capacity) {
+        routes = Collections.synchronizedMap(new LinkedHashMap<String, Route>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Route> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * Returns the route of the client {@code client}, or {@link #NO_ROUTE} if it has
+     * none.
+     *
+     * @param client the client key
+     * @return the route
+     */
+    public Route get(String client) {
+        Route route = routes.get(client);
+        return route == null ? NO_ROUTE : route;
+    }
+
+    /**
+     * Replaces the route of the client {@code client} with a copy of {@code route}.
+     *
+     * @param client the client key
+     * @param route the route as node ids in order
+     * @return the route replaced, or {@link #NO_ROUTE}
+     */
+    public Route put(String client, List<Long> route) {
+        Route old = routes.put(client, new Route(
+                Collections.unmodifiableList(new ArrayList<>(route)), lastVersion.incrementAndGet()));
+        return old == null ? NO_ROUTE : old;
+    }
+
+    /**
+     * Removes the route of the client {@code client}.
+     *
+     * @param client the client key
+     * @return the route removed, or {@link #NO_ROUTE}
+     */
+    public Route clear(String client) {
+        Route old = routes.remove(client);
+        return old == null ? NO_ROUTE : old;
+    }
+
+    /** Returns the number of clients with a route. */
+    public int size() {
+        return routes.size();
+    }
+}
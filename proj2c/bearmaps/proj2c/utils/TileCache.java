@@ -0,0 +1,163 @@
+package bearmaps.proj2c.utils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of decoded map tiles, so that popular tiles are only read from their PNG
+ * files once. Tiles are keyed by their file name, which names their depth and x and
+ * y position (see {@link #tileName}). The cache holds at most a fixed number of bytes
+ * of pixel data; once it is full, the least recently used tiles are evicted.
+ *
+ * All methods are thread-safe. Tiles are decoded outside the lock, so a slow decode
+ * never blocks hits on other tiles; two threads missing the same tile at once may
+ * both decode it.
+ *
+ * @author Hsingyi Lin
+ */
+public class TileCache {
+
+    private final long capacity;  // maximum number of bytes of pixel data
+    private long size;            // number of bytes of pixel data held
+    private final LinkedHashMap<String, BufferedImage> tiles;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Initializes an empty cache of at most {@code capacity} bytes of pixel data.
+     *
+     * @param capacity the maximum number of bytes
+     */
+    public TileCache(long capacity) {
+        this.capacity = capacity;
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the file name of the tile at the given depth and position.
+     *
+     * @param depth the depth of the tile
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @return the file name
+     */
+    public static String tileName(int depth, int x, int y) {
+        return "d" + depth + "_x" + x + "_y" + y + ".png";
+    }
+
+    /**
+     * Returns the tile with the given file name, decoding it from the image folder
+     * if it is not cached, or null if it cannot be read.
+     *
+     * @param name the file name of the tile
+     * @return the decoded tile, or null
+     */
+    public BufferedImage get(String name) {
+        synchronized (this) {
+            BufferedImage tile = tiles.get(name);
+            if (tile != null) {
+                hits.incrementAndGet();
+                return tile;
+            }
+        }
+        misses.incrementAndGet();
+        BufferedImage tile = read(name);
+        if (tile != null) {
+            put(name, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Decodes every tile of the depths 0 to {@code maxDepth} ahead of time, so that
+     * the first requests of the zoomed out map are served from the cache.
+     *
+     * @param maxDepth the deepest depth to load
+     */
+    public void warmUp(int maxDepth) {
+        for (int depth = 0; depth <= maxDepth; depth++) {
+            int numTile = 1 << depth;
+            for (int y = 0; y < numTile; y++) {
+                for (int x = 0; x < numTile; x++) {
+                    get(tileName(depth, x, y));
+                }
+            }
+        }
+    }
+
+    private synchronized void put(String name, BufferedImage tile) {
+        BufferedImage old = tiles.put(name, tile);
+        if (old != null) {
+            size -= bytes(old);
+        }
+        size += bytes(tile);
+        Iterator<Map.Entry<String, BufferedImage>> eldest = tiles.entrySet().iterator();
+        while (size > capacity && eldest.hasNext()) {
+            BufferedImage evicted = eldest.next().getValue();
+            if (evicted == tile) {
+                break;  // never evicts the tile just added
+            }
+            eldest.remove();
+            size -= bytes(evicted);
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Decodes the tile with the given file name from the image folder, or returns
+     * null if it cannot be read. Called on every miss.
+     *
+     * @param name the file name of the tile
+     * @return the decoded tile, or null
+     */
+    protected BufferedImage read(String name) {
+        try {
+            URL url = Thread.currentThread().getContextClassLoader()
+                    .getResource(Constants.IMG_ROOT + name);
+            return ImageIO.read(url);
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** Returns the number of bytes of pixel data of the tile. */
+    private static long bytes(BufferedImage tile) {
+        return (long) tile.getWidth() * tile.getHeight()
+                * tile.getColorModel().getPixelSize() / 8;
+    }
+
+    /** Returns the number of requests served from the cache. */
+    public long hits() {
+        return hits.get();
+    }
+
+    /** Returns the number of requests that had to decode the tile. */
+    public long misses() {
+        return misses.get();
+    }
+
+    /** Returns the number of tiles evicted to make room for others. */
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /** Returns the number of tiles cached. */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TileCache[tiles=%d, hits=%d, misses=%d, evictions=%d]",
+                size(), hits(), misses(), evictions());
+    }
+}
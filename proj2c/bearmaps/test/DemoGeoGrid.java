@@ -0,0 +1,48 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.GeoGrid;
+import bearmaps.proj2ab.KDTree;
+import bearmaps.proj2ab.Point;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times nearest queries on GeoGrid against KDTree on city-like data: prints the best
+ * of five rounds of a million queries over the city on each.
+ */
+public class DemoGeoGrid {
+    private static final int ROUNDS = 5;
+    private static final int NUM_POINTS = 150000;
+    private static final int NUM_QUERIES = 1000000;
+
+    public static void main(String[] args) {
+        Random r = new Random(72);
+        List<Point> points = TestGeoGrid.cityPoints(r, NUM_POINTS);
+        KDTree kd = new KDTree(points);
+        GeoGrid grid = new GeoGrid(points);
+        double[] xs = new double[NUM_QUERIES];
+        double[] ys = new double[NUM_QUERIES];
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            xs[i] = -122.30 + r.nextDouble() * 0.1;
+            ys[i] = 37.82 + r.nextDouble() * 0.07;
+        }
+
+        long kdTime = Long.MAX_VALUE;
+        long gridTime = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < NUM_QUERIES; i++) {
+                kd.nearestIndex(xs[i], ys[i]);
+            }
+            kdTime = Math.min(kdTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (int i = 0; i < NUM_QUERIES; i++) {
+                grid.nearestIndex(xs[i], ys[i]);
+            }
+            gridTime = Math.min(gridTime, System.nanoTime() - start);
+        }
+        System.out.printf("%d queries: KDTree %.1f ms, GeoGrid %.1f ms%n",
+                NUM_QUERIES, kdTime / 1e6, gridTime / 1e6);
+    }
+}
@@ -0,0 +1,50 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.KDTree;
+import bearmaps.proj2ab.NaivePointSet;
+import bearmaps.proj2ab.Point;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times KDTree against NaivePointSet at a million random points: prints the time to
+ * build the tree, and the best of five rounds of nearest queries on NaivePointSet and
+ * of nearest, k-nearest and radius queries on KDTree for the same goals.
+ */
+public class DemoKDTree {
+    private static final int ROUNDS = 5;
+    private static final int NUM_POINTS = 1000000;
+    private static final int NUM_GOALS = 100;
+
+    public static void main(String[] args) {
+        Random r = new Random(64);
+        List<Point> points = TestKDTree.randomPoints(r, NUM_POINTS);
+        List<Point> goals = TestKDTree.randomPoints(r, NUM_GOALS);
+
+        long start = System.nanoTime();
+        KDTree kd = new KDTree(points);
+        System.out.printf("KDTree build: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        NaivePointSet naive = new NaivePointSet(points);
+
+        long naiveTime = Long.MAX_VALUE;
+        long kdTime = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            start = System.nanoTime();
+            for (Point g : goals) {
+                naive.nearest(g.getX(), g.getY());
+            }
+            naiveTime = Math.min(naiveTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (Point g : goals) {
+                kd.nearest(g.getX(), g.getY());
+                kd.kNearest(g.getX(), g.getY(), 10);
+                kd.withinRadius(g.getX(), g.getY(), 0.1);
+            }
+            kdTime = Math.min(kdTime, System.nanoTime() - start);
+        }
+        System.out.printf("%d goals: NaivePointSet nearest %.1f ms, "
+                + "KDTree nearest + kNearest + withinRadius %.1f ms%n",
+                NUM_GOALS, naiveTime / 1e6, kdTime / 1e6);
+    }
+}
@@ -0,0 +1,52 @@
+package bearmaps.test;
+
+import bearmaps.hw4.IndexedAStarGraph;
+import bearmaps.hw4.IndexedAStarSolver;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+
+import java.io.IOException;
+
+/**
+ * Compares A* with the ALT landmark heuristic against A* with the great-circle
+ * distance alone on the routes of the routing test: prints the states each explores
+ * and the best of five rounds of their times, per route and in total.
+ * Make sure to run it from the folder containing data/, like the tests.
+ */
+public class DemoLandmarks {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        AugmentedStreetMapGraph graph = new AugmentedStreetMapGraph(TestLandmarks.OSM_DB_PATH, false);
+        IndexedAStarGraph greatCircle = new GreatCircleGraph(graph);
+        long[][] routes = TestLandmarks.routes(graph);
+        long withLandmarks = 0;
+        long withoutLandmarks = 0;
+        long altTotal = 0;
+        long plainTotal = 0;
+        for (int i = 0; i < routes.length; i++) {
+            long altTime = Long.MAX_VALUE;
+            long plainTime = Long.MAX_VALUE;
+            IndexedAStarSolver alt = null;
+            IndexedAStarSolver plain = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                alt = new IndexedAStarSolver(graph, routes[i][0], routes[i][1], 20);
+                altTime = Math.min(altTime, System.nanoTime() - start);
+                start = System.nanoTime();
+                plain = new IndexedAStarSolver(greatCircle, routes[i][0], routes[i][1], 20);
+                plainTime = Math.min(plainTime, System.nanoTime() - start);
+            }
+            System.out.printf("Route %d: %7d states with landmarks in %6.2f ms, "
+                    + "%7d without in %6.2f ms%n", i, alt.numStatesExplored(), altTime / 1e6,
+                    plain.numStatesExplored(), plainTime / 1e6);
+            withLandmarks += alt.numStatesExplored();
+            withoutLandmarks += plain.numStatesExplored();
+            altTotal += altTime;
+            plainTotal += plainTime;
+        }
+        System.out.printf("Landmarks explored %.1f%% fewer states in total, "
+                + "%.2f ms against %.2f ms%n",
+                100.0 * (withoutLandmarks - withLandmarks) / withoutLandmarks,
+                altTotal / 1e6, plainTotal / 1e6);
+    }
+}
@@ -0,0 +1,42 @@
+package bearmaps.test;
+
+import bearmaps.hw4.IndexedAStarGraph;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+
+/** The same graph with only the great-circle distance as its heuristic. */
+class GreatCircleGraph implements IndexedAStarGraph {
+    private final AugmentedStreetMapGraph g;
+
+    GreatCircleGraph(AugmentedStreetMapGraph g) {
+        this.g = g;
+    }
+
+    @Override
+    public int numVertices() { return g.numVertices(); }
+
+    @Override
+    public int index(long id) { return g.index(id); }
+
+    @Override
+    public long id(int v) { return g.id(v); }
+
+    @Override
+    public int edgeStart(int v) { return g.edgeStart(v); }
+
+    @Override
+    public int edgeEnd(int v) { return g.edgeEnd(v); }
+
+    @Override
+    public int edgeTarget(int e) { return g.edgeTarget(e); }
+
+    @Override
+    public double edgeWeight(int e) { return g.edgeWeight(e); }
+
+    @Override
+    public double estimatedDistanceToGoal(int s, int goal) {
+        return g.distance(g.id(s), g.id(goal));
+    }
+
+    @Override
+    public boolean isUndirected() { return g.isUndirected(); }
+}
@@ -0,0 +1,141 @@
+package bearmaps.test;
+
+import bearmaps.hw4.IndexedAStarGraph;
+
+import java.util.Random;
+
+/**
+ * An undirected grid graph with random edge weights, for tests of the searches that
+ * need no map data. Each vertex is joined to its right and lower neighbors by an edge
+ * of weight in [1, 2), unless the edge is left out at random to make detours. Two more
+ * vertices, joined to each other only, form an island out of reach of the grid.
+ *
+ * Vertex ids are not their indices, so that mixing the two up shows. The estimate is
+ * the Manhattan distance in the grid, which is consistent as every edge weighs at
+ * least 1.
+ */
+class GridGraph implements IndexedAStarGraph {
+    private static final long ID_BASE = 1000;
+    private static final long ID_STEP = 7;
+
+    private final int width;
+    private final int numGrid;
+    private final int[] edgeStart;
+    private final int[] edgeTarget;
+    private final double[] edgeWeight;
+
+    /**
+     * Builds a WIDTH by HEIGHT grid leaving out each edge with probability HOLES, from
+     * the random seed SEED.
+     */
+    GridGraph(int width, int height, double holes, long seed) {
+        this.width = width;
+        this.numGrid = width * height;
+        int n = numGrid + 2;
+        Random random = new Random(seed);
+        int[] from = new int[4 * numGrid + 2];
+        int[] to = new int[from.length];
+        double[] weight = new double[from.length];
+        int m = 0;
+        for (int v = 0; v < numGrid; v++) {
+            int[] neighbors = {v % width + 1 < width ? v + 1 : -1,
+                               v + width < numGrid ? v + width : -1};
+            for (int w : neighbors) {
+                if (w < 0 || random.nextDouble() < holes) {
+                    continue;
+                }
+                double d = 1 + random.nextDouble();
+                from[m] = v;
+                to[m] = w;
+                weight[m++] = d;
+                from[m] = w;
+                to[m] = v;
+                weight[m++] = d;
+            }
+        }
+        from[m] = numGrid;
+        to[m] = numGrid + 1;
+        weight[m++] = 1;
+        from[m] = numGrid + 1;
+        to[m] = numGrid;
+        weight[m++] = 1;
+
+        edgeStart = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            edgeStart[from[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            edgeStart[v + 1] += edgeStart[v];
+        }
+        int[] next = edgeStart.clone();
+        edgeTarget = new int[m];
+        edgeWeight = new double[m];
+        for (int e = 0; e < m; e++) {
+            int slot = next[from[e]]++;
+            edgeTarget[slot] = to[e];
+            edgeWeight[slot] = weight[e];
+        }
+    }
+
+    /** Returns the index of a vertex of the island, out of reach of the grid. */
+    int islandVertex() {
+        return numGrid;
+    }
+
+    @Override
+    public int numVertices() {
+        return numGrid + 2;
+    }
+
+    @Override
+    public int index(long id) {
+        long v = (id - ID_BASE) / ID_STEP;
+        if (id < ID_BASE || (id - ID_BASE) % ID_STEP != 0 || v >= numVertices()) {
+            return -1;
+        }
+        return (int) v;
+    }
+
+    @Override
+    public long id(int v) {
+        return ID_BASE + ID_STEP * v;
+    }
+
+    @Override
+    public int edgeStart(int v) {
+        return edgeStart[v];
+    }
+
+    @Override
+    public int edgeEnd(int v) {
+        return edgeStart[v + 1];
+    }
+
+    @Override
+    public int edgeTarget(int e) {
+        return edgeTarget[e];
+    }
+
+    @Override
+    public double edgeWeight(int e) {
+        return edgeWeight[e];
+    }
+
+    @Override
+    public double estimatedDistanceToGoal(int s, int goal) {
+        if (s >= numGrid || goal >= numGrid) {
+            return 0;
+        }
+        return Math.abs(s % width - goal % width) + Math.abs(s / width - goal / width);
+    }
+
+    @Override
+    public boolean isUndirected() {
+        return true;
+    }
+
+    @Override
+    public boolean isConsistent() {
+        return true;
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.Test;
 
 import java.util.*;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 /** Test of the autocomplete and search part of the assignment.
@@ -25,7 +26,7 @@ public class TestAutocompleteAndSearch {
         if (initialized) {
             return;
         }
-        graph = new AugmentedStreetMapGraph(OSM_DB_PATH);
+        graph = new AugmentedStreetMapGraph(OSM_DB_PATH, false);
         initialized = true;
     }
 
@@ -50,4 +51,12 @@ public class TestAutocompleteAndSearch {
         assertNotNull(res);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testFuzzySearch() {
+        List<Map<String, Object>> exact = graph.getLocations("Bongo Burger");
+        List<Map<String, Object>> typo = graph.getLocations("Bongo Burgr");
+        assertNotNull(typo);
+        assertEquals(exact, typo);
+    }
+
+}
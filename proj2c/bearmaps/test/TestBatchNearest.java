@@ -0,0 +1,80 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.BatchNearest;
+import bearmaps.proj2ab.GeoGrid;
+import bearmaps.proj2ab.IndexedPointSet;
+import bearmaps.proj2ab.KDTree;
+import bearmaps.proj2ab.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that BatchNearest gives the same answers as one query at a time on both
+ * point sets, on GPS-trace-like queries. {@link bearmaps.proj2ab.DemoBatchNearest}
+ * compares their running times.
+ */
+public class TestBatchNearest {
+    private static final int NUM_POINTS = 150000;
+    private static final int NUM_QUERIES = 200000;
+
+    private static List<Point> randomPoints(Random r, int n) {
+        List<Point> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            points.add(new Point(-122.30 + r.nextDouble() * 0.1, 37.82 + r.nextDouble() * 0.07));
+        }
+        return points;
+    }
+
+    /** Fills XS and YS with random walks, like a set of GPS traces. */
+    private static void randomTraces(Random r, double[] xs, double[] ys) {
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (i % 500 == 0) {
+                x = -122.30 + r.nextDouble() * 0.1;
+                y = 37.82 + r.nextDouble() * 0.07;
+            }
+            x += r.nextGaussian() * 1e-4;
+            y += r.nextGaussian() * 1e-4;
+            xs[i] = x;
+            ys[i] = y;
+        }
+    }
+
+    private static void assertSameAnswers(IndexedPointSet set, double[] xs, double[] ys) {
+        int[] actual = BatchNearest.nearestIndices(set, xs, ys);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(set.nearestIndex(xs[i], ys[i]), actual[i]);
+        }
+    }
+
+    @Test
+    public void testSameAsSingleQueries() {
+        Random r = new Random(81);
+        List<Point> points = randomPoints(r, NUM_POINTS);
+        double[] xs = new double[NUM_QUERIES];
+        double[] ys = new double[NUM_QUERIES];
+        randomTraces(r, xs, ys);
+        assertSameAnswers(new KDTree(points), xs, ys);
+        assertSameAnswers(new GeoGrid(points), xs, ys);
+    }
+
+    @Test
+    public void testSmallBatches() {
+        List<Point> points = new ArrayList<>();
+        points.add(new Point(0, 0));
+        points.add(new Point(1, 1));
+        KDTree kd = new KDTree(points);
+        assertEquals(0, BatchNearest.nearestIndices(kd, new double[0], new double[0]).length);
+        int[] nearest = BatchNearest.nearestIndices(kd, new double[] {0.9, 0.1, 0.9},
+                new double[] {0.9, 0.1, 0.9});
+        assertEquals(1, nearest[0]);
+        assertEquals(0, nearest[1]);
+        assertEquals(1, nearest[2]);
+    }
+}
@@ -0,0 +1,92 @@
+package bearmaps.test;
+
+import bearmaps.hw4.IndexedAStarGraph;
+import bearmaps.hw4.IndexedAStarSolver;
+import bearmaps.hw4.SearchMode;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of bidirectional A*. Checks that it finds paths as short as unidirectional A*
+ * does, with the same outcome, and that the edges of its solution lead from the start
+ * all the way to the goal, through the half found by the reverse search too.
+ */
+public class TestBidirectionalSearch {
+    private static final String OSM_DB_PATH = "bearmaps/test/osm/tiny-tags.osm.xml";
+    private static final int NUM_PAIRS = 500;
+    private static final double TIMEOUT = 20;
+
+    @Test
+    public void testGrid() {
+        GridGraph graph = new GridGraph(30, 30, 0.2, 17);
+        Random random = new Random(17);
+        for (int i = 0; i < NUM_PAIRS; i++) {
+            assertSameResult(graph, random.nextInt(graph.numVertices()),
+                    random.nextInt(graph.numVertices()));
+        }
+    }
+
+    @Test
+    public void testTinyMap() {
+        AugmentedStreetMapGraph graph = new AugmentedStreetMapGraph(OSM_DB_PATH, false);
+        for (int s = 0; s < graph.numVertices(); s++) {
+            for (int t = 0; t < graph.numVertices(); t++) {
+                assertSameResult(graph, s, t);
+            }
+        }
+    }
+
+    @Test
+    public void testSameStartAndGoal() {
+        GridGraph graph = new GridGraph(5, 5, 0, 3);
+        IndexedAStarSolver solver = new IndexedAStarSolver(graph, graph.id(12), graph.id(12),
+                TIMEOUT, SearchMode.BIDIRECTIONAL);
+        assertEquals(SolverOutcome.SOLVED, solver.outcome());
+        assertEquals(0, solver.solutionWeight(), 0.0);
+        assertEquals(Collections.singletonList(graph.id(12)), solver.solution());
+        assertEquals(0, solver.solutionEdges().length);
+        assertSameResult(graph, 12, 12);
+    }
+
+    @Test
+    public void testUnreachable() {
+        GridGraph graph = new GridGraph(5, 5, 0, 3);
+        int island = graph.islandVertex();
+        IndexedAStarSolver solver = new IndexedAStarSolver(graph, graph.id(0), graph.id(island),
+                TIMEOUT, SearchMode.BIDIRECTIONAL);
+        assertEquals(SolverOutcome.UNSOLVABLE, solver.outcome());
+        assertEquals(0, solver.solution().size());
+        assertSameResult(graph, 0, island);
+        assertSameResult(graph, island, 0);
+        assertSameResult(graph, island, island + 1);
+    }
+
+    /**
+     * Asserts that both modes agree on the path from vertex S to vertex T, and that the
+     * bidirectional solution is a path from S to T along the edges it reports.
+     */
+    private static void assertSameResult(IndexedAStarGraph graph, int s, int t) {
+        long start = graph.id(s);
+        long end = graph.id(t);
+        IndexedAStarSolver uni = new IndexedAStarSolver(graph, start, end, TIMEOUT,
+                SearchMode.UNIDIRECTIONAL);
+        IndexedAStarSolver bi = new IndexedAStarSolver(graph, start, end, TIMEOUT,
+                SearchMode.BIDIRECTIONAL);
+        String pair = "from " + start + " to " + end;
+        assertEquals(pair, uni.outcome(), bi.outcome());
+        if (uni.outcome() != SolverOutcome.SOLVED) {
+            return;
+        }
+        assertEquals(pair, uni.solutionWeight(), bi.solutionWeight(), 1e-9);
+        assertEquals(pair, uni.solution(), bi.solution());
+        assertEquals(pair, start, (long) bi.solution().get(0));
+        assertEquals(pair, end, (long) bi.solution().get(bi.solution().size() - 1));
+        TestContractionHierarchy.assertValidEdges(graph, bi);
+    }
+}
@@ -0,0 +1,133 @@
+package bearmaps.test;
+
+import bearmaps.hw4.ContractionHierarchy;
+import bearmaps.hw4.ContractionHierarchySolver;
+import bearmaps.hw4.IndexedAStarGraph;
+import bearmaps.hw4.IndexedAStarSolver;
+import bearmaps.hw4.IndexedShortestPathsSolver;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import bearmaps.proj2c.MapPreprocessor;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of contraction hierarchies. Checks that the solver on the hierarchy finds the
+ * same paths as A* on the original graph, with the shortcuts unpacked into the edges
+ * of the original graph, on a random grid and on the tiny map, and that a hierarchy
+ * saved by {@link MapPreprocessor} is loaded back the same.
+ */
+public class TestContractionHierarchy {
+    private static final String OSM_DB_PATH = "bearmaps/test/osm/tiny-tags.osm.xml";
+    private static final int NUM_PAIRS = 500;
+    private static final double TIMEOUT = 20;
+
+    @Test
+    public void testGrid() {
+        GridGraph graph = new GridGraph(25, 20, 0.15, 61);
+        ContractionHierarchy ch = new ContractionHierarchy(graph);
+        Random random = new Random(61);
+        for (int i = 0; i < NUM_PAIRS; i++) {
+            int s = random.nextInt(graph.numVertices());
+            int t = random.nextInt(graph.numVertices());
+            assertSamePath(graph, ch, s, t);
+        }
+        assertSamePath(graph, ch, 0, 0);
+        assertSamePath(graph, ch, 0, graph.islandVertex());
+        assertSamePath(graph, ch, graph.islandVertex(), graph.islandVertex() + 1);
+    }
+
+    @Test
+    public void testTinyMap() {
+        AugmentedStreetMapGraph graph = new AugmentedStreetMapGraph(OSM_DB_PATH, false);
+        assertNull(graph.contractionHierarchy());
+        ContractionHierarchy ch = new ContractionHierarchy(graph);
+        for (int s = 0; s < graph.numVertices(); s++) {
+            for (int t = 0; t < graph.numVertices(); t++) {
+                assertSamePath(graph, ch, s, t);
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        Path dir = Files.createTempDirectory("ch-test");
+        ClassLoader oldLoader = Thread.currentThread().getContextClassLoader();
+        try (InputStream in = oldLoader.getResourceAsStream(OSM_DB_PATH)) {
+            Files.copy(in, dir.resolve("tiny.osm.xml"));
+        }
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, oldLoader)) {
+            Thread.currentThread().setContextClassLoader(loader);
+            MapPreprocessor.main(new String[]{"tiny.osm.xml"});
+            AugmentedStreetMapGraph graph = new AugmentedStreetMapGraph("tiny.osm.xml", false);
+            ContractionHierarchy loaded = graph.contractionHierarchy();
+            assertNotNull(loaded);
+            ContractionHierarchy built = new ContractionHierarchy(graph);
+            assertEquals(built.numUpwardEdges(), loaded.numUpwardEdges());
+            for (int s = 0; s < graph.numVertices(); s++) {
+                for (int t = 0; t < graph.numVertices(); t++) {
+                    assertSamePath(graph, loaded, s, t);
+                }
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(oldLoader);
+            for (File f : dir.toFile().listFiles()) {
+                f.delete();
+            }
+            dir.toFile().delete();
+        }
+    }
+
+    /**
+     * Asserts that the hierarchy solver and A* agree on the path from vertex S to vertex
+     * T, and that the edges of the hierarchy solution lead along its vertices.
+     */
+    private static void assertSamePath(IndexedAStarGraph graph, ContractionHierarchy ch,
+                                       int s, int t) {
+        long start = graph.id(s);
+        long end = graph.id(t);
+        IndexedAStarSolver expected = new IndexedAStarSolver(graph, start, end, TIMEOUT);
+        ContractionHierarchySolver actual = new ContractionHierarchySolver(ch, start, end, TIMEOUT);
+        String pair = "from " + start + " to " + end;
+        assertEquals(pair, expected.outcome(), actual.outcome());
+        if (expected.outcome() != SolverOutcome.SOLVED) {
+            return;
+        }
+        assertEquals(pair, expected.solutionWeight(), actual.solutionWeight(), 1e-9);
+        assertEquals(pair, expected.solution(), actual.solution());
+        assertArrayEquals(pair, expected.solutionVertices(), actual.solutionVertices());
+        assertValidEdges(graph, actual);
+    }
+
+    /** Asserts that edge i of the solution goes from vertex i to vertex i + 1. */
+    static void assertValidEdges(IndexedAStarGraph graph, IndexedShortestPathsSolver solver) {
+        int[] vertices = solver.solutionVertices();
+        int[] edges = solver.solutionEdges();
+        assertEquals(Arrays.toString(vertices), vertices.length - 1, edges.length);
+        double weight = 0;
+        for (int i = 0; i < edges.length; i++) {
+            int e = edges[i];
+            assertTrue(e >= graph.edgeStart(vertices[i]) && e < graph.edgeEnd(vertices[i]));
+            assertEquals(vertices[i + 1], graph.edgeTarget(e));
+            weight += graph.edgeWeight(e);
+        }
+        assertEquals(solver.solutionWeight(), weight, 1e-9);
+        for (int i = 0; i < vertices.length; i++) {
+            assertEquals((long) solver.solution().get(i), graph.id(vertices[i]));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.ArrayIndexMinPQ;
+import bearmaps.proj2ab.DaryHeapMinPQ;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of DaryHeapMinPQ, hashed and indexed, and ArrayIndexMinPQ of several arities
+ * against a map of the items in the PQ scanned for its smallest priority.
+ */
+public class TestDaryHeapMinPQ {
+
+    /** Runs random adds, priority changes and removals against the naive map. */
+    private static void checkAgainstNaive(DaryHeapMinPQ<String> pq, long seed) {
+        Random r = new Random(seed);
+        Map<String, Double> naive = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String item = "v" + r.nextInt(500);
+            int op = r.nextInt(3);
+            if (op == 0 && !naive.containsKey(item)) {
+                double priority = r.nextInt(1000);
+                pq.add(item, priority);
+                naive.put(item, priority);
+            } else if (op == 1 && naive.containsKey(item)) {
+                double priority = r.nextInt(1000);
+                pq.changePriority(item, priority);
+                naive.put(item, priority);
+            } else if (op == 2 && !naive.isEmpty()) {
+                double smallest = pq.smallestPriority();
+                String removed = pq.removeSmallest();
+                assertEquals(smallest, naive.remove(removed), 0.0);
+                for (double priority : naive.values()) {
+                    assertTrue(priority >= smallest);
+                }
+            }
+            assertEquals(naive.size(), pq.size());
+            assertEquals(naive.containsKey(item), pq.contains(item));
+        }
+    }
+
+    @Test
+    public void testHashed() {
+        for (int arity = 2; arity <= 5; arity++) {
+            checkAgainstNaive(new DaryHeapMinPQ<>(arity), arity);
+        }
+        checkAgainstNaive(new DaryHeapMinPQ<>(), 0);
+    }
+
+    @Test
+    public void testIndexed() {
+        for (int arity = 2; arity <= 5; arity++) {
+            /* Starts small so the PQ has to grow. */
+            checkAgainstNaive(new DaryHeapMinPQ<>(s -> Integer.parseInt(s.substring(1)), 8, arity),
+                    arity);
+        }
+    }
+
+    @Test
+    public void testIndexMinPQOrder() {
+        Random r = new Random(5);
+        for (int arity = 2; arity <= 8; arity++) {
+            ArrayIndexMinPQ pq = new ArrayIndexMinPQ(1000, arity);
+            for (int i = 0; i < 1000; i++) {
+                pq.add(i, r.nextDouble());
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                pq.changePriority(i, r.nextDouble());
+            }
+            double last = Double.NEGATIVE_INFINITY;
+            while (pq.size() > 0) {
+                double smallest = pq.smallestPriority();
+                assertTrue(smallest >= last);
+                assertEquals(smallest, pq.priority(pq.getSmallest()), 0.0);
+                int removed = pq.removeSmallest();
+                assertFalse(pq.contains(removed));
+                last = smallest;
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddTwice() {
+        DaryHeapMinPQ<String> pq = new DaryHeapMinPQ<>();
+        pq.add("a", 1);
+        pq.add("a", 2);
+    }
+}
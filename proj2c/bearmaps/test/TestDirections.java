@@ -24,7 +24,7 @@ public class TestDirections {
 
     @Before
     public void setUp() throws Exception {
-        graph = new AugmentedStreetMapGraph(OSM_DB_PATH);
+        graph = new AugmentedStreetMapGraph(OSM_DB_PATH, false);
     }
 
     @Test
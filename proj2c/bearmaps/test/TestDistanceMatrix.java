@@ -0,0 +1,77 @@
+package bearmaps.test;
+
+import bearmaps.hw4.IndexedAStarSolver;
+import bearmaps.hw4.SolverOutcome;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of the distance matrix. Builds the matrix between the start and end points of
+ * the routes of the routing test and checks each entry against the weight of the route
+ * A* finds between the same points.
+ */
+public class TestDistanceMatrix {
+    private static final String PARAMS_FILE = "data/proj2c_test_inputs/path_params.txt";
+    private static final int NUM_TESTS = 8;
+    private static final String OSM_DB_PATH = "data/proj2c_xml/berkeley-2019.osm.xml";
+    private static AugmentedStreetMapGraph graph;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws Exception {
+        if (initialized) {
+            return;
+        }
+        graph = new AugmentedStreetMapGraph(OSM_DB_PATH, false);
+        initialized = true;
+    }
+
+    @Test
+    public void testMatchesAStar() throws Exception {
+        List<String> lines = Files.readAllLines(Paths.get(PARAMS_FILE), Charset.defaultCharset());
+        double[] startLons = new double[NUM_TESTS];
+        double[] startLats = new double[NUM_TESTS];
+        double[] endLons = new double[NUM_TESTS];
+        double[] endLats = new double[NUM_TESTS];
+        int lineIdx = 2; // ignore comment lines
+        for (int i = 0; i < NUM_TESTS; i++) {
+            startLons[i] = Double.parseDouble(lines.get(lineIdx));
+            startLats[i] = Double.parseDouble(lines.get(lineIdx + 1));
+            endLons[i] = Double.parseDouble(lines.get(lineIdx + 2));
+            endLats[i] = Double.parseDouble(lines.get(lineIdx + 3));
+            lineIdx += 4;
+        }
+
+        double[][] matrix = graph.distanceMatrix(startLons, startLats, endLons, endLats);
+        assertEquals(NUM_TESTS, matrix.length);
+        for (int i = 0; i < NUM_TESTS; i++) {
+            assertEquals(NUM_TESTS, matrix[i].length);
+            long start = graph.closest(startLons[i], startLats[i]);
+            for (int j = 0; j < NUM_TESTS; j++) {
+                long end = graph.closest(endLons[j], endLats[j]);
+                IndexedAStarSolver solver = new IndexedAStarSolver(graph, start, end, 20);
+                double expected = solver.outcome() == SolverOutcome.SOLVED
+                        ? solver.solutionWeight() : Double.POSITIVE_INFINITY;
+                assertEquals(expected, matrix[i][j], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testMissingNode() {
+        long node = graph.closest(-122.26, 37.87);
+        double[][] matrix = graph.distanceMatrix(new long[]{node, -1}, new long[]{-1, node});
+        assertEquals(Double.POSITIVE_INFINITY, matrix[0][0], 0.0);
+        assertEquals(0.0, matrix[0][1], 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, matrix[1][0], 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, matrix[1][1], 0.0);
+    }
+}
@@ -0,0 +1,67 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.GeoGrid;
+import bearmaps.proj2ab.KDTree;
+import bearmaps.proj2ab.NaivePointSet;
+import bearmaps.proj2ab.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of GeoGrid and KDTree against NaivePointSet on city-like data with a dense center and
+ * a few far-off points. {@link DemoGeoGrid} times the two against each other.
+ */
+public class TestGeoGrid {
+
+    static List<Point> cityPoints(Random r, int n) {
+        List<Point> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (i % 3 == 0) {
+                points.add(new Point(-122.27 + r.nextGaussian() * 0.005,
+                        37.87 + r.nextGaussian() * 0.005));
+            } else {
+                points.add(new Point(-122.30 + r.nextDouble() * 0.1, 37.82 + r.nextDouble() * 0.07));
+            }
+        }
+        points.add(new Point(-122.0, 38.5));
+        points.add(new Point(10.0, 50.0));
+        return points;
+    }
+
+    @Test
+    public void testNearest() {
+        Random r = new Random(71);
+        List<Point> points = cityPoints(r, 20000);
+        GeoGrid grid = new GeoGrid(points);
+        KDTree kd = new KDTree(points);
+        NaivePointSet naive = new NaivePointSet(points);
+        for (int i = 0; i < 1000; i++) {
+            double x = -122.35 + r.nextDouble() * 0.2;
+            double y = 37.80 + r.nextDouble() * 0.12;
+            if (i % 50 == 0) {
+                x = r.nextDouble() * 360 - 180;
+                y = r.nextDouble() * 170 - 85;
+            }
+            Point expected = naive.nearest(x, y);
+            assertEquals(expected, grid.nearest(x, y));
+            assertEquals(expected, kd.nearest(x, y));
+        }
+    }
+
+    @Test
+    public void testEdgeCases() {
+        assertEquals(-1, new GeoGrid(new ArrayList<>()).nearestIndex(0, 0));
+        List<Point> points = new ArrayList<>();
+        points.add(new Point(1, 1));
+        points.add(new Point(1, 1));
+        points.add(new Point(1, 2));
+        GeoGrid grid = new GeoGrid(points);
+        assertEquals(new Point(1, 2), grid.nearest(1.1, 1.9));
+        assertEquals(new Point(1, 1), grid.nearest(-5, -5));
+    }
+}
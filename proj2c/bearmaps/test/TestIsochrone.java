@@ -0,0 +1,70 @@
+package bearmaps.test;
+
+import bearmaps.hw4.IndexedDijkstra;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import bearmaps.proj2c.Isochrone;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of isochrones. Checks that the nodes reached are exactly those a full Dijkstra
+ * search finds within the budget, nearest first, and that the corners of the outline
+ * go around the start in order of angle.
+ */
+public class TestIsochrone {
+    private static final String OSM_DB_PATH = "data/proj2c_xml/berkeley-2019.osm.xml";
+    private static final double[] BUDGETS = {0, 0.1, 0.5, 1, 2};
+    private static AugmentedStreetMapGraph graph;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws Exception {
+        if (initialized) {
+            return;
+        }
+        graph = new AugmentedStreetMapGraph(OSM_DB_PATH, false);
+        initialized = true;
+    }
+
+    @Test
+    public void testMatchesDijkstra() {
+        double lon = -122.2592;
+        double lat = 37.8719;
+        double[] distTo = new double[graph.numVertices()];
+        IndexedDijkstra.distancesFrom(graph, graph.index(graph.closest(lon, lat)), distTo);
+        for (double budget : BUDGETS) {
+            Isochrone iso = Isochrone.reachable(graph, lon, lat, budget, 72);
+            int expected = 0;
+            for (double d : distTo) {
+                if (d <= budget) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, iso.size());
+            for (int i = 0; i < iso.size(); i++) {
+                assertEquals(distTo[iso.vertex(i)], iso.distance(i), 0.0);
+                assertTrue(i == 0 || iso.distance(i) >= iso.distance(i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testHullGoesAround() {
+        double lon = -122.2592;
+        double lat = 37.8719;
+        Isochrone iso = Isochrone.reachable(graph, lon, lat, 1, 72);
+        int[] hull = iso.hull();
+        assertTrue(hull.length >= 3);
+        double lon0 = graph.vertexLon(iso.vertex(0));
+        double lat0 = graph.vertexLat(iso.vertex(0));
+        double last = Double.NEGATIVE_INFINITY;
+        for (int v : hull) {
+            double angle = Math.atan2(graph.vertexLat(v) - lat0, graph.vertexLon(v) - lon0);
+            assertTrue(angle >= last);
+            last = angle;
+        }
+    }
+}
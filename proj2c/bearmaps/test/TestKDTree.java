@@ -0,0 +1,77 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.KDTree;
+import bearmaps.proj2ab.NaivePointSet;
+import bearmaps.proj2ab.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the nearest, k-nearest and radius queries of KDTree against NaivePointSet.
+ * {@link DemoKDTree} times both at a million points.
+ */
+public class TestKDTree {
+    private static final double MIN_LON = -122.30;
+    private static final double MIN_LAT = 37.82;
+    private static final double SPAN = 0.1;
+
+    static List<Point> randomPoints(Random r, int n) {
+        List<Point> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            points.add(randomPoint(r));
+        }
+        return points;
+    }
+
+    static Point randomPoint(Random r) {
+        return new Point(MIN_LON + r.nextDouble() * SPAN, MIN_LAT + r.nextDouble() * SPAN);
+    }
+
+    @Test
+    public void testNearest() {
+        Random r = new Random(61);
+        List<Point> points = randomPoints(r, 10000);
+        KDTree kd = new KDTree(points);
+        NaivePointSet naive = new NaivePointSet(points);
+        for (int i = 0; i < 1000; i++) {
+            Point goal = randomPoint(r);
+            assertEquals(naive.nearest(goal.getX(), goal.getY()), kd.nearest(goal.getX(), goal.getY()));
+        }
+    }
+
+    @Test
+    public void testKNearest() {
+        Random r = new Random(62);
+        List<Point> points = randomPoints(r, 2000);
+        KDTree kd = new KDTree(points);
+        NaivePointSet naive = new NaivePointSet(points);
+        for (int k : new int[] {0, 1, 2, 7, 50}) {
+            for (int i = 0; i < 100; i++) {
+                Point goal = randomPoint(r);
+                assertEquals(naive.kNearest(goal.getX(), goal.getY(), k),
+                        kd.kNearest(goal.getX(), goal.getY(), k));
+            }
+        }
+        assertEquals(3, new KDTree(points.subList(0, 3)).kNearest(0, 0, 10).size());
+    }
+
+    @Test
+    public void testWithinRadius() {
+        Random r = new Random(63);
+        List<Point> points = randomPoints(r, 2000);
+        KDTree kd = new KDTree(points);
+        NaivePointSet naive = new NaivePointSet(points);
+        for (double radius : new double[] {0, 0.1, 0.5, 2}) {
+            for (int i = 0; i < 100; i++) {
+                Point goal = randomPoint(r);
+                assertEquals(naive.withinRadius(goal.getX(), goal.getY(), radius),
+                        kd.withinRadius(goal.getX(), goal.getY(), radius));
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package bearmaps.test;
+
+import bearmaps.hw4.IndexedAStarGraph;
+import bearmaps.hw4.IndexedAStarSolver;
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of the ALT landmark heuristic. Runs A* on the routes of the routing test with
+ * and without landmarks, and checks the routes are equally short and the landmarks
+ * explore no more states. {@link DemoLandmarks} reports how many fewer.
+ */
+public class TestLandmarks {
+    private static final String PARAMS_FILE = "data/proj2c_test_inputs/path_params.txt";
+    private static final int NUM_TESTS = 8;
+    static final String OSM_DB_PATH = "data/proj2c_xml/berkeley-2019.osm.xml";
+    private static AugmentedStreetMapGraph graph;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws Exception {
+        if (initialized) {
+            return;
+        }
+        graph = new AugmentedStreetMapGraph(OSM_DB_PATH, false);
+        initialized = true;
+    }
+
+    @Test
+    public void testFewerStatesExplored() throws Exception {
+        IndexedAStarGraph greatCircle = new GreatCircleGraph(graph);
+        long withLandmarks = 0;
+        long withoutLandmarks = 0;
+        for (long[] route : routes(graph)) {
+            IndexedAStarSolver alt = new IndexedAStarSolver(graph, route[0], route[1], 20);
+            IndexedAStarSolver plain = new IndexedAStarSolver(greatCircle, route[0], route[1], 20);
+            assertEquals(plain.outcome(), alt.outcome());
+            assertEquals(plain.solutionWeight(), alt.solutionWeight(), 1e-9);
+            withLandmarks += alt.numStatesExplored();
+            withoutLandmarks += plain.numStatesExplored();
+        }
+        assertTrue(withLandmarks + " states with landmarks, " + withoutLandmarks + " without",
+                withLandmarks <= withoutLandmarks);
+    }
+
+    /** Returns the start and end vertex ids of the routes of the routing test on GRAPH. */
+    static long[][] routes(AugmentedStreetMapGraph graph) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(PARAMS_FILE), Charset.defaultCharset());
+        long[][] routes = new long[NUM_TESTS][];
+        int lineIdx = 2; // ignore comment lines
+        for (int i = 0; i < NUM_TESTS; i++) {
+            long start = graph.closest(Double.parseDouble(lines.get(lineIdx)),
+                    Double.parseDouble(lines.get(lineIdx + 1)));
+            long end = graph.closest(Double.parseDouble(lines.get(lineIdx + 2)),
+                    Double.parseDouble(lines.get(lineIdx + 3)));
+            lineIdx += 4;
+            routes[i] = new long[] {start, end};
+        }
+        return routes;
+    }
+}
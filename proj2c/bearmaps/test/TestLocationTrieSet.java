@@ -0,0 +1,165 @@
+package bearmaps.test;
+
+import bearmaps.hw4.streetmap.Node;
+import bearmaps.lab9.LocationTrieSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of the packed location trie on a handful of made-up names, without any map
+ * data: prefix lookups, the cached top completions, and exact and fuzzy searches.
+ */
+public class TestLocationTrieSet {
+
+    /** Adds COUNT nodes named NAME to NODES, numbered by their order of addition. */
+    private static void addNodes(List<Node> nodes, String name, int count) {
+        for (int i = 0; i < count; i++) {
+            Node n = Node.of(nodes.size(), 37.87, -122.26);
+            n.setName(name);
+            nodes.add(n);
+        }
+    }
+
+    /** Returns the nodes with ids FROM up to but not including TO. */
+    private static List<Node> nodeRange(List<Node> nodes, int from, int to) {
+        return new ArrayList<>(nodes.subList(from, to));
+    }
+
+    private static List<Node> sampleNodes() {
+        List<Node> nodes = new ArrayList<>();
+        addNodes(nodes, "Cafe Strada", 2);          // 0, 1
+        addNodes(nodes, "Caffe Mediterraneum", 1);  // 2
+        addNodes(nodes, "CAFE STRADA", 1);          // 3
+        addNodes(nodes, "Cafe", 1);                 // 4
+        addNodes(nodes, "Caf", 1);                  // 5
+        addNodes(nodes, null, 1);                   // 6
+        addNodes(nodes, "123", 1);                  // 7
+        addNodes(nodes, "Cheeseboard", 2);          // 8, 9
+        return nodes;
+    }
+
+    @Test
+    public void testContains() {
+        LocationTrieSet trie = new LocationTrieSet(sampleNodes());
+        assertTrue(trie.contains("cafe strada"));
+        assertTrue(trie.contains("caf"));
+        assertTrue(trie.contains("cheeseboard"));
+
+        /* Like the original TrieSet, any path down the trie counts, not only whole keys. */
+        assertTrue(trie.contains("ca"));
+        assertFalse(trie.contains("cafes"));
+        assertFalse(trie.contains("pizza"));
+    }
+
+    @Test
+    public void testKeysWithPrefix() {
+        LocationTrieSet trie = new LocationTrieSet(sampleNodes());
+
+        /* Sorted by cleaned name, each under the name last added for it. */
+        assertEquals(Arrays.asList("Caf", "Cafe", "CAFE STRADA", "Caffe Mediterraneum",
+                "Cheeseboard"), trie.keysWithPrefix("c"));
+        assertEquals(Arrays.asList("Cafe", "CAFE STRADA", "Caffe Mediterraneum"),
+                trie.keysWithPrefix("caf"));
+        assertEquals(Arrays.asList("CAFE STRADA"), trie.keysWithPrefix("cafe"));
+        assertEquals(new ArrayList<String>(), trie.keysWithPrefix("cheeseboard"));
+        assertNull(trie.keysWithPrefix("x"));
+    }
+
+    @Test
+    public void testIdsMatched() {
+        List<Node> nodes = sampleNodes();
+        LocationTrieSet trie = new LocationTrieSet(nodes);
+
+        /* Names that clean to the same key share it, in the order they were added. */
+        List<Node> strada = nodeRange(nodes, 0, 2);
+        strada.add(nodes.get(3));
+        assertEquals(strada, trie.idsMatched("Cafe Strada"));
+        assertEquals(strada, trie.idsMatched("cafe strada!"));
+        assertEquals(nodeRange(nodes, 4, 5), trie.idsMatched("Cafe"));
+        assertEquals(nodeRange(nodes, 8, 10), trie.idsMatched("Cheeseboard"));
+
+        /* A prefix of a key that is no key itself, and no key at all. */
+        assertEquals(new ArrayList<Node>(), trie.idsMatched("Ch"));
+        assertNull(trie.idsMatched("Pizza"));
+    }
+
+    @Test
+    public void testIdsMatchedFuzzy() {
+        List<Node> nodes = sampleNodes();
+        LocationTrieSet trie = new LocationTrieSet(nodes);
+        List<Node> cheeseboard = nodeRange(nodes, 8, 10);
+
+        /* One substitution, insertion or deletion. */
+        assertEquals(cheeseboard, trie.idsMatchedFuzzy("Cheeseboafd", 1));
+        assertEquals(cheeseboard, trie.idsMatchedFuzzy("Cheesebooard", 1));
+        assertEquals(cheeseboard, trie.idsMatchedFuzzy("Cheesebard", 1));
+
+        /* Two edits are found within two, but not within one. */
+        assertEquals(cheeseboard, trie.idsMatchedFuzzy("Chesebord", 2));
+        assertNull(trie.idsMatchedFuzzy("Chesebord", 1));
+        assertNull(trie.idsMatchedFuzzy("Cheese", 2));
+
+        /* All the keys at the least distance, in key order, and only those. */
+        List<Node> tie = nodeRange(nodes, 5, 6);
+        tie.add(nodes.get(4));
+        assertEquals(tie, trie.idsMatchedFuzzy("cafx", 2));
+        assertEquals(nodeRange(nodes, 4, 5), trie.idsMatchedFuzzy("Cafe", 2));
+        assertEquals(nodeRange(nodes, 2, 3), trie.idsMatchedFuzzy("Caffe Mediteraneum", 2));
+
+        /* No edits allowed is an exact search. */
+        assertEquals(nodeRange(nodes, 4, 5), trie.idsMatchedFuzzy("Cafe", 0));
+        assertNull(trie.idsMatchedFuzzy("Cafx", 0));
+    }
+
+    @Test
+    public void testTopKAutocomplete() {
+        List<Node> nodes = new ArrayList<>();
+        addNodes(nodes, "Subway", 3);
+        addNodes(nodes, "Sather Gate", 5);
+        addNodes(nodes, "Sushi", 1);
+        addNodes(nodes, "Safeway", 3);
+        addNodes(nodes, "S", 2);
+        addNodes(nodes, "Starbucks", 4);
+        addNodes(nodes, "Sprouts", 1);
+        addNodes(nodes, "Shell", 1);
+        addNodes(nodes, "See's", 1);
+        addNodes(nodes, "Souvenir", 1);
+        addNodes(nodes, "Sandwich", 1);
+        addNodes(nodes, "Sliver", 1);
+        addNodes(nodes, "Saul's", 1);
+        addNodes(nodes, "Pizza", 6);
+        LocationTrieSet trie = new LocationTrieSet(nodes);
+
+        /* More nodes first, then alphabetically; "S" is a key as well as the prefix. */
+        List<String> ranked = Arrays.asList("Sather Gate", "Starbucks", "Safeway", "Subway",
+                "S", "Sandwich", "Saul's", "See's", "Shell", "Sliver", "Souvenir", "Sprouts",
+                "Sushi");
+        assertEquals(ranked.subList(0, 3), trie.topKWithPrefix("s", 3));
+        assertEquals(ranked.subList(0, LocationTrieSet.CACHED_TOP_K),
+                trie.topKWithPrefix("s", LocationTrieSet.CACHED_TOP_K));
+        assertEquals(ranked.subList(0, 12), trie.topKWithPrefix("s", 12));
+        assertEquals(ranked, trie.topKWithPrefix("s", 20));
+
+        /* The rankings of deeper trie nodes, which those above are merged from. */
+        assertEquals(Arrays.asList("Sather Gate", "Safeway", "Sandwich", "Saul's"),
+                trie.topKWithPrefix("sa", 10));
+        assertEquals(Arrays.asList("Subway", "Sushi"), trie.topKWithPrefix("su", 10));
+        assertEquals(Arrays.asList("Sather Gate"), trie.topKWithPrefix("sather gate", 10));
+        assertEquals(Arrays.asList("Pizza"), trie.topKWithPrefix("p", 10));
+        assertNull(trie.topKWithPrefix("x", 10));
+
+        /* keysWithPrefix lists the same keys, alphabetically and without the prefix. */
+        List<String> sorted = new ArrayList<>(ranked);
+        sorted.remove("S");
+        sorted.sort(String.CASE_INSENSITIVE_ORDER);
+        assertEquals(sorted, trie.keysWithPrefix("s"));
+    }
+}
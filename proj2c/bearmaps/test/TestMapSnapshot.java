@@ -0,0 +1,145 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.AugmentedStreetMapGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of map snapshots. Builds the tiny map from its XML file in a temporary folder,
+ * which saves a snapshot next to it, and checks that the graph and its indexes loaded
+ * back from the snapshot are the same as those built from the XML. The XML file is then
+ * edited behind the snapshot's back: the snapshot must still be used while the length
+ * and modification time of the file are unchanged, and be ignored once either changes.
+ */
+public class TestMapSnapshot {
+    private static final String OSM_DB_PATH = "bearmaps/test/osm/tiny-tags.osm.xml";
+    private static final String COPY = "tiny.osm.xml";
+    private static final String SNAPSHOT = COPY + ".snapshot";
+
+    private Path dir;
+    private ClassLoader oldLoader;
+    private URLClassLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("snapshot-test");
+        oldLoader = Thread.currentThread().getContextClassLoader();
+        try (InputStream in = oldLoader.getResourceAsStream(OSM_DB_PATH)) {
+            Files.copy(in, dir.resolve(COPY));
+        }
+        loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, oldLoader);
+        Thread.currentThread().setContextClassLoader(loader);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Thread.currentThread().setContextClassLoader(oldLoader);
+        loader.close();
+        for (File f : dir.toFile().listFiles()) {
+            f.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    @Test
+    public void testRoundTrip() {
+        AugmentedStreetMapGraph built = new AugmentedStreetMapGraph(COPY, false);
+        assertTrue(!Files.exists(dir.resolve(SNAPSHOT)));
+        new AugmentedStreetMapGraph(COPY);
+        assertTrue(Files.exists(dir.resolve(SNAPSHOT)));
+        AugmentedStreetMapGraph loaded = new AugmentedStreetMapGraph(COPY, false);
+        assertSameGraph(built, loaded);
+    }
+
+    @Test
+    public void testStaleSnapshot() throws Exception {
+        new AugmentedStreetMapGraph(COPY);
+        Path xml = dir.resolve(COPY);
+        FileTime time = Files.getLastModifiedTime(xml);
+        String text = new String(Files.readAllBytes(xml), StandardCharsets.UTF_8);
+
+        /* Same length and time: the snapshot is trusted, so the old name is kept. */
+        write(xml, text.replace("Lone Bench", "Lone Chair"), time);
+        assertEquals("Lone Bench", new AugmentedStreetMapGraph(COPY, false).name(31));
+
+        /* A newer file is read again. */
+        write(xml, text.replace("Lone Bench", "Lone Chair"),
+                FileTime.fromMillis(time.toMillis() + 10000));
+        assertEquals("Lone Chair", new AugmentedStreetMapGraph(COPY, false).name(31));
+
+        /* So is a file of another length, even with the old time. */
+        write(xml, text.replace("Lone Bench", "Lone Stool!"), time);
+        assertEquals("Lone Stool!", new AugmentedStreetMapGraph(COPY, false).name(31));
+    }
+
+    private static void write(Path file, String text, FileTime time) throws Exception {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, time);
+    }
+
+    /** Asserts that the graphs and their indexes are the same. */
+    private static void assertSameGraph(AugmentedStreetMapGraph expected,
+                                        AugmentedStreetMapGraph actual) {
+        assertEquals(expected.numVertices(), actual.numVertices());
+        for (int v = 0; v < expected.numVertices(); v++) {
+            assertEquals(expected.id(v), actual.id(v));
+            assertEquals(expected.vertexLon(v), actual.vertexLon(v), 0.0);
+            assertEquals(expected.vertexLat(v), actual.vertexLat(v), 0.0);
+            assertEquals(expected.name(expected.id(v)), actual.name(actual.id(v)));
+            assertEquals(expected.edgeStart(v), actual.edgeStart(v));
+            assertEquals(expected.edgeEnd(v), actual.edgeEnd(v));
+            for (int e = expected.edgeStart(v); e < expected.edgeEnd(v); e++) {
+                assertEquals(expected.edgeTarget(e), actual.edgeTarget(e));
+                assertEquals(expected.edgeWeight(e), actual.edgeWeight(e), 0.0);
+                assertEquals(expected.edgeWay(e), actual.edgeWay(e));
+            }
+        }
+        assertEquals(expected.numWays(), actual.numWays());
+        for (int w = 0; w < expected.numWays(); w++) {
+            assertEquals(expected.wayName(w), actual.wayName(w));
+            assertEquals(expected.wayHighway(w), actual.wayHighway(w));
+            assertEquals(expected.wayNodeStart(w), actual.wayNodeStart(w));
+            assertEquals(expected.wayNodeEnd(w), actual.wayNodeEnd(w));
+            for (int i = expected.wayNodeStart(w); i < expected.wayNodeEnd(w); i++) {
+                assertEquals(expected.wayNode(i), actual.wayNode(i));
+            }
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            double lon = -122.261 + 0.004 * random.nextDouble();
+            double lat = 37.869 + 0.005 * random.nextDouble();
+            assertEquals(expected.closest(lon, lat), actual.closest(lon, lat));
+        }
+
+        for (String name : new String[]{"Corner Cafe", "Lone Bench", "corner cafe", "Nowhere"}) {
+            assertEquals(expected.getLocations(name), actual.getLocations(name));
+        }
+        assertEquals(expected.getLocationsByPrefix("c"), actual.getLocationsByPrefix("c"));
+        assertEquals(expected.getLocationsByPrefix("lone", 5), actual.getLocationsByPrefix("lone", 5));
+
+        assertEquals(expected.landmarks().size(), actual.landmarks().size());
+        for (int s = 0; s < expected.numVertices(); s++) {
+            for (int t = 0; t < expected.numVertices(); t++) {
+                assertEquals(expected.landmarks().lowerBound(s, t),
+                        actual.landmarks().lowerBound(s, t), 0.0);
+                assertEquals(expected.estimatedDistanceToGoal(s, t),
+                        actual.estimatedDistanceToGoal(s, t), 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package bearmaps.test;
+
+import bearmaps.hw4.streetmap.StreetMapGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of reading OSM files. The tiny map is read from its XML file and from the same
+ * map converted to PBF, and both graphs must have the same vertices, edges, names and
+ * highway types as the ones spelled out by the tests.
+ *
+ * In the PBF file, the first half of the nodes is stored as dense nodes and the rest
+ * as plain nodes with latitude and longitude offsets, and the ways are split over a
+ * zlib compressed blob and a raw blob. In both files some nodes and ways repeat their
+ * name or highway tags, in which case the last one wins.
+ */
+public class TestOsmReaders {
+    private static final String XML_PATH = "bearmaps/test/osm/tiny-tags.osm.xml";
+    private static final String PBF_PATH = "bearmaps/test/osm/tiny-tags.osm.pbf";
+    private static final long BIG_ID = 4294967396L;  // more than 32 bits
+    private static StreetMapGraph xmlGraph;
+    private static StreetMapGraph pbfGraph;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws Exception {
+        if (initialized) {
+            return;
+        }
+        xmlGraph = new StreetMapGraph(XML_PATH);
+        pbfGraph = new StreetMapGraph(PBF_PATH);
+        initialized = true;
+    }
+
+    @Test
+    public void testSameGraph() {
+        assertTrue(xmlGraph.equals(pbfGraph));
+        assertTrue(pbfGraph.equals(xmlGraph));
+        assertEquals(xmlGraph.numVertices(), pbfGraph.numVertices());
+        for (int v = 0; v < xmlGraph.numVertices(); v++) {
+            long id = xmlGraph.id(v);
+            int w = pbfGraph.index(id);
+            assertEquals(xmlGraph.vertexLon(v), pbfGraph.vertexLon(w), 0.0);
+            assertEquals(xmlGraph.vertexLat(v), pbfGraph.vertexLat(w), 0.0);
+            assertEquals(xmlGraph.name(id), pbfGraph.name(id));
+            assertEquals(edgesOf(xmlGraph, v), edgesOf(pbfGraph, w));
+        }
+        assertEquals(waysOf(xmlGraph), waysOf(pbfGraph));
+    }
+
+    @Test
+    public void testVertices() {
+        for (StreetMapGraph g : new StreetMapGraph[]{xmlGraph, pbfGraph}) {
+            assertEquals(8, g.numVertices());
+            for (long id : new long[]{11, 12, 13, 21, 22, 23, BIG_ID, 31}) {
+                assertTrue(g.index(id) >= 0);
+            }
+            /* Neither on a kept way nor named, or missing altogether. */
+            assertEquals(-1, g.index(32));
+            assertEquals(-1, g.index(33));
+            assertEquals(-1, g.index(99));
+
+            assertEquals(-122.259, g.lon(BIG_ID), 0.0);
+            assertEquals(37.872, g.lat(BIG_ID), 0.0);
+            assertEquals("Corner Cafe", g.name(12));
+            assertEquals("Lone Bench", g.name(31));
+            assertNull(g.name(22));
+        }
+    }
+
+    @Test
+    public void testEdges() {
+        for (StreetMapGraph g : new StreetMapGraph[]{xmlGraph, pbfGraph}) {
+            int numEdges = 0;
+            for (int v = 0; v < g.numVertices(); v++) {
+                numEdges += g.edgeEnd(v) - g.edgeStart(v);
+            }
+            assertEquals(14, numEdges);
+            assertEdge(g, 11, 12, "Bancroft Way", "residential");
+            assertEdge(g, 12, 13, "Bancroft Way", "residential");
+            assertEdge(g, 11, 21, "College Avenue", "residential");
+            assertEdge(g, 21, 22, "", "secondary");
+            assertEdge(g, 22, 23, "", "secondary");
+            assertEdge(g, 13, 23, "Telegraph Avenue", "primary");
+            assertEdge(g, 22, BIG_ID, "Dwight Way", "living_street");
+
+            /* The last highway tag of Campus Path is a footway. */
+            assertEquals(-1, g.edgeIndex(g.index(12), g.index(22)));
+            assertEquals(5, g.numWays());
+        }
+    }
+
+    /** Asserts that there are edges both ways between FROM and TO on the given way. */
+    private static void assertEdge(StreetMapGraph g, long from, long to, String name,
+                                   String highway) {
+        int e = g.edgeIndex(g.index(from), g.index(to));
+        assertTrue(e >= 0);
+        assertEquals(name, g.edgeName(e));
+        assertEquals(highway, g.wayHighway(g.edgeWay(e)));
+        int back = g.edgeIndex(g.index(to), g.index(from));
+        assertTrue(back >= 0);
+        assertEquals(g.edgeWeight(e), g.edgeWeight(back), 0.0);
+    }
+
+    /** Returns the edges out of vertex V as "[to id] [way name] [highway] [weight]". */
+    private static Set<String> edgesOf(StreetMapGraph g, int v) {
+        Set<String> edges = new HashSet<>();
+        for (int e = g.edgeStart(v); e < g.edgeEnd(v); e++) {
+            edges.add(g.id(g.edgeTarget(e)) + " " + g.edgeName(e) + " "
+                    + g.wayHighway(g.edgeWay(e)) + " " + g.edgeWeight(e));
+        }
+        return edges;
+    }
+
+    /** Returns the ways as "[name] [highway] [node ids]". */
+    private static Set<String> waysOf(StreetMapGraph g) {
+        Set<String> ways = new HashSet<>();
+        for (int w = 0; w < g.numWays(); w++) {
+            StringBuilder way = new StringBuilder(g.wayName(w) + " " + g.wayHighway(w));
+            for (int i = g.wayNodeStart(w); i < g.wayNodeEnd(w); i++) {
+                way.append(" ").append(g.id(g.wayNode(i)));
+            }
+            ways.add(way.toString());
+        }
+        return ways;
+    }
+}
@@ -0,0 +1,109 @@
+package bearmaps.test;
+
+import bearmaps.proj2ab.RadixHeapMinPQ;
+import bearmaps.proj2ab.RadixIndexMinPQ;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of RadixHeapMinPQ, hashed and indexed, and RadixIndexMinPQ against a map of
+ * the items in the PQ scanned for its smallest priority, with priorities that never
+ * drop below the last smallest priority removed, as in Dijkstra's algorithm.
+ */
+public class TestRadixHeapMinPQ {
+
+    /** Runs random monotone adds, priority changes and removals against the naive map. */
+    private static void checkAgainstNaive(RadixHeapMinPQ<String> pq, long seed) {
+        Random r = new Random(seed);
+        Map<String, Double> naive = new HashMap<>();
+        double last = 0;
+        for (int i = 0; i < 20000; i++) {
+            String item = "v" + r.nextInt(500);
+            int op = r.nextInt(3);
+            if (op == 0 && !naive.containsKey(item)) {
+                double priority = last + r.nextInt(1000) * r.nextDouble();
+                pq.add(item, priority);
+                naive.put(item, priority);
+            } else if (op == 1 && naive.containsKey(item)) {
+                double priority = last + (naive.get(item) - last) * r.nextDouble();
+                pq.changePriority(item, priority);
+                naive.put(item, priority);
+            } else if (op == 2 && !naive.isEmpty()) {
+                double smallest = pq.smallestPriority();
+                String removed = pq.removeSmallest();
+                assertEquals(smallest, naive.remove(removed), 0.0);
+                assertTrue(smallest >= last);
+                for (double priority : naive.values()) {
+                    assertTrue(priority >= smallest);
+                }
+                last = smallest;
+            }
+            assertEquals(naive.size(), pq.size());
+            assertEquals(naive.containsKey(item), pq.contains(item));
+        }
+    }
+
+    @Test
+    public void testHashed() {
+        for (long seed = 0; seed < 4; seed++) {
+            checkAgainstNaive(new RadixHeapMinPQ<>(), seed);
+        }
+    }
+
+    @Test
+    public void testIndexed() {
+        for (long seed = 0; seed < 4; seed++) {
+            /* Starts small so the PQ has to grow. */
+            checkAgainstNaive(new RadixHeapMinPQ<>(s -> Integer.parseInt(s.substring(1)), 8),
+                    seed);
+        }
+    }
+
+    @Test
+    public void testTiesAndClear() {
+        RadixIndexMinPQ pq = new RadixIndexMinPQ(100);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                pq.add(i, (i % 10) * 0.5);
+            }
+            double last = 0;
+            for (int i = 0; i < 50; i++) {
+                double smallest = pq.smallestPriority();
+                assertTrue(smallest >= last);
+                assertFalse(pq.contains(pq.removeSmallest()));
+                last = smallest;
+            }
+            assertEquals(50, pq.size());
+            pq.clear();
+            assertEquals(0, pq.size());
+        }
+    }
+
+    @Test
+    public void testPriorityBelowLastRemoved() {
+        RadixIndexMinPQ pq = new RadixIndexMinPQ(3);
+        pq.add(0, 1.0);
+        pq.add(1, 2.0);
+        pq.removeSmallest();
+        /* Rounding error in a consistent heuristic; the PQ keeps it at the last priority. */
+        pq.add(2, 1.0 - 1e-12);
+        assertEquals(2, pq.getSmallest());
+        assertEquals(1.0, pq.smallestPriority(), 0.0);
+        assertEquals(2, pq.removeSmallest());
+        assertEquals(1, pq.removeSmallest());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddTwice() {
+        RadixHeapMinPQ<String> pq = new RadixHeapMinPQ<>();
+        pq.add("a", 1);
+        pq.add("a", 2);
+    }
+}
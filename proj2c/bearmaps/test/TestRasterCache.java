@@ -0,0 +1,164 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.utils.RasterCache;
+import bearmaps.proj2c.utils.RouteStore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of the caches of routes and rastered images. Checks that every route stored
+ * gets a new version, that clients without a route share {@link RouteStore#NO_ROUTE},
+ * that invalidating a route only drops the images drawn with that version of it, and
+ * that an image which fails to render is not cached.
+ */
+public class TestRasterCache {
+
+    @Test
+    public void testRouteVersions() {
+        RouteStore store = new RouteStore(10);
+        assertSame(RouteStore.NO_ROUTE, store.get("alice"));
+
+        List<Long> nodes = new ArrayList<>(Arrays.asList(1L, 2L, 3L));
+        assertSame(RouteStore.NO_ROUTE, store.put("alice", nodes));
+        RouteStore.Route first = store.get("alice");
+        assertEquals(Arrays.asList(1L, 2L, 3L), first.nodes());
+        assertNotEquals(RouteStore.NO_ROUTE.version(), first.version());
+
+        /* The route is a copy of the list given. */
+        nodes.add(4L);
+        assertEquals(3, store.get("alice").nodes().size());
+
+        /* Replacing a route, even with the same nodes, gives it a new version. */
+        assertSame(first, store.put("alice", Arrays.asList(1L, 2L, 3L)));
+        RouteStore.Route second = store.get("alice");
+        assertTrue(second.version() > first.version());
+
+        store.put("bob", Arrays.asList(1L, 2L, 3L));
+        assertTrue(store.get("bob").version() > second.version());
+
+        assertSame(second, store.clear("alice"));
+        assertSame(RouteStore.NO_ROUTE, store.get("alice"));
+        assertSame(RouteStore.NO_ROUTE, store.clear("alice"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRouteUnmodifiable() {
+        RouteStore store = new RouteStore(10);
+        store.put("alice", Arrays.asList(1L, 2L));
+        store.get("alice").nodes().add(3L);
+    }
+
+    @Test
+    public void testNoRouteShared() {
+        RouteStore store = new RouteStore(10);
+        assertSame(store.get("alice"), store.get("bob"));
+        assertEquals(0, store.get("alice").nodes().size());
+        assertEquals(0, store.size());
+
+        /* Images drawn without a route stay cached for everyone. */
+        RasterCache cache = new RasterCache(10);
+        RasterCache.Key key = key(0, RouteStore.NO_ROUTE.version());
+        RasterCache.Raster raster = new RasterCache.Raster("png", 256, 256);
+        cache.put(key, raster);
+        cache.invalidateRoute(store.clear("alice").version());
+        assertSame(raster, cache.get(key(0, RouteStore.NO_ROUTE.version())));
+    }
+
+    @Test
+    public void testRouteStoreEvictsLeastRecent() {
+        RouteStore store = new RouteStore(2);
+        store.put("alice", Arrays.asList(1L));
+        store.put("bob", Arrays.asList(2L));
+        store.get("alice");
+        store.put("carol", Arrays.asList(3L));
+        assertEquals(2, store.size());
+        assertEquals(Arrays.asList(1L), store.get("alice").nodes());
+        assertSame(RouteStore.NO_ROUTE, store.get("bob"));
+    }
+
+    @Test
+    public void testInvalidateRoute() {
+        RouteStore store = new RouteStore(10);
+        store.put("alice", Arrays.asList(1L, 2L));
+        long oldVersion = store.get("alice").version();
+        store.put("bob", Arrays.asList(3L, 4L));
+        long otherVersion = store.get("bob").version();
+
+        RasterCache cache = new RasterCache(10);
+        for (int depth = 0; depth < 3; depth++) {
+            cache.put(key(depth, oldVersion), new RasterCache.Raster("old" + depth, 256, 256));
+            cache.put(key(depth, otherVersion), new RasterCache.Raster("other" + depth, 256, 256));
+            cache.put(key(depth, RouteStore.NO_ROUTE.version()),
+                    new RasterCache.Raster("none" + depth, 256, 256));
+        }
+        assertEquals(9, cache.size());
+
+        long replaced = store.put("alice", Arrays.asList(5L, 6L)).version();
+        assertEquals(oldVersion, replaced);
+        cache.invalidateRoute(replaced);
+        assertEquals(6, cache.size());
+        for (int depth = 0; depth < 3; depth++) {
+            assertNull(cache.get(key(depth, oldVersion)));
+            assertEquals("other" + depth, cache.get(key(depth, otherVersion)).encodedImage());
+            assertEquals("none" + depth,
+                    cache.get(key(depth, RouteStore.NO_ROUTE.version())).encodedImage());
+        }
+        assertNull(cache.get(key(0, store.get("alice").version())));
+    }
+
+    @Test
+    public void testRasterCacheEvictsLeastRecent() {
+        RasterCache cache = new RasterCache(2);
+        cache.put(key(0, 0), new RasterCache.Raster("a", 256, 256));
+        cache.put(key(1, 0), new RasterCache.Raster("b", 256, 256));
+        cache.get(key(0, 0));
+        cache.put(key(2, 0), new RasterCache.Raster("c", 256, 256));
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.get(key(0, 0)).encodedImage());
+        assertNull(cache.get(key(1, 0)));
+        assertEquals("c", cache.get(key(2, 0)).encodedImage());
+    }
+
+    @Test
+    public void testFailedRenderNotCached() throws IOException {
+        RasterCache cache = new RasterCache(10);
+        RasterCache.Key key = key(0, RouteStore.NO_ROUTE.version());
+        try {
+            cache.get(key, () -> {
+                throw new IOException("Missing tile d0_x0_y0.png.");
+            });
+            fail("The render failure was not passed on.");
+        } catch (IOException e) {
+            assertEquals("Missing tile d0_x0_y0.png.", e.getMessage());
+        }
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key));
+
+        /* The next request renders again, and a good image is cached. */
+        int[] renders = new int[1];
+        RasterCache.Renderer renderer = () -> {
+            renders[0]++;
+            return new RasterCache.Raster("png", 256, 256);
+        };
+        RasterCache.Raster raster = cache.get(key, renderer);
+        assertSame(raster, cache.get(key, renderer));
+        assertEquals(1, renders[0]);
+        assertEquals(1, cache.size());
+    }
+
+    /** Returns the key of the image of the tiles 0 to 1 at DEPTH with the route VERSION. */
+    private static RasterCache.Key key(int depth, long version) {
+        return new RasterCache.Key(depth, 0, 0, 1, 1, version);
+    }
+}
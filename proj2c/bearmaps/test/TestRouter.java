@@ -29,7 +29,7 @@ public class TestRouter {
         if (initialized) {
             return;
         }
-        graph = new AugmentedStreetMapGraph(OSM_DB_PATH);
+        graph = new AugmentedStreetMapGraph(OSM_DB_PATH, false);
         initialized = true;
 
     }
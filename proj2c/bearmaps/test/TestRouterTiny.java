@@ -24,7 +24,7 @@ public class TestRouterTiny {
         if (initialized) {
             return;
         }
-        graphTiny = new AugmentedStreetMapGraph(OSM_DB_PATH_TINY);
+        graphTiny = new AugmentedStreetMapGraph(OSM_DB_PATH_TINY, false);
         initialized = true;
     }
 
@@ -0,0 +1,104 @@
+package bearmaps.test;
+
+import bearmaps.proj2c.utils.TileCache;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test of the tile cache. Tiles are made up instead of decoded from the image folder,
+ * each holding 4 bytes per pixel, so that the bytes held are known exactly. Checks
+ * that the least recently used tiles are evicted once the bytes exceed the capacity,
+ * and that the tile just added is kept even if it alone exceeds it.
+ */
+public class TestTileCache {
+    private static final int TILE_BYTES = 16 * 16 * 4;
+
+    /** A cache whose tiles are blank images, 16 by 16 unless the name says "big". */
+    private static class FakeTileCache extends TileCache {
+        private final List<String> reads = new ArrayList<>();
+
+        FakeTileCache(long capacity) {
+            super(capacity);
+        }
+
+        @Override
+        protected BufferedImage read(String name) {
+            reads.add(name);
+            if (name.startsWith("missing")) {
+                return null;
+            }
+            int side = name.startsWith("big") ? 64 : 16;
+            return new BufferedImage(side, side, BufferedImage.TYPE_INT_ARGB);
+        }
+    }
+
+    @Test
+    public void testHits() {
+        FakeTileCache cache = new FakeTileCache(10 * TILE_BYTES);
+        String name = TileCache.tileName(1, 0, 1);
+        BufferedImage tile = cache.get(name);
+        assertSame(tile, cache.get(name));
+        assertEquals(1, cache.reads.size());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        /* Tiles that cannot be read are not cached. */
+        assertNull(cache.get("missing.png"));
+        assertNull(cache.get("missing.png"));
+        assertEquals(3, cache.reads.size());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecent() {
+        FakeTileCache cache = new FakeTileCache(3 * TILE_BYTES);
+        String a = TileCache.tileName(2, 0, 0);
+        String b = TileCache.tileName(2, 1, 0);
+        String c = TileCache.tileName(2, 2, 0);
+        String d = TileCache.tileName(2, 3, 0);
+        cache.get(a);
+        cache.get(b);
+        cache.get(c);
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.evictions());
+
+        cache.get(a);
+        cache.get(d);
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.evictions());
+
+        /* B was the least recently used, the others are still cached. */
+        int reads = cache.reads.size();
+        cache.get(a);
+        cache.get(c);
+        cache.get(d);
+        assertEquals(reads, cache.reads.size());
+        cache.get(b);
+        assertEquals(reads + 1, cache.reads.size());
+    }
+
+    @Test
+    public void testKeepsTileJustAdded() {
+        FakeTileCache cache = new FakeTileCache(3 * TILE_BYTES);
+        cache.get(TileCache.tileName(2, 0, 0));
+        cache.get(TileCache.tileName(2, 1, 0));
+
+        /* A tile larger than the whole cache evicts every other tile, but not itself. */
+        BufferedImage big = cache.get("big.png");
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.evictions());
+        assertSame(big, cache.get("big.png"));
+
+        /* The next tile added evicts it in turn. */
+        cache.get(TileCache.tileName(2, 2, 0));
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.evictions());
+    }
+}